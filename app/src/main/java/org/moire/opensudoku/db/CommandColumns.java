@@ -0,0 +1,12 @@
+package org.moire.opensudoku.db;
+
+/**
+ * Columns of the journal of commands of the puzzles being played, one row for each command
+ * of the undo stack, see {@link org.moire.opensudoku.game.command.CommandStack}.
+ */
+public abstract class CommandColumns {
+    public static final String SUDOKU_ID = "sudoku_id";
+    // position of the command in the stack, 0 is the bottom
+    public static final String SEQ = "seq";
+    public static final String DATA = "data";
+}
@@ -21,19 +21,23 @@
 package org.moire.opensudoku.db;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import org.moire.opensudoku.R;
+import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.game.SudokuGame;
+import org.moire.opensudoku.game.command.CommandStack;
 
 /**
  * This class helps open, create, and upgrade the database file.
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
 
-    public static final int DATABASE_VERSION = 9;
+    public static final int DATABASE_VERSION = 14;
     private static final String TAG = "DatabaseHelper";
     private Context mContext;
 
@@ -51,9 +55,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + SudokuColumns.STATE + " INTEGER,"
                 + SudokuColumns.TIME + " INTEGER,"
                 + SudokuColumns.LAST_PLAYED + " INTEGER,"
-                + SudokuColumns.DATA + " Text,"
+                + SudokuColumns.DATA + " BLOB,"
                 + SudokuColumns.PUZZLE_NOTE + " Text,"
-                + SudokuColumns.COMMAND_STACK + " Text"
+                + SudokuColumns.COMMAND_STACK + " Text,"
+                + SudokuColumns.SOLUTION + " Text,"
+                + SudokuColumns.DIFFICULTY + " INTEGER,"
+                + SudokuColumns.FINGERPRINT + " INTEGER"
                 + ");");
 
         db.execSQL("CREATE TABLE " + SudokuDatabase.FOLDER_TABLE_NAME + " ("
@@ -157,6 +164,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         insertSudoku(db, 3, 90, "Hard30", "000030065460950200000086004003070006004090100500010300200140000007065028630020000");
 
         createIndexes(db);
+        createFingerprintIndex(db);
+        createCommandTable(db);
     }
 
     private void insertFolder(SQLiteDatabase db, long folderID, String folderName) {
@@ -166,8 +175,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     // TODO: sudokuName is not used
     private void insertSudoku(SQLiteDatabase db, long folderID, long sudokuID, String sudokuName, String data) {
-        String sql = "INSERT INTO " + SudokuDatabase.SUDOKU_TABLE_NAME + " VALUES (" + sudokuID + ", " + folderID + ", 0, " + SudokuGame.GAME_STATE_NOT_STARTED + ", 0, null, '" + data + "', null, null);";
-        db.execSQL(sql);
+        String sql = "INSERT INTO " + SudokuDatabase.SUDOKU_TABLE_NAME + " VALUES (" + sudokuID + ", " + folderID + ", 0, " + SudokuGame.GAME_STATE_NOT_STARTED + ", 0, null, ?, null, null, null, null, null);";
+        db.execSQL(sql, new Object[]{CellCollection.fromString(data).toByteArray()});
     }
 
     @Override
@@ -181,6 +190,59 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         if (oldVersion <= 8) {
             db.execSQL("ALTER TABLE " + SudokuDatabase.SUDOKU_TABLE_NAME + " ADD COLUMN " + SudokuColumns.COMMAND_STACK + " TEXT");
         }
+
+        if (oldVersion <= 9) {
+            db.execSQL("ALTER TABLE " + SudokuDatabase.SUDOKU_TABLE_NAME + " ADD COLUMN " + SudokuColumns.SOLUTION + " TEXT");
+        }
+
+        if (oldVersion <= 10) {
+            db.execSQL("ALTER TABLE " + SudokuDatabase.SUDOKU_TABLE_NAME + " ADD COLUMN " + SudokuColumns.DIFFICULTY + " INTEGER");
+        }
+
+        if (oldVersion <= 11) {
+            db.execSQL("ALTER TABLE " + SudokuDatabase.SUDOKU_TABLE_NAME + " ADD COLUMN " + SudokuColumns.FINGERPRINT + " INTEGER");
+            // fingerprints are computed later, see SudokuDatabase#updateFingerprints()
+            createFingerprintIndex(db);
+        }
+
+        // puzzles stored in text formats (version 12 and older) are read as they are and
+        // converted to the binary format when they are saved next time
+        if (oldVersion <= 13) {
+            createCommandTable(db);
+            moveCommandStacksToJournal(db);
+        }
+    }
+
+    /**
+     * Moves command stacks from the command_stack column of the puzzles to the journal
+     * of commands. Stacks which cannot be read are dropped.
+     */
+    private void moveCommandStacksToJournal(SQLiteDatabase db) {
+        try (Cursor c = db.query(SudokuDatabase.SUDOKU_TABLE_NAME,
+                new String[]{SudokuColumns._ID, SudokuColumns.COMMAND_STACK},
+                SudokuColumns.COMMAND_STACK + "<>''", null, null, null, null);
+             SQLiteStatement insert = SudokuDatabase.compileInsertCommand(db)) {
+            while (c.moveToNext()) {
+                CommandStack commandStack;
+                try {
+                    commandStack = CommandStack.deserialize(c.getString(1), null);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Command stack of puzzle " + c.getLong(0) + " could not be read.", e);
+                    continue;
+                }
+                SudokuDatabase.insertCommands(insert, c.getLong(0), commandStack);
+            }
+        }
+        db.execSQL("UPDATE " + SudokuDatabase.SUDOKU_TABLE_NAME + " SET " + SudokuColumns.COMMAND_STACK + "=null");
+    }
+
+    private void createCommandTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SudokuDatabase.COMMAND_TABLE_NAME + " ("
+                + CommandColumns.SUDOKU_ID + " INTEGER,"
+                + CommandColumns.SEQ + " INTEGER,"
+                + CommandColumns.DATA + " TEXT,"
+                + "PRIMARY KEY (" + CommandColumns.SUDOKU_ID + ", " + CommandColumns.SEQ + ")"
+                + ");");
     }
 
     private void createIndexes(SQLiteDatabase db) {
@@ -188,4 +250,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 "_idx1 on " +
                 SudokuDatabase.SUDOKU_TABLE_NAME + " (" + SudokuColumns.FOLDER_ID + ");");
     }
+
+    private void createFingerprintIndex(SQLiteDatabase db) {
+        db.execSQL("create index " + SudokuDatabase.SUDOKU_TABLE_NAME +
+                "_idx2 on " +
+                SudokuDatabase.SUDOKU_TABLE_NAME + " (" + SudokuColumns.FINGERPRINT + ");");
+    }
 }
@@ -31,4 +31,7 @@ public abstract class SudokuColumns implements BaseColumns {
     public static final String DATA = "data";
     public static final String PUZZLE_NOTE = "puzzle_note";
     public static final String COMMAND_STACK = "command_stack";
+    public static final String SOLUTION = "solution";
+    public static final String DIFFICULTY = "difficulty";
+    public static final String FINGERPRINT = "fingerprint";
 }
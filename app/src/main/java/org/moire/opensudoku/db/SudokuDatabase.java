@@ -27,14 +27,21 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
+import org.moire.opensudoku.game.BatchSolver;
+import org.moire.opensudoku.game.Canonicalizer;
 import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.game.FolderInfo;
+import org.moire.opensudoku.game.LogicalSolver;
+import org.moire.opensudoku.game.PuzzlePreview;
+import org.moire.opensudoku.game.ScratchBuilder;
 import org.moire.opensudoku.game.SudokuGame;
 import org.moire.opensudoku.game.command.CommandStack;
 import org.moire.opensudoku.gui.SudokuListFilter;
 import org.moire.opensudoku.gui.SudokuListSorter;
 
+import java.text.ParseException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -57,11 +64,15 @@ public class SudokuDatabase {
     public static final String DATABASE_NAME = "opensudoku";
     public static final String SUDOKU_TABLE_NAME = "sudoku";
     public static final String FOLDER_TABLE_NAME = "folder";
+    public static final String COMMAND_TABLE_NAME = "command";
 
-    //private static final String TAG = "SudokuDatabase";
+    private static final String TAG = "SudokuDatabase";
     private static final String INBOX_FOLDER_NAME = "Inbox";
     private DatabaseHelper mOpenHelper;
     private SQLiteStatement mInsertSudokuStatement;
+    private SQLiteStatement mFindFingerprintStatement;
+    private SQLiteStatement mInsertCommandStatement;
+    private Canonicalizer mCanonicalizer;
 
     public SudokuDatabase(Context context) {
         mOpenHelper = new DatabaseHelper(context);
@@ -246,7 +257,9 @@ public class SudokuDatabase {
 
         // TODO: should run in transaction
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        // delete all puzzles in folder we are going to delete
+        // delete commands of the puzzles and all puzzles in folder we are going to delete
+        db.delete(COMMAND_TABLE_NAME, CommandColumns.SUDOKU_ID + " in (select " + SudokuColumns._ID
+                + " from " + SUDOKU_TABLE_NAME + " where " + SudokuColumns.FOLDER_ID + "=" + folderID + ")", null);
         db.delete(SUDOKU_TABLE_NAME, SudokuColumns.FOLDER_ID + "=" + folderID, null);
         // delete the folder
         db.delete(FOLDER_TABLE_NAME, FolderColumns._ID + "=" + folderID, null);
@@ -275,6 +288,19 @@ public class SudokuDatabase {
             if (!filter.showStatePlaying) {
                 qb.appendWhere(" and " + SudokuColumns.STATE + "!=" + SudokuGame.GAME_STATE_PLAYING);
             }
+            if (!filter.showsAllDifficulties()) {
+                // puzzles which are not rated yet are always shown
+                StringBuilder where = new StringBuilder(" and (" + SudokuColumns.DIFFICULTY + " is null or "
+                        + SudokuColumns.DIFFICULTY + "<0");
+                for (int level = LogicalSolver.LEVEL_EASY; level <= LogicalSolver.LEVEL_EXPERT; level++) {
+                    if (filter.showsDifficultyLevel(level)) {
+                        where.append(" or ").append(SudokuColumns.DIFFICULTY).append(" between ")
+                                .append(LogicalSolver.getLevelMinDifficulty(level)).append(" and ")
+                                .append(LogicalSolver.getLevelMaxDifficulty(level));
+                    }
+                }
+                qb.appendWhere(where.append(")"));
+            }
         }
 
         SQLiteDatabase db = mOpenHelper.getReadableDatabase();
@@ -286,16 +312,21 @@ public class SudokuDatabase {
     /**
      * Returns list of sudoku game objects
      *
-     * @param folderID Primary key of folder.
+     * @param folderID     Primary key of folder.
+     * @param withCommands If false, command stacks of games in progress are not loaded (they are
+     *                     empty), which is much faster when the games are just going to be reset.
      * @return
      */
-    public List<SudokuGame> getAllSudokuByFolder(long folderID, SudokuListSorter sorter) {
+    public List<SudokuGame> getAllSudokuByFolder(long folderID, SudokuListSorter sorter, boolean withCommands) {
         Cursor cursor = getSudokuList(folderID, null, sorter);
         if (cursor.moveToFirst())
         {
             List<SudokuGame> sudokuList = new LinkedList<>();
             while (!cursor.isAfterLast()) {
-                sudokuList.add(extractSudokuGameFromCursorRow(cursor));
+                SudokuGame sudoku = extractSudokuGameFromCursorRow(cursor, withCommands);
+                if (sudoku != null) {
+                    sudokuList.add(sudoku);
+                }
                 cursor.moveToNext();
             }
             return sudokuList;
@@ -303,11 +334,187 @@ public class SudokuDatabase {
         return Collections.emptyList();
     }
 
+    /**
+     * Solves all puzzles in the given folder using {@link BatchSolver}. Puzzles are read from
+     * the database one by one as the solver is ready for them, so the whole folder is never
+     * loaded in memory. Returns after all puzzles are solved.
+     *
+     * @param folderID Primary key of folder.
+     * @param solver   Solver to use.
+     * @param listener Listener called with the result of each puzzle, ids of the results are
+     *                 primary keys of the puzzles.
+     * @return Number of puzzles in the folder.
+     */
+    public int solveFolder(long folderID, BatchSolver solver, BatchSolver.OnResultListener listener) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        try (Cursor c = db.query(SUDOKU_TABLE_NAME,
+                new String[]{SudokuColumns._ID, SudokuColumns.DATA},
+                SudokuColumns.FOLDER_ID + "=?", new String[]{String.valueOf(folderID)},
+                null, null, null)) {
+            return solver.solve(new BatchSolver.PuzzleSource() {
+                @Override
+                public boolean moveToNext() {
+                    return c.moveToNext();
+                }
+
+                @Override
+                public long getId() {
+                    return c.getLong(0);
+                }
+
+                @Override
+                public String getData() {
+                    // solver needs just the values
+                    CellCollection cells = getCells(c, 1);
+                    return cells == null ? null : cells.serialize(CellCollection.DATA_VERSION_PLAIN);
+                }
+            }, listener);
+        }
+    }
+
+    /**
+     * Rates difficulty of all puzzles in the given folder, which are not rated yet.
+     *
+     * @param folderID Primary key of folder.
+     * @return Number of rated puzzles.
+     */
+    public int rateFolder(long folderID) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        LogicalSolver solver = new LogicalSolver();
+        int count = 0;
+
+        db.beginTransaction();
+        try (Cursor c = db.query(SUDOKU_TABLE_NAME,
+                new String[]{SudokuColumns._ID, SudokuColumns.DATA},
+                SudokuColumns.FOLDER_ID + "=? and " + SudokuColumns.DIFFICULTY + " is null",
+                new String[]{String.valueOf(folderID)}, null, null, null);
+             SQLiteStatement update = db.compileStatement("update " + SUDOKU_TABLE_NAME
+                     + " set " + SudokuColumns.DIFFICULTY + "=? where " + SudokuColumns._ID + "=?")) {
+            while (c.moveToNext()) {
+                int difficulty = LogicalSolver.DIFFICULTY_UNKNOWN;
+                CellCollection cells = getCells(c, 1);
+                if (cells != null) {
+                    solver.setPuzzle(cells);
+                    solver.solve();
+                    difficulty = solver.getDifficulty();
+                }
+                update.bindLong(1, difficulty);
+                update.bindLong(2, c.getLong(0));
+                update.executeUpdateDelete();
+                count++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /**
+     * Sets difficulty of the puzzle, see {@link LogicalSolver#getDifficulty()}.
+     *
+     * @param sudokuID   Primary key of the puzzle.
+     * @param difficulty Difficulty of the puzzle.
+     */
+    public void updateDifficulty(long sudokuID, int difficulty) {
+        ContentValues values = new ContentValues();
+        values.put(SudokuColumns.DIFFICULTY, difficulty);
+
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.update(SUDOKU_TABLE_NAME, values, SudokuColumns._ID + "=" + sudokuID, null);
+    }
+
+    /**
+     * Computes fingerprints of all puzzles which do not have it yet (built-in puzzles and puzzles
+     * stored by older versions), so that they can be found by {@link #findDuplicates(long)}.
+     * Canonicalization is slow, so this should not be called on GUI thread.
+     *
+     * @return Number of updated puzzles.
+     */
+    public int updateFingerprints() {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int count = 0;
+
+        db.beginTransaction();
+        try (Cursor c = db.query(SUDOKU_TABLE_NAME,
+                new String[]{SudokuColumns._ID, SudokuColumns.DATA},
+                SudokuColumns.FINGERPRINT + " is null", null, null, null, null);
+             SQLiteStatement update = db.compileStatement("update " + SUDOKU_TABLE_NAME
+                     + " set " + SudokuColumns.FINGERPRINT + "=? where " + SudokuColumns._ID + "=?")) {
+            while (c.moveToNext()) {
+                CellCollection cells = getCells(c, 1);
+                if (cells != null) {
+                    update.bindLong(1, getFingerprint(cells));
+                    update.bindLong(2, c.getLong(0));
+                    update.executeUpdateDelete();
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /**
+     * Sets fingerprint of the puzzle, should be called when its givens change.
+     *
+     * @param sudokuID Primary key of the puzzle.
+     * @param cells    Cells of the puzzle.
+     */
+    public void updateFingerprint(long sudokuID, CellCollection cells) {
+        ContentValues values = new ContentValues();
+        values.put(SudokuColumns.FINGERPRINT, getFingerprint(cells));
+
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.update(SUDOKU_TABLE_NAME, values, SudokuColumns._ID + "=" + sudokuID, null);
+    }
+
+    /**
+     * Returns ids of the puzzles in any folder, which are the same as the given one, up to
+     * relabelling of digits, permutations of rows and columns and transposition. Puzzles without
+     * fingerprint are never reported, call {@link #updateFingerprints()} first.
+     *
+     * @param sudokuID Primary key of the puzzle.
+     */
+    public List<Long> findDuplicates(long sudokuID) {
+        List<Long> ids = new LinkedList<>();
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        try (Cursor c = db.rawQuery("select " + SudokuColumns._ID + " from " + SUDOKU_TABLE_NAME
+                        + " where " + SudokuColumns.FINGERPRINT + "=(select " + SudokuColumns.FINGERPRINT
+                        + " from " + SUDOKU_TABLE_NAME + " where " + SudokuColumns._ID + "=?) and "
+                        + SudokuColumns._ID + "<>?",
+                new String[]{String.valueOf(sudokuID), String.valueOf(sudokuID)})) {
+            while (c.moveToNext()) {
+                ids.add(c.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    private boolean containsFingerprint(long fingerprint) {
+        if (mFindFingerprintStatement == null) {
+            SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+            mFindFingerprintStatement = db.compileStatement("select count(*) from " + SUDOKU_TABLE_NAME
+                    + " where " + SudokuColumns.FINGERPRINT + "=?");
+        }
+        mFindFingerprintStatement.bindLong(1, fingerprint);
+        return mFindFingerprintStatement.simpleQueryForLong() > 0;
+    }
+
+    private long getFingerprint(CellCollection cells) {
+        if (mCanonicalizer == null) {
+            mCanonicalizer = new Canonicalizer();
+        }
+        return mCanonicalizer.getFingerprint(cells);
+    }
+
     /**
      * Returns sudoku game object.
      *
      * @param sudokuID Primary key of folder.
-     * @return
+     * @return Game or null if there is no such puzzle or its cells cannot be read.
      */
     public SudokuGame getSudoku(long sudokuID) {
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
@@ -324,40 +531,187 @@ public class SudokuDatabase {
                 null, null, null, null)) {
 
             if (c.moveToFirst()) {
-                s = extractSudokuGameFromCursorRow(c);
+                s = extractSudokuGameFromCursorRow(c, true);
             }
         }
 
         return s;
     }
 
-    private SudokuGame extractSudokuGameFromCursorRow(Cursor cursor) {
+    /**
+     * Reads cells of the puzzle from given column of the cursor. Puzzles are stored in binary
+     * format (see {@link CellCollection#toByteArray()}), databases of older versions stored them
+     * in text formats, which are kept until the puzzle is saved again. Text which is not valid
+     * is read as well as possible, as older versions did.
+     *
+     * @return Cells or null if the column is null or data cannot be read at all.
+     */
+    public static CellCollection getCells(Cursor cursor, int columnIndex) {
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
+            try {
+                return CellCollection.fromByteArray(cursor.getBlob(columnIndex));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        String data = cursor.getString(columnIndex);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return CellCollection.parse(data);
+        } catch (ParseException e) {
+            // read by the lenient code below
+        }
+        try {
+            return CellCollection.deserialize(data);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads just values and editable flags of the puzzle from given column of the cursor into
+     * given preview, see {@link #getCells(Cursor, int)}. This is much cheaper than reading
+     * the cells, preview can be reused for each row.
+     *
+     * @return False if the column is null or data are not valid, preview is empty then.
+     */
+    public static boolean getPreview(Cursor cursor, int columnIndex, PuzzlePreview preview) {
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
+            return preview.read(cursor.getBlob(columnIndex));
+        }
+
+        String data = cursor.getString(columnIndex);
+        if (data == null) {
+            preview.clear();
+            return false;
+        }
+        return preview.read(data);
+    }
+
+    /**
+     * Creates game from the current row of the cursor.
+     *
+     * @param withCommands If true, commands of game in progress are loaded from the journal.
+     * @return Game or null if cells of the puzzle cannot be read.
+     */
+    private SudokuGame extractSudokuGameFromCursorRow(Cursor cursor, boolean withCommands) {
         long id = cursor.getLong(cursor.getColumnIndex(SudokuColumns._ID));
         long created = cursor.getLong(cursor.getColumnIndex(SudokuColumns.CREATED));
-        String data = cursor.getString(cursor.getColumnIndex(SudokuColumns.DATA));
+        CellCollection cells = getCells(cursor, cursor.getColumnIndex(SudokuColumns.DATA));
+        if (cells == null) {
+            Log.e(TAG, "Puzzle with id " + id + " could not be read.");
+            return null;
+        }
         long lastPlayed = cursor.getLong(cursor.getColumnIndex(SudokuColumns.LAST_PLAYED));
         int state = cursor.getInt(cursor.getColumnIndex(SudokuColumns.STATE));
         long time = cursor.getLong(cursor.getColumnIndex(SudokuColumns.TIME));
         String note = cursor.getString(cursor.getColumnIndex(SudokuColumns.PUZZLE_NOTE));
+        String solution = cursor.getString(cursor.getColumnIndex(SudokuColumns.SOLUTION));
 
         SudokuGame sudoku = new SudokuGame();
         sudoku.setId(id);
         sudoku.setCreated(created);
-        sudoku.setCells(CellCollection.deserialize(data));
+        sudoku.setCells(cells);
+        sudoku.setSolution(solution);
         sudoku.setLastPlayed(lastPlayed);
         sudoku.setState(state);
         sudoku.setTime(time);
         sudoku.setNote(note);
 
-        if (sudoku.getState() == SudokuGame.GAME_STATE_PLAYING) {
-            String command_stack = cursor.getString(cursor.getColumnIndex(SudokuColumns.COMMAND_STACK));
-            if (command_stack != null && !command_stack.equals("")) {
-                sudoku.setCommandStack(CommandStack.deserialize(command_stack, sudoku.getCells()));
-            }
+        if (withCommands && sudoku.getState() == SudokuGame.GAME_STATE_PLAYING) {
+            loadCommands(id, sudoku.getCommandStack());
         }
         return sudoku;
     }
 
+    /**
+     * Pushes commands of given puzzle from the journal to given stack. Commands are not
+     * executed, cells are stored with their current values.
+     */
+    public void loadCommands(long sudokuID, CommandStack commandStack) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        try (Cursor c = db.query(COMMAND_TABLE_NAME, new String[]{CommandColumns.DATA},
+                CommandColumns.SUDOKU_ID + "=" + sudokuID, null, null, null, CommandColumns.SEQ)) {
+            while (c.moveToNext()) {
+                commandStack.pushSerialized(c.getString(0));
+            }
+        }
+        commandStack.setSavedCount(commandStack.size());
+    }
+
+    /**
+     * Saves commands of given puzzle to the journal. Only commands not saved yet are written
+     * and commands which were undone since the last save are deleted, so the cost does not
+     * depend on the length of the history.
+     */
+    private void saveCommands(long sudokuID, CommandStack commandStack) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        if (mInsertCommandStatement == null) {
+            mInsertCommandStatement = compileInsertCommand(db);
+        }
+        db.beginTransaction();
+        try {
+            db.delete(COMMAND_TABLE_NAME, CommandColumns.SUDOKU_ID + "=" + sudokuID
+                    + " and " + CommandColumns.SEQ + ">=" + commandStack.getSavedCount(), null);
+            insertCommands(mInsertCommandStatement, sudokuID, commandStack);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void deleteCommands(long sudokuID) {
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.delete(COMMAND_TABLE_NAME, CommandColumns.SUDOKU_ID + "=" + sudokuID, null);
+    }
+
+    static SQLiteStatement compileInsertCommand(SQLiteDatabase db) {
+        return db.compileStatement("insert into " + COMMAND_TABLE_NAME + " ("
+                + CommandColumns.SUDOKU_ID + ", " + CommandColumns.SEQ + ", " + CommandColumns.DATA
+                + ") values (?, ?, ?)");
+    }
+
+    /**
+     * Inserts commands of the stack which are not saved yet (see
+     * {@link CommandStack#getSavedCount()}) into the journal, using statement compiled by
+     * {@link #compileInsertCommand(SQLiteDatabase)}.
+     */
+    static void insertCommands(SQLiteStatement insert, long sudokuID, CommandStack commandStack) {
+        int size = commandStack.size();
+        for (int seq = commandStack.getSavedCount(); seq < size; seq++) {
+            StringBuilder sb = ScratchBuilder.acquire();
+            commandStack.serializeCommand(sb, seq);
+            insert.bindLong(1, sudokuID);
+            insert.bindLong(2, seq);
+            insert.bindString(3, ScratchBuilder.release(sb));
+            insert.executeInsert();
+        }
+        commandStack.setSavedCount(size);
+    }
+
+    /**
+     * Returns commands of given puzzle in the format of {@link CommandStack#serialize()},
+     * or null if there are none.
+     */
+    public String exportCommands(long sudokuID) {
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        try (Cursor c = db.query(COMMAND_TABLE_NAME, new String[]{CommandColumns.DATA},
+                CommandColumns.SUDOKU_ID + "=" + sudokuID, null, null, null, CommandColumns.SEQ)) {
+            if (c.getCount() == 0) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append(c.getCount()).append('|');
+            while (c.moveToNext()) {
+                sb.append(c.getString(0));
+            }
+            return sb.toString();
+        }
+    }
+
     /**
      * Inserts new puzzle into the database.
      *
@@ -368,40 +722,57 @@ public class SudokuDatabase {
     public long insertSudoku(long folderID, SudokuGame sudoku) {
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         ContentValues values = new ContentValues();
-        values.put(SudokuColumns.DATA, sudoku.getCells().serialize());
+        values.put(SudokuColumns.DATA, sudoku.getCells().toByteArray());
         values.put(SudokuColumns.CREATED, sudoku.getCreated());
         values.put(SudokuColumns.LAST_PLAYED, sudoku.getLastPlayed());
         values.put(SudokuColumns.STATE, sudoku.getState());
         values.put(SudokuColumns.TIME, sudoku.getTime());
         values.put(SudokuColumns.PUZZLE_NOTE, sudoku.getNote());
         values.put(SudokuColumns.FOLDER_ID, folderID);
-        String command_stack = "";
-        if (sudoku.getState() == SudokuGame.GAME_STATE_PLAYING) {
-            command_stack = sudoku.getCommandStack().serialize();
-        }
-        values.put(SudokuColumns.COMMAND_STACK, command_stack);
+        values.put(SudokuColumns.SOLUTION, sudoku.getSolution());
+        values.put(SudokuColumns.FINGERPRINT, getFingerprint(sudoku.getCells()));
 
         long rowId = db.insert(SUDOKU_TABLE_NAME, FolderColumns.NAME, values);
         if (rowId > 0) {
+            if (sudoku.getState() == SudokuGame.GAME_STATE_PLAYING) {
+                sudoku.getCommandStack().setSavedCount(0);
+                saveCommands(rowId, sudoku.getCommandStack());
+            }
             return rowId;
         }
 
         throw new SQLException("Failed to insert sudoku.");
     }
 
-    public long importSudoku(long folderID, SudokuImportParams pars) throws SudokuInvalidFormatException {
+    /**
+     * Imports puzzle into the database.
+     *
+     * @param skipDuplicate If true, puzzle is not imported when the same puzzle is already
+     *                      in any folder (see {@link #findDuplicates(long)} and
+     *                      {@link #updateFingerprints()}).
+     * @return Id of the new puzzle, or -1 if puzzle was not imported as duplicate.
+     */
+    public long importSudoku(long folderID, SudokuImportParams pars, boolean skipDuplicate)
+            throws SudokuInvalidFormatException {
         if (pars.data == null) {
             throw new SudokuInvalidFormatException(null);
         }
 
-        if (!CellCollection.isValid(pars.data)) {
-            throw new SudokuInvalidFormatException(pars.data);
+        CellCollection cells;
+        try {
+            cells = CellCollection.parse(pars.data);
+        } catch (ParseException e) {
+            throw new SudokuInvalidFormatException(pars.data, e.getErrorOffset());
+        }
+        long fingerprint = getFingerprint(cells);
+        if (skipDuplicate && containsFingerprint(fingerprint)) {
+            return -1;
         }
 
         if (mInsertSudokuStatement == null) {
             SQLiteDatabase db = mOpenHelper.getWritableDatabase();
             mInsertSudokuStatement = db.compileStatement(
-                    "insert into sudoku (folder_id, created, state, time, last_played, data, puzzle_note, command_stack) values (?, ?, ?, ?, ?, ?, ?, ?)"
+                    "insert into sudoku (folder_id, created, state, time, last_played, data, puzzle_note, command_stack, fingerprint, difficulty) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
             );
         }
 
@@ -410,27 +781,43 @@ public class SudokuDatabase {
         mInsertSudokuStatement.bindLong(3, pars.state);
         mInsertSudokuStatement.bindLong(4, pars.time);
         mInsertSudokuStatement.bindLong(5, pars.lastPlayed);
-        mInsertSudokuStatement.bindString(6, pars.data);
+        mInsertSudokuStatement.bindBlob(6, cells.toByteArray());
         if (pars.note == null) {
             mInsertSudokuStatement.bindNull(7);
         } else {
             mInsertSudokuStatement.bindString(7, pars.note);
         }
-        if (pars.command_stack == null) {
-            mInsertSudokuStatement.bindNull(8);
+        // commands are in the journal
+        mInsertSudokuStatement.bindNull(8);
+        mInsertSudokuStatement.bindLong(9, fingerprint);
+        if (pars.difficulty == null) {
+            mInsertSudokuStatement.bindNull(10);
         } else {
-            mInsertSudokuStatement.bindString(8, pars.command_stack);
+            mInsertSudokuStatement.bindLong(10, pars.difficulty);
         }
 
-
         long rowId = mInsertSudokuStatement.executeInsert();
         if (rowId > 0) {
+            if (pars.command_stack != null && !pars.command_stack.equals("")) {
+                importCommands(rowId, pars.command_stack);
+            }
             return rowId;
         }
 
         throw new SQLException("Failed to insert sudoku.");
     }
 
+    private void importCommands(long sudokuID, String data) {
+        CommandStack commandStack;
+        try {
+            commandStack = CommandStack.deserialize(data, null);
+        } catch (RuntimeException e) {
+            // puzzle is imported without the history, it is not needed to play it
+            return;
+        }
+        saveCommands(sudokuID, commandStack);
+    }
+
     /**
      * Returns List of sudokus to export.
      *
@@ -438,7 +825,7 @@ public class SudokuDatabase {
      * @return
      */
     public Cursor exportFolder(long folderID) {
-        String query = "select f._id as folder_id, f.name as folder_name, f.created as folder_created, s.created, s.state, s.time, s.last_played, s.data, s.puzzle_note, s.command_stack from folder f left outer join sudoku s on f._id = s.folder_id";
+        String query = "select f._id as folder_id, f.name as folder_name, f.created as folder_created, s.created, s.state, s.time, s.last_played, s.data, s.puzzle_note, s._id as sudoku_id from folder f left outer join sudoku s on f._id = s.folder_id";
         SQLiteDatabase db = mOpenHelper.getReadableDatabase();
         if (folderID != -1) {
             query += " where f._id = ?";
@@ -453,7 +840,7 @@ public class SudokuDatabase {
      * @return
      */
     public Cursor exportSudoku(long sudokuID) {
-        String query = "select f._id as folder_id, f.name as folder_name, f.created as folder_created, s.created, s.state, s.time, s.last_played, s.data, s.puzzle_note, s.command_stack from sudoku s inner join folder f on s.folder_id = f._id where s._id = ?";
+        String query = "select f._id as folder_id, f.name as folder_name, f.created as folder_created, s.created, s.state, s.time, s.last_played, s.data, s.puzzle_note, s._id as sudoku_id from sudoku s inner join folder f on s.folder_id = f._id where s._id = ?";
         SQLiteDatabase db = mOpenHelper.getReadableDatabase();
         return db.rawQuery(query, new String[]{String.valueOf(sudokuID)});
     }
@@ -465,19 +852,27 @@ public class SudokuDatabase {
      */
     public void updateSudoku(SudokuGame sudoku) {
         ContentValues values = new ContentValues();
-        values.put(SudokuColumns.DATA, sudoku.getCells().serialize());
+        values.put(SudokuColumns.DATA, sudoku.getCells().toByteArray());
         values.put(SudokuColumns.LAST_PLAYED, sudoku.getLastPlayed());
         values.put(SudokuColumns.STATE, sudoku.getState());
         values.put(SudokuColumns.TIME, sudoku.getTime());
         values.put(SudokuColumns.PUZZLE_NOTE, sudoku.getNote());
-        String command_stack = null;
-        if (sudoku.getState() == SudokuGame.GAME_STATE_PLAYING) {
-            command_stack = sudoku.getCommandStack().serialize();
-        }
-        values.put(SudokuColumns.COMMAND_STACK, command_stack);
+        values.put(SudokuColumns.SOLUTION, sudoku.getSolution());
 
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.update(SUDOKU_TABLE_NAME, values, SudokuColumns._ID + "=" + sudoku.getId(), null);
+        db.beginTransaction();
+        try {
+            db.update(SUDOKU_TABLE_NAME, values, SudokuColumns._ID + "=" + sudoku.getId(), null);
+            if (sudoku.getState() == SudokuGame.GAME_STATE_PLAYING) {
+                saveCommands(sudoku.getId(), sudoku.getCommandStack());
+            } else {
+                deleteCommands(sudoku.getId());
+                sudoku.getCommandStack().setSavedCount(0);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
 
@@ -489,12 +884,19 @@ public class SudokuDatabase {
     public void deleteSudoku(long sudokuID) {
         SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         db.delete(SUDOKU_TABLE_NAME, SudokuColumns._ID + "=" + sudokuID, null);
+        deleteCommands(sudokuID);
     }
 
     public void close() {
         if (mInsertSudokuStatement != null) {
             mInsertSudokuStatement.close();
         }
+        if (mFindFingerprintStatement != null) {
+            mFindFingerprintStatement.close();
+        }
+        if (mInsertCommandStatement != null) {
+            mInsertCommandStatement.close();
+        }
 
         mOpenHelper.close();
     }
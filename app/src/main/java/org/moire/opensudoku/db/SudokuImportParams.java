@@ -10,6 +10,7 @@ public class SudokuImportParams {
     public String data;
     public String note;
     public String command_stack;
+    public Integer difficulty; // null if puzzle is not rated
 
     public void clear() {
         created = 0;
@@ -19,5 +20,6 @@ public class SudokuImportParams {
         data = null;
         note = null;
         command_stack = null;
+        difficulty = null;
     }
 }
@@ -25,14 +25,29 @@ public class SudokuInvalidFormatException extends Exception {
     private static final long serialVersionUID = -5415032786641425594L;
 
     private final String mData;
+    private final int mErrorOffset;
 
     public SudokuInvalidFormatException(String data) {
         super("Invalid format of sudoku.");
         mData = data;
+        mErrorOffset = -1;
+    }
+
+    public SudokuInvalidFormatException(String data, int errorOffset) {
+        super("Invalid format of sudoku at position " + errorOffset + ".");
+        mData = data;
+        mErrorOffset = errorOffset;
     }
 
     public String getData() {
         return mData;
     }
 
+    /**
+     * Returns position of the first wrong character in the data, or -1 if it is not known.
+     */
+    public int getErrorOffset() {
+        return mErrorOffset;
+    }
+
 }
@@ -0,0 +1,202 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Dancing links stored in parallel arrays of ints instead of {@link Node} objects.
+ * <p>
+ * Index 0 is the head, indexes 1-324 are column headers, the remaining indexes are the nodes
+ * of the matrix rows. Links of a node are stored at its index in <code>mLeft</code>,
+ * <code>mRight</code>, <code>mUp</code> and <code>mDown</code> arrays.
+ */
+class ArrayDancingLinks extends DancingLinks {
+
+    private static final int HEAD = 0;
+    private static final int NUM_NODES = 1 + NUM_MATRIX_COLS + NUM_MATRIX_ROWS * NUM_CONSTRAINTS;
+
+    private final int[] mLeft = new int[NUM_NODES];
+    private final int[] mRight = new int[NUM_NODES];
+    private final int[] mUp = new int[NUM_NODES];
+    private final int[] mDown = new int[NUM_NODES];
+    // column header of each node
+    private final int[] mColumn = new int[NUM_NODES];
+    // matrix row of each node, -1 for head and column headers
+    private final int[] mRow = new int[NUM_NODES];
+    // number of nodes in each column, indexed by column header
+    private final int[] mCount = new int[NUM_NODES];
+    private final boolean[] mCovered = new boolean[NUM_NODES];
+    // first node of each matrix row
+    private final int[] mRowNodes = new int[NUM_MATRIX_ROWS];
+
+    // Covered column headers in the order in which they were covered.
+    private final int[] mCoverStack = new int[NUM_MATRIX_COLS];
+    private int mCoverStackSize;
+
+    ArrayDancingLinks() {
+        initializeLinks();
+    }
+
+    @Override
+    boolean coverRow(int matrixRow) {
+        int rowNode = mRowNodes[matrixRow];
+        int node = rowNode;
+        do {
+            if (mCovered[mColumn[node]]) {
+                return false;
+            }
+            node = mRight[node];
+        } while (node != rowNode);
+
+        do {
+            cover(mColumn[node]);
+            node = mRight[node];
+        } while (node != rowNode);
+        return true;
+    }
+
+    @Override
+    int getCoverDepth() {
+        return mCoverStackSize;
+    }
+
+    @Override
+    void uncoverTo(int depth) {
+        while (mCoverStackSize > depth) {
+            uncover(mCoverStack[mCoverStackSize - 1]);
+        }
+    }
+
+    @Override
+    boolean search() {
+        if (mRight[HEAD] == HEAD) {
+            return onSolutionFound();
+        }
+        if (onNodeExplored()) {
+            return true;
+        }
+
+        int col = chooseColumn();
+        if (mCount[col] == 0) {
+            return false;
+        }
+        cover(col);
+
+        for (int rowNode = mDown[col]; rowNode != col; rowNode = mDown[rowNode]) {
+            mSolution[mSolutionSize++] = mRow[rowNode];
+
+            for (int node = mRight[rowNode]; node != rowNode; node = mRight[node]) {
+                cover(mColumn[node]);
+            }
+
+            if (search()) {
+                return true;
+            }
+
+            // undo operations and try the next row
+            mSolutionSize--;
+            mBacktracks++;
+            for (int node = mLeft[rowNode]; node != rowNode; node = mLeft[node]) {
+                uncover(mColumn[node]);
+            }
+        }
+        uncover(col);
+        return false;
+    }
+
+    private void initializeLinks() {
+        mLeft[HEAD] = HEAD;
+        mRight[HEAD] = HEAD;
+        mRow[HEAD] = -1;
+
+        // create column headers
+        for (int header = 1; header <= NUM_MATRIX_COLS; header++) {
+            mUp[header] = header;
+            mDown[header] = header;
+            mColumn[header] = header;
+            mRow[header] = -1;
+
+            mRight[header] = HEAD;
+            mLeft[header] = mLeft[HEAD];
+            mRight[mLeft[HEAD]] = header;
+            mLeft[HEAD] = header;
+        }
+
+        // link node for each 1 in constraint matrix to its column and row
+        int node = NUM_MATRIX_COLS + 1;
+        for (int i = 0; i < NUM_MATRIX_ROWS; i++) {
+            int first = node;
+            for (int j : CONSTRAINT_MATRIX[i]) {
+                int header = j + 1;
+                mColumn[node] = header;
+                mRow[node] = i;
+
+                mDown[node] = header;
+                mUp[node] = mUp[header];
+                mDown[mUp[header]] = node;
+                mUp[header] = node;
+                mCount[header]++;
+
+                mRight[node] = first;
+                mLeft[node] = node == first ? node : mLeft[first];
+                mRight[mLeft[node]] = node;
+                mLeft[first] = node;
+
+                node++;
+            }
+            mRowNodes[i] = first;
+        }
+    }
+
+    /**
+     * Unlinks column and all rows intersecting it from the links.
+     */
+    private void cover(int col) {
+        mLeft[mRight[col]] = mLeft[col];
+        mRight[mLeft[col]] = mRight[col];
+
+        for (int rowNode = mDown[col]; rowNode != col; rowNode = mDown[rowNode]) {
+            for (int node = mRight[rowNode]; node != rowNode; node = mRight[node]) {
+                mDown[mUp[node]] = mDown[node];
+                mUp[mDown[node]] = mUp[node];
+                mCount[mColumn[node]]--;
+            }
+        }
+
+        mCovered[col] = true;
+        mCoverStack[mCoverStackSize++] = col;
+        mCoveredColumns++;
+    }
+
+    /**
+     * Links column back, columns have to be uncovered in the reverse order in which
+     * they were covered.
+     */
+    private void uncover(int col) {
+        for (int rowNode = mUp[col]; rowNode != col; rowNode = mUp[rowNode]) {
+            for (int node = mLeft[rowNode]; node != rowNode; node = mLeft[node]) {
+                mDown[mUp[node]] = node;
+                mUp[mDown[node]] = node;
+                mCount[mColumn[node]]++;
+            }
+        }
+        mLeft[mRight[col]] = col;
+        mRight[mLeft[col]] = col;
+
+        mCovered[col] = false;
+        mCoverStackSize--;
+    }
+
+    /**
+     * Returns column header with lowest # of nodes
+     */
+    private int chooseColumn() {
+        int best = HEAD;
+        int lowestNum = Integer.MAX_VALUE;
+
+        for (int col = mRight[HEAD]; col != HEAD; col = mRight[col]) {
+            if (mCount[col] < lowestNum) {
+                best = col;
+                lowestNum = mCount[col];
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,61 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Result of one puzzle solved by {@link BatchSolver}.
+ */
+public class BatchResult {
+
+    private final long mId;
+    private final SolverResult mResult;
+
+    /**
+     * @param id     Id of the puzzle given by {@link BatchSolver.PuzzleSource}.
+     * @param result Result of the search, null if puzzle data are not valid.
+     */
+    public BatchResult(long id, SolverResult result) {
+        mId = id;
+        mResult = result;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    /**
+     * Returns false if puzzle data could not be read, other methods should not be used then.
+     */
+    public boolean isValid() {
+        return mResult != null;
+    }
+
+    /**
+     * Returns result of the search, which was limited to two solutions.
+     */
+    public SolverResult getResult() {
+        return mResult;
+    }
+
+    public boolean isSolvable() {
+        return mResult.getSolutionCount() > 0;
+    }
+
+    /**
+     * Returns true if puzzle has exactly one solution.
+     */
+    public boolean isUnique() {
+        return mResult.getStatus() == SolverResult.STATUS_SOLVED
+                && mResult.getSolutionCount() == 1;
+    }
+
+    /**
+     * Returns number of nodes explored by the solver, which can be used as rough estimate
+     * of the puzzle difficulty.
+     */
+    public long getRating() {
+        return mResult.getExploredNodes();
+    }
+
+    public SolverStats getStats() {
+        return mResult.getStats();
+    }
+}
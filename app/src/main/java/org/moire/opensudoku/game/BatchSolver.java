@@ -0,0 +1,221 @@
+package org.moire.opensudoku.game;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves and checks uniqueness of many puzzles at once, using all available cores.
+ * <p>
+ * Puzzles are read from {@link PuzzleSource} one by one and only a few of them are waiting
+ * for a free thread at any time, so source backed by database cursor can be used for folders
+ * with any number of puzzles. Results are streamed to {@link OnResultListener} as soon as
+ * each puzzle is done, so they do not come in the order of the source.
+ * <p>
+ * Each worker thread has its own {@link SolverEngine}, which is reused for all the puzzles
+ * solved by this thread.
+ */
+public class BatchSolver {
+
+    /**
+     * Maximum number of nodes explored for one puzzle.
+     */
+    public static final long NODE_BUDGET = 1000000;
+
+    // Number of puzzles waiting for a free thread per each thread.
+    private static final int QUEUE_SIZE_PER_THREAD = 4;
+
+    private final int mThreadCount;
+    private volatile boolean mCancelled;
+
+    /**
+     * Creates solver which uses one thread per each available core.
+     */
+    public BatchSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchSolver(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        mThreadCount = threadCount;
+    }
+
+    /**
+     * Solves all the puzzles from the source, returns after all of them are done or the
+     * batch is cancelled.
+     *
+     * @param source   Puzzles to solve, it is read on the calling thread only.
+     * @param listener Listener called with the result of each puzzle, it is called from
+     *                 multiple threads at once, so it has to be thread safe.
+     * @return Number of puzzles read from the source.
+     */
+    public int solve(PuzzleSource source, OnResultListener listener) {
+        mCancelled = false;
+
+        final ThreadLocal<SolverEngine> solvers = new ThreadLocal<SolverEngine>() {
+            @Override
+            protected SolverEngine initialValue() {
+                return SolverEngineFactory.create();
+            }
+        };
+
+        // when the queue is full, calling thread solves the puzzle itself, this way the
+        // source is not read faster than the puzzles are solved
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(mThreadCount, mThreadCount,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(mThreadCount * QUEUE_SIZE_PER_THREAD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        int count = 0;
+        try {
+            while (!mCancelled && source.moveToNext()) {
+                final long id = source.getId();
+                final String data = source.getData();
+                executor.execute(() -> {
+                    if (!mCancelled) {
+                        listener.onResult(solvePuzzle(solvers.get(), id, data));
+                    }
+                });
+                count++;
+            }
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+        return count;
+    }
+
+    /**
+     * Solves given puzzles, see {@link #solve(PuzzleSource, OnResultListener)}. Ids of the
+     * results are ids of the games.
+     */
+    public int solveGames(List<SudokuGame> games, OnResultListener listener) {
+        return solve(new PuzzleSource() {
+            private int mIndex = -1;
+
+            @Override
+            public boolean moveToNext() {
+                return ++mIndex < games.size();
+            }
+
+            @Override
+            public long getId() {
+                return games.get(mIndex).getId();
+            }
+
+            @Override
+            public String getData() {
+                return games.get(mIndex).getCells().serialize();
+            }
+        }, listener);
+    }
+
+    /**
+     * Solves puzzles given in any format accepted by {@link CellCollection#deserialize(String)},
+     * see {@link #solve(PuzzleSource, OnResultListener)}. Ids of the results are indexes
+     * in the list.
+     */
+    public int solveData(List<String> data, OnResultListener listener) {
+        return solve(new PuzzleSource() {
+            private int mIndex = -1;
+
+            @Override
+            public boolean moveToNext() {
+                return ++mIndex < data.size();
+            }
+
+            @Override
+            public long getId() {
+                return mIndex;
+            }
+
+            @Override
+            public String getData() {
+                return data.get(mIndex);
+            }
+        }, listener);
+    }
+
+    /**
+     * Stops the batch, can be called from any thread. Puzzles which are being solved
+     * at the moment are finished, but no more results are reported.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    private static BatchResult solvePuzzle(SolverEngine solver, long id, String data) {
+        CellCollection cells;
+        try {
+            cells = data == null ? null : CellCollection.parse(data);
+        } catch (ParseException e) {
+            cells = null;
+        }
+        if (cells == null) {
+            return new BatchResult(id, null);
+        }
+
+        cells.markFilledCellsAsNotEditable();
+        solver.setPuzzle(cells);
+        // two solutions are enough to tell whether the solution is unique
+        return new BatchResult(id,
+                solver.countSolutions(2, new SolverControl(NODE_BUDGET, SolverControl.NO_LIMIT)));
+    }
+
+    private void awaitTermination(ThreadPoolExecutor executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // wait for the running puzzles anyway, listener must not be called after
+                // this method returns
+                interrupted = true;
+                mCancelled = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puzzles to be solved by the batch, works similarly as database cursor.
+     */
+    public interface PuzzleSource {
+        /**
+         * Moves to the next puzzle, must be called before the first puzzle is read.
+         *
+         * @return False if there are no more puzzles.
+         */
+        boolean moveToNext();
+
+        /**
+         * Returns id of the current puzzle, which is passed to its {@link BatchResult}.
+         */
+        long getId();
+
+        /**
+         * Returns current puzzle in any format accepted by
+         * {@link CellCollection#deserialize(String)}.
+         */
+        String getData();
+    }
+
+    public interface OnResultListener {
+        /**
+         * Called when puzzle is done, from the thread which solved it.
+         */
+        void onResult(BatchResult result);
+    }
+}
@@ -0,0 +1,331 @@
+package org.moire.opensudoku.game;
+
+import java.util.ArrayList;
+
+/**
+ * Sudoku solver based on constraint propagation.
+ * <p>
+ * Candidates of each cell are represented by 9-bit mask (bit 0 for value 1, bit 8 for
+ * value 9). Naked and hidden singles are filled in until nothing changes, then the cell with
+ * the fewest candidates is chosen and each of its candidates is tried in turn. All the state
+ * is kept in arrays of ints, placed values are recorded on a trail so they can be taken back
+ * when backtracking, so no objects are allocated during the search.
+ */
+public class BitmaskSolver implements SolverEngine {
+
+    private static final int NUM_CELLS = 81;
+    private static final int ALL_VALUES = 0x1FF;
+
+    private static final int[] CELL_ROW = CellCollection.CELL_ROW;
+    private static final int[] CELL_COL = CellCollection.CELL_COL;
+    private static final int[] CELL_BOX = CellCollection.CELL_BOX;
+    private static final int[][] UNITS = CellCollection.GROUP_CELLS;
+
+    private final int[] mValues = new int[NUM_CELLS];
+    private final boolean[] mGivens = new boolean[NUM_CELLS];
+    private final int[] mRowUsed = new int[9];
+    private final int[] mColUsed = new int[9];
+    private final int[] mBoxUsed = new int[9];
+
+    // Cells in the order in which their values were placed.
+    private final int[] mTrail = new int[NUM_CELLS];
+    private int mTrailSize;
+    // Size of the trail after the givens of the current puzzle were placed.
+    private int mPuzzleTrailSize;
+    // True when the givens of the current puzzle are in conflict with each other.
+    private boolean mContradiction;
+
+    private final int[] mSolution = new int[NUM_CELLS];
+    // Search stops after this number of solutions is found.
+    private int mSolutionLimit;
+    private int mSolutionCount;
+
+    private SolverControl mControl;
+    private long mExploredNodes;
+    private long mBacktracks;
+    // Number of values placed, including those placed by propagation.
+    private long mPlacements;
+    private int mMaxDepth;
+    // True if the search was stopped by mControl.
+    private boolean mStopped;
+
+    @Override
+    public void setPuzzle(CellCollection cells) {
+        undoTo(0);
+        mContradiction = false;
+
+        for (int index = 0; index < NUM_CELLS; index++) {
+            int val = cells.getValue(index);
+            mGivens[index] = !cells.isEditable(index) && val != 0;
+            if (mGivens[index] && !mContradiction) {
+                if ((getCandidates(index) & (1 << (val - 1))) == 0) {
+                    mContradiction = true;
+                } else {
+                    place(index, val);
+                }
+            }
+        }
+        mPuzzleTrailSize = mTrailSize;
+    }
+
+    /**
+     * Sets puzzle given as values of the cells indexed by row * 9 + column, 0 for empty cell.
+     * Used where many puzzles are checked and creating {@link CellCollection} for each of them
+     * would be wasteful.
+     */
+    void setPuzzle(int[] values) {
+        undoTo(0);
+        mContradiction = false;
+
+        for (int index = 0; index < NUM_CELLS; index++) {
+            int val = values[index];
+            mGivens[index] = val != 0;
+            if (mGivens[index] && !mContradiction) {
+                if ((getCandidates(index) & (1 << (val - 1))) == 0) {
+                    mContradiction = true;
+                } else {
+                    place(index, val);
+                }
+            }
+        }
+        mPuzzleTrailSize = mTrailSize;
+    }
+
+    /**
+     * Copies the first solution found by the last search to given array, indexed
+     * by row * 9 + column.
+     */
+    void getSolution(int[] values) {
+        System.arraycopy(mSolution, 0, values, 0, NUM_CELLS);
+    }
+
+    @Override
+    public ArrayList<int[]> solve() {
+        return solve(null).getValues();
+    }
+
+    @Override
+    public SolverResult solve(SolverControl control) {
+        return search(1, control);
+    }
+
+    @Override
+    public int countSolutions(int limit) {
+        return countSolutions(limit, null).getSolutionCount();
+    }
+
+    @Override
+    public SolverResult countSolutions(int limit, SolverControl control) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1.");
+        }
+        return search(limit, control);
+    }
+
+    private SolverResult search(int solutionLimit, SolverControl control) {
+        ArrayList<int[]> finalValues = new ArrayList<>();
+        if (mContradiction) {
+            return new SolverResult(SolverResult.STATUS_NO_SOLUTION, finalValues, 0,
+                    SolverStats.EMPTY);
+        }
+
+        long start = System.nanoTime();
+        mSolutionLimit = solutionLimit;
+        mSolutionCount = 0;
+        mControl = control;
+        mExploredNodes = 0;
+        mBacktracks = 0;
+        mPlacements = 0;
+        mMaxDepth = 0;
+        mStopped = false;
+        if (control != null) {
+            control.start();
+        }
+        search(0);
+        SolverStats stats = new SolverStats(mExploredNodes, mBacktracks, mPlacements, mMaxDepth,
+                System.nanoTime() - start);
+        SolverMetrics.record(stats);
+
+        if (mSolutionCount > 0) {
+            for (int cell = 0; cell < NUM_CELLS; cell++) {
+                if (!mGivens[cell]) {
+                    finalValues.add(new int[]{CELL_ROW[cell], CELL_COL[cell], mSolution[cell]});
+                }
+            }
+        }
+
+        int status;
+        if (mStopped) {
+            status = control.getStopStatus();
+        } else if (mSolutionCount > 0) {
+            status = SolverResult.STATUS_SOLVED;
+        } else {
+            status = SolverResult.STATUS_NO_SOLUTION;
+        }
+
+        // restore state after setPuzzle, so the same puzzle can be solved again
+        undoTo(mPuzzleTrailSize);
+
+        return new SolverResult(status, finalValues, mSolutionCount, stats);
+    }
+
+    /**
+     * Searches for solutions, first found solution is stored in <code>mSolution</code>.
+     *
+     * @param depth Number of choices made so far.
+     * @return true if the search was stopped because of the solution limit or by mControl.
+     */
+    private boolean search(int depth) {
+        mExploredNodes++;
+        if (depth > mMaxDepth) {
+            mMaxDepth = depth;
+        }
+        if (mControl != null && mControl.shouldStop(mExploredNodes)) {
+            mStopped = true;
+            return true;
+        }
+
+        int mark = mTrailSize;
+        if (!propagate()) {
+            undoTo(mark);
+            return false;
+        }
+
+        // choose cell with minimum remaining values
+        int bestCell = -1;
+        int bestCount = 10;
+        for (int cell = 0; cell < NUM_CELLS && bestCount > 2; cell++) {
+            if (mValues[cell] == 0) {
+                int count = Integer.bitCount(getCandidates(cell));
+                if (count < bestCount) {
+                    bestCell = cell;
+                    bestCount = count;
+                }
+            }
+        }
+
+        if (bestCell == -1) {
+            mSolutionCount++;
+            if (mSolutionCount == 1) {
+                System.arraycopy(mValues, 0, mSolution, 0, NUM_CELLS);
+            }
+            if (mSolutionCount >= mSolutionLimit) {
+                return true;
+            }
+            undoTo(mark);
+            return false;
+        }
+
+        int candidates = getCandidates(bestCell);
+        while (candidates != 0) {
+            int bit = candidates & -candidates;
+            candidates ^= bit;
+
+            int branchMark = mTrailSize;
+            place(bestCell, Integer.numberOfTrailingZeros(bit) + 1);
+            if (search(depth + 1)) {
+                return true;
+            }
+            undoTo(branchMark);
+            mBacktracks++;
+        }
+
+        undoTo(mark);
+        return false;
+    }
+
+    /**
+     * Fills in naked and hidden singles until there are none left.
+     *
+     * @return false if contradiction was found (cell or value with no possible placement).
+     */
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // naked singles - cells with only one candidate
+            for (int cell = 0; cell < NUM_CELLS; cell++) {
+                if (mValues[cell] == 0) {
+                    int candidates = getCandidates(cell);
+                    if (candidates == 0) {
+                        return false;
+                    }
+                    if ((candidates & (candidates - 1)) == 0) {
+                        place(cell, Integer.numberOfTrailingZeros(candidates) + 1);
+                        changed = true;
+                    }
+                }
+            }
+
+            // hidden singles - values with only one possible cell in a group
+            for (int[] unit : UNITS) {
+                int once = 0;
+                int twice = 0;
+                int placed = 0;
+                for (int cell : unit) {
+                    if (mValues[cell] == 0) {
+                        int candidates = getCandidates(cell);
+                        twice |= once & candidates;
+                        once |= candidates;
+                    } else {
+                        placed |= 1 << (mValues[cell] - 1);
+                    }
+                }
+
+                if ((once | placed) != ALL_VALUES) {
+                    return false;
+                }
+
+                int hidden = once & ~twice;
+                while (hidden != 0) {
+                    int bit = hidden & -hidden;
+                    hidden ^= bit;
+                    boolean found = false;
+                    for (int cell : unit) {
+                        if (mValues[cell] == 0 && (getCandidates(cell) & bit) != 0) {
+                            place(cell, Integer.numberOfTrailingZeros(bit) + 1);
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        // the only cell for this value was taken by another hidden single
+                        return false;
+                    }
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int getCandidates(int cell) {
+        return ~(mRowUsed[CELL_ROW[cell]] | mColUsed[CELL_COL[cell]] | mBoxUsed[CELL_BOX[cell]])
+                & ALL_VALUES;
+    }
+
+    private void place(int cell, int value) {
+        mPlacements++;
+        int bit = 1 << (value - 1);
+        mValues[cell] = value;
+        mRowUsed[CELL_ROW[cell]] |= bit;
+        mColUsed[CELL_COL[cell]] |= bit;
+        mBoxUsed[CELL_BOX[cell]] |= bit;
+        mTrail[mTrailSize++] = cell;
+    }
+
+    /**
+     * Takes back placed values until trail has given size.
+     */
+    private void undoTo(int trailSize) {
+        while (mTrailSize > trailSize) {
+            int cell = mTrail[--mTrailSize];
+            int mask = ~(1 << (mValues[cell] - 1));
+            mValues[cell] = 0;
+            mRowUsed[CELL_ROW[cell]] &= mask;
+            mColUsed[CELL_COL[cell]] &= mask;
+            mBoxUsed[CELL_BOX[cell]] &= mask;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.moire.opensudoku.game;
+
+import java.util.Arrays;
+
+/**
+ * Finds canonical form of the puzzle, which is the same for all the puzzles which differ only
+ * by relabelling of the digits, permutation of rows within bands, permutation of bands, the same
+ * for columns and stacks, and transposition. Canonical form is the minimal one
+ * (minlex) of all the equivalent puzzles, when the puzzle is read row by row as 81 digits and
+ * empty cells are 0.
+ * <p>
+ * Rows of the result are chosen one by one. Every partial result which is still minimal is kept,
+ * together with the column permutation and digit relabelling it uses, so only a small part of
+ * the 3 359 232 arrangements is ever looked at. Partial results which differ only by the order
+ * of the rows used so far lead to the same results, so only one of them is kept. Digits are
+ * relabelled in the order of their first occurrence, which gives the minimal relabelling for
+ * given arrangement of the cells.
+ * <p>
+ * Instances can be reused, they are not thread safe.
+ */
+public class Canonicalizer {
+
+    private static final int NUM_CELLS = 81;
+
+    /**
+     * All the permutations of columns preserving stacks: column j of the result is column
+     * COLUMN_PERMUTATIONS[p][j] of the puzzle.
+     */
+    private static final int[][] COLUMN_PERMUTATIONS = new int[1296][9];
+    private static final int[][] PERMUTATIONS_OF_3 = {
+            {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    // Layout of one partial result in mStates.
+    private static final int STATE_TRANSPOSED = 0;
+    private static final int STATE_PERMUTATION = 1;
+    private static final int STATE_NEXT_LABEL = 2;
+    // labels of digits 0-9, 0 is always 0
+    private static final int STATE_LABELS = 3;
+    // rows of the puzzle chosen so far as bitmask
+    private static final int STATE_USED_ROWS = 13;
+    // band of the last chosen row
+    private static final int STATE_BAND = 14;
+    private static final int STATE_SIZE = 15;
+
+    // FNV-1a hash parameters
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    static {
+        int p = 0;
+        for (int[] stacks : PERMUTATIONS_OF_3) {
+            for (int[] first : PERMUTATIONS_OF_3) {
+                for (int[] second : PERMUTATIONS_OF_3) {
+                    for (int[] third : PERMUTATIONS_OF_3) {
+                        int[][] inStack = {first, second, third};
+                        for (int j = 0; j < 9; j++) {
+                            COLUMN_PERMUTATIONS[p][j] = stacks[j / 3] * 3 + inStack[j / 3][j % 3];
+                        }
+                        p++;
+                    }
+                }
+            }
+        }
+    }
+
+    // the puzzle and its transposition
+    private final int[][] mGrids = new int[2][NUM_CELLS];
+    private final int[] mResult = new int[NUM_CELLS];
+
+    // partial results of the current row and the next row
+    private int[] mStates = new int[2 * COLUMN_PERMUTATIONS.length * STATE_SIZE];
+    private int mStateCount;
+    private int[] mNextStates = new int[mStates.length];
+    private int mNextStateCount;
+
+    // Hash table of next states, slot is used only if its stamp is the current one.
+    private int[] mTable = new int[1 << 14];
+    private int[] mTableStamps = new int[mTable.length];
+    private int mStamp;
+
+    private final int[] mRow = new int[9];
+    private final int[] mLabels = new int[10];
+
+    /**
+     * Returns canonical form of the givens (cells which are not editable) of the puzzle,
+     * as 81 digits.
+     */
+    public String canonicalize(CellCollection cells) {
+        int[] values = new int[NUM_CELLS];
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            values[cell] = cells.isEditable(cell) ? 0 : cells.getValue(cell);
+        }
+        return canonicalize(values);
+    }
+
+    /**
+     * Returns canonical form of the puzzle given as values of the cells indexed
+     * by row * 9 + column, 0 for empty cell.
+     */
+    public String canonicalize(int[] values) {
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            mGrids[0][cell] = values[cell];
+            mGrids[1][(cell % 9) * 9 + cell / 9] = values[cell];
+        }
+
+        mStateCount = 0;
+        for (int transposed = 0; transposed < 2; transposed++) {
+            for (int p = 0; p < COLUMN_PERMUTATIONS.length; p++) {
+                int state = mStateCount++ * STATE_SIZE;
+                Arrays.fill(mStates, state, state + STATE_SIZE, 0);
+                mStates[state + STATE_TRANSPOSED] = transposed;
+                mStates[state + STATE_PERMUTATION] = p;
+                mStates[state + STATE_NEXT_LABEL] = 1;
+            }
+        }
+
+        for (int position = 0; position < 9; position++) {
+            chooseRow(position);
+        }
+
+        char[] result = new char[NUM_CELLS];
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            result[cell] = (char) ('0' + mResult[cell]);
+        }
+        return new String(result);
+    }
+
+    /**
+     * Returns 64-bit fingerprint of the canonical form of the givens of the puzzle. Equivalent
+     * puzzles have the same fingerprint.
+     */
+    public long getFingerprint(CellCollection cells) {
+        return getFingerprint(canonicalize(cells));
+    }
+
+    /**
+     * Returns 64-bit fingerprint of given canonical form.
+     */
+    public static long getFingerprint(String canonical) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < canonical.length(); i++) {
+            hash ^= canonical.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Extends all the partial results by one row, keeps only those which are minimal.
+     */
+    private void chooseRow(int position) {
+        int offset = position * 9;
+        Arrays.fill(mResult, offset, offset + 9, Integer.MAX_VALUE);
+        clearNextStates();
+
+        for (int s = 0; s < mStateCount; s++) {
+            int state = s * STATE_SIZE;
+            int usedRows = mStates[state + STATE_USED_ROWS];
+            int firstRow;
+            int lastRow;
+            if (position % 3 == 0) {
+                // new band starts, any row of any band not used yet can be first
+                firstRow = 0;
+                lastRow = 8;
+            } else {
+                int band = mStates[state + STATE_BAND];
+                firstRow = band * 3;
+                lastRow = band * 3 + 2;
+            }
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                if ((usedRows & (1 << row)) != 0
+                        || (position % 3 == 0 && (usedRows & (7 << (row / 3 * 3))) != 0)) {
+                    continue;
+                }
+                int cmp = compareRow(state, row, offset);
+                if (cmp > 0) {
+                    continue;
+                }
+                if (cmp < 0) {
+                    System.arraycopy(mRow, 0, mResult, offset, 9);
+                    clearNextStates();
+                }
+                addNextState(state, row);
+            }
+        }
+
+        int[] states = mStates;
+        mStates = mNextStates;
+        mNextStates = states;
+        mStateCount = mNextStateCount;
+    }
+
+    /**
+     * Computes given row of the puzzle in the arrangement of the state into <code>mRow</code>
+     * and <code>mLabels</code>, and compares it with the best row found so far.
+     *
+     * @return Negative number if row is better than the best one, 0 if it is the same
+     * and positive if it is worse (computation is not finished then).
+     */
+    private int compareRow(int state, int row, int offset) {
+        int[] grid = mGrids[mStates[state + STATE_TRANSPOSED]];
+        int[] permutation = COLUMN_PERMUTATIONS[mStates[state + STATE_PERMUTATION]];
+        System.arraycopy(mStates, state + STATE_LABELS, mLabels, 0, 10);
+        int nextLabel = mStates[state + STATE_NEXT_LABEL];
+
+        boolean better = false;
+        for (int j = 0; j < 9; j++) {
+            int digit = grid[row * 9 + permutation[j]];
+            if (digit != 0 && mLabels[digit] == 0) {
+                mLabels[digit] = nextLabel++;
+            }
+            int label = mLabels[digit];
+            mRow[j] = label;
+            if (!better) {
+                if (label > mResult[offset + j]) {
+                    return 1;
+                }
+                better = label < mResult[offset + j];
+            }
+        }
+        mLabels[0] = nextLabel;
+        return better ? -1 : 0;
+    }
+
+    private void clearNextStates() {
+        mNextStateCount = 0;
+        mStamp++;
+    }
+
+    private void addNextState(int state, int row) {
+        int next = mNextStateCount * STATE_SIZE;
+        if (next + STATE_SIZE > mNextStates.length) {
+            mNextStates = Arrays.copyOf(mNextStates, mNextStates.length * 2);
+        }
+        mNextStates[next + STATE_TRANSPOSED] = mStates[state + STATE_TRANSPOSED];
+        mNextStates[next + STATE_PERMUTATION] = mStates[state + STATE_PERMUTATION];
+        // next label is passed in mLabels[0] by compareRow
+        mNextStates[next + STATE_NEXT_LABEL] = mLabels[0];
+        mNextStates[next + STATE_LABELS] = 0;
+        System.arraycopy(mLabels, 1, mNextStates, next + STATE_LABELS + 1, 9);
+        mNextStates[next + STATE_USED_ROWS] = mStates[state + STATE_USED_ROWS] | (1 << row);
+        mNextStates[next + STATE_BAND] = row / 3;
+
+        if (mNextStateCount * 2 >= mTable.length) {
+            growTable();
+        }
+        if (insertIntoTable(next)) {
+            mNextStateCount++;
+        }
+    }
+
+    /**
+     * Inserts state into the hash table of next states.
+     *
+     * @return False if the same state is already there.
+     */
+    private boolean insertIntoTable(int next) {
+        int hash = 0;
+        for (int i = 0; i < STATE_SIZE; i++) {
+            hash = hash * 31 + mNextStates[next + i];
+        }
+        int mask = mTable.length - 1;
+        for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            if (mTableStamps[slot] != mStamp) {
+                mTableStamps[slot] = mStamp;
+                mTable[slot] = next;
+                return true;
+            }
+            int other = mTable[slot];
+            int i = 0;
+            while (i < STATE_SIZE && mNextStates[other + i] == mNextStates[next + i]) {
+                i++;
+            }
+            if (i == STATE_SIZE) {
+                return false;
+            }
+        }
+    }
+
+    private void growTable() {
+        mTable = new int[mTable.length * 2];
+        mTableStamps = new int[mTable.length];
+        mStamp++;
+        int count = mNextStateCount;
+        for (int i = 0; i < count; i++) {
+            insertIntoTable(i * STATE_SIZE);
+        }
+    }
+}
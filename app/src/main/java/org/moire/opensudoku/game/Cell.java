@@ -20,82 +20,24 @@
 
 package org.moire.opensudoku.game;
 
-import java.util.StringTokenizer;
-
 /**
  * Sudoku cell. Every cell has value, some notes attached to it and some basic
  * state (whether it is editable and valid).
+ * <p>
+ * Cell holds no data itself, it is just a view of one cell of {@link CellCollection},
+ * which stores the data of all the cells in arrays of primitives. Views are created
+ * by the collection when they are needed.
  *
  * @author romario
  */
 public class Cell {
-    private final Object mCellCollectionLock = new Object();
-    // if cell is included in collection, here are some additional information
-    // about collection and cell's position in it
-    private CellCollection mCellCollection;
-    private int mRowIndex = -1;
-    private int mColumnIndex = -1;
-    private CellGroup mSector; // sector containing this cell
-    private CellGroup mRow; // row containing this cell
-    private CellGroup mColumn; // column containing this cell
-
-    private int mValue;
-    private CellNote mNote;
-    private boolean mEditable;
-    private boolean mValid;
-
-    /**
-     * Creates empty editable cell.
-     */
-    public Cell() {
-        this(0, new CellNote(), true, true);
-    }
-
-    /**
-     * Creates empty editable cell containing given value.
-     *
-     * @param value Value of the cell.
-     */
-    public Cell(int value) {
-        this(value, new CellNote(), true, true);
-    }
-
-    private Cell(int value, CellNote note, boolean editable, boolean valid) {
-        if (value < 0 || value > 9) {
-            throw new IllegalArgumentException("Value must be between 0-9.");
-        }
-
-        mValue = value;
-        mNote = note;
-        mEditable = editable;
-        mValid = valid;
-    }
-
-    /**
-     * Creates instance from given <code>StringTokenizer</code>.
-     *
-     * @param data
-     * @return
-     */
-    public static Cell deserialize(StringTokenizer data, int version) {
-        Cell cell = new Cell();
-        cell.setValue(Integer.parseInt(data.nextToken()));
-        cell.setNote(CellNote.deserialize(data.nextToken(), version));
-        cell.setEditable(data.nextToken().equals("1"));
+    private final CellCollection mCellCollection;
+    // index of the cell within collection, row * 9 + column
+    private final int mIndex;
 
-        return cell;
-    }
-
-    /**
-     * Creates instance from given string (string which has been
-     * created by {@link #serialize(StringBuilder)} or {@link #serialize()} method).
-     * earlier.
-     *
-     * @param cellData
-     */
-    public static Cell deserialize(String cellData) {
-        StringTokenizer data = new StringTokenizer(cellData, "|");
-        return deserialize(data, CellCollection.DATA_VERSION);
+    Cell(CellCollection cellCollection, int index) {
+        mCellCollection = cellCollection;
+        mIndex = index;
     }
 
     /**
@@ -104,7 +46,7 @@ public class Cell {
      * @return Cell's row index within CellCollection.
      */
     public int getRowIndex() {
-        return mRowIndex;
+        return mIndex / CellCollection.SUDOKU_SIZE;
     }
 
     /**
@@ -113,33 +55,16 @@ public class Cell {
      * @return Cell's column index within CellCollection.
      */
     public int getColumnIndex() {
-        return mColumnIndex;
+        return mIndex % CellCollection.SUDOKU_SIZE;
     }
 
     /**
-     * Called when <code>Cell</code> is added to {@link CellCollection}.
+     * Gets cell's index within {@link CellCollection}, which is row * 9 + column.
      *
-     * @param rowIndex Cell's row index within collection.
-     * @param colIndex Cell's column index within collection.
-     * @param sector   Reference to sector group in which cell is included.
-     * @param row      Reference to row group in which cell is included.
-     * @param column   Reference to column group in which cell is included.
+     * @return Cell's index within CellCollection.
      */
-    protected void initCollection(CellCollection cellCollection, int rowIndex, int colIndex,
-                                  CellGroup sector, CellGroup row, CellGroup column) {
-        synchronized (mCellCollectionLock) {
-            mCellCollection = cellCollection;
-        }
-
-        mRowIndex = rowIndex;
-        mColumnIndex = colIndex;
-        mSector = sector;
-        mRow = row;
-        mColumn = column;
-
-        sector.addCell(this);
-        row.addCell(this);
-        column.addCell(this);
+    public int getIndex() {
+        return mIndex;
     }
 
     /**
@@ -148,7 +73,7 @@ public class Cell {
      * @return Sector containing this cell.
      */
     public CellGroup getSector() {
-        return mSector;
+        return mCellCollection.getGroup(CellCollection.SECTOR_GROUPS + CellCollection.CELL_BOX[mIndex]);
     }
 
     /**
@@ -157,7 +82,7 @@ public class Cell {
      * @return Row containing this cell.
      */
     public CellGroup getRow() {
-        return mRow;
+        return mCellCollection.getGroup(CellCollection.ROW_GROUPS + CellCollection.CELL_ROW[mIndex]);
     }
 
     /**
@@ -166,7 +91,7 @@ public class Cell {
      * @return Column containing this cell.
      */
     public CellGroup getColumn() {
-        return mColumn;
+        return mCellCollection.getGroup(CellCollection.COLUMN_GROUPS + CellCollection.CELL_COL[mIndex]);
     }
 
     /**
@@ -175,7 +100,7 @@ public class Cell {
      * @return Cell's value. Value can be 1-9 or 0 if cell is empty.
      */
     public int getValue() {
-        return mValue;
+        return mCellCollection.getValue(mIndex);
     }
 
     /**
@@ -184,11 +109,7 @@ public class Cell {
      * @param value 1-9 or 0 if cell should be empty.
      */
     public void setValue(int value) {
-        if (value < 0 || value > 9) {
-            throw new IllegalArgumentException("Value must be between 0-9.");
-        }
-        mValue = value;
-        onChange();
+        mCellCollection.setValue(mIndex, value);
     }
 
     /**
@@ -197,7 +118,7 @@ public class Cell {
      * @return Note attached to the cell.
      */
     public CellNote getNote() {
-        return mNote;
+        return mCellCollection.getNote(mIndex);
     }
 
     /**
@@ -206,8 +127,7 @@ public class Cell {
      * @param note Note attached to the cell
      */
     public void setNote(CellNote note) {
-        mNote = note;
-        onChange();
+        mCellCollection.setNote(mIndex, note);
     }
 
     /**
@@ -216,7 +136,7 @@ public class Cell {
      * @return True if cell can be edited.
      */
     public boolean isEditable() {
-        return mEditable;
+        return mCellCollection.isEditable(mIndex);
     }
 
     /**
@@ -225,50 +145,29 @@ public class Cell {
      * @param editable True, if cell should allow editing.
      */
     public void setEditable(Boolean editable) {
-        mEditable = editable;
-        onChange();
+        mCellCollection.setEditable(mIndex, editable);
     }
 
     /**
-     * Returns true, if cell contains valid value according to sudoku rules.
+     * Returns true, if cell contains valid value according to sudoku rules. Empty cell
+     * is always valid.
      *
      * @return True, if cell contains valid value according to sudoku rules.
      */
     public boolean isValid() {
-        return mValid;
-    }
-
-    /**
-     * Sets whether cell contains valid value according to sudoku rules.
-     *
-     * @param valid
-     */
-    public void setValid(Boolean valid) {
-        mValid = valid;
-        onChange();
+        return mCellCollection.isValid(mIndex);
     }
 
     /**
      * Appends string representation of this object to the given <code>StringBuilder</code>
      * in a given data format version.
-     * You can later recreate object from this string by calling {@link #deserialize}.
      *
      * @see CellCollection#serialize(StringBuilder, int) for supported data format versions.
      *
      * @param data A <code>StringBuilder</code> where to write data.
      */
     public void serialize(StringBuilder data, int dataVersion) {
-        if (dataVersion == CellCollection.DATA_VERSION_PLAIN) {
-            data.append(mValue);
-        } else {
-            data.append(mValue).append("|");
-            if (mNote == null || mNote.isEmpty()) {
-                data.append("0").append("|");
-            } else {
-                mNote.serialize(data);
-            }
-            data.append(mEditable ? "1" : "0").append("|");
-        }
+        mCellCollection.serializeCell(mIndex, data, dataVersion);
     }
 
     /**
@@ -279,9 +178,9 @@ public class Cell {
      * @return A string representation of this object.
      */
     public String serialize() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = ScratchBuilder.acquire();
         serialize(sb, CellCollection.DATA_VERSION);
-        return sb.toString();
+        return ScratchBuilder.release(sb);
     }
 
     /**
@@ -293,20 +192,8 @@ public class Cell {
      * @return A string representation of this object.
      */
     public String serialize(int dataVersion) {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = ScratchBuilder.acquire();
         serialize(sb, dataVersion);
-        return sb.toString();
-    }
-
-    /**
-     * Notify CellCollection that something has changed.
-     */
-    private void onChange() {
-        synchronized (mCellCollectionLock) {
-            if (mCellCollection != null) {
-                mCellCollection.onChange();
-            }
-
-        }
+        return ScratchBuilder.release(sb);
     }
 }
@@ -0,0 +1,135 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Cells changed by one batch of changes of {@link CellCollection} (see
+ * {@link CellCollection#beginBatch()}), together with what changed in them. Cells are
+ * identified by index row * 9 + column. Values which became completed or stopped to be
+ * completed are reported too, see {@link CellCollection#isValueCompleted(int)}.
+ * <p>
+ * Instance passed to the listeners is not changed afterwards, so it can be kept.
+ */
+public class CellChanges {
+
+    public static final int CHANGE_VALUE = 1;
+    public static final int CHANGE_NOTE = 2;
+    /**
+     * Cell may have become valid or invalid, see {@link Cell#isValid()}.
+     */
+    public static final int CHANGE_VALIDITY = 4;
+    public static final int CHANGE_EDITABLE = 8;
+    public static final int CHANGE_ALL = CHANGE_VALUE | CHANGE_NOTE | CHANGE_VALIDITY | CHANGE_EDITABLE;
+
+    private static final int CHANGE_TYPE_COUNT = 4;
+
+    // Changed cells for each type of change as bitsets, two words per type, cell i
+    // is bit i % 64 of word i / 64.
+    private final long[] mCells = new long[CHANGE_TYPE_COUNT * 2];
+    private int mChanges;
+    // values whose completion changed, bit for each value
+    private int mValueCompletions;
+
+    void add(int index, int change) {
+        int type = Integer.numberOfTrailingZeros(change);
+        mCells[type * 2 + (index >>> 6)] |= 1L << index;
+        mChanges |= change;
+    }
+
+    void addValueCompletion(int value) {
+        mValueCompletions |= 1 << value;
+    }
+
+    void clear() {
+        for (int i = 0; i < mCells.length; i++) {
+            mCells[i] = 0;
+        }
+        mChanges = 0;
+        mValueCompletions = 0;
+    }
+
+    /**
+     * Returns true if nothing changed.
+     */
+    public boolean isEmpty() {
+        return mChanges == 0;
+    }
+
+    /**
+     * Returns what changed in any of the cells, as combination of <code>CHANGE_*</code> flags.
+     */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * Returns true if anything in the cell with given index changed.
+     */
+    public boolean isChanged(int index) {
+        return isChanged(index, CHANGE_ALL);
+    }
+
+    /**
+     * Returns true if any of given changes happened to the cell with given index.
+     *
+     * @param changes Combination of <code>CHANGE_*</code> flags.
+     */
+    public boolean isChanged(int index, int changes) {
+        return (getChangedCells(index >>> 6, changes) & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns index of the first cell at or after given index to which any of given changes
+     * happened, so changed cells can be iterated without allocation:
+     * <pre>
+     * for (int i = changes.nextChangedCell(0, CHANGE_ALL); i != -1; i = changes.nextChangedCell(i + 1, CHANGE_ALL))
+     * </pre>
+     *
+     * @param changes Combination of <code>CHANGE_*</code> flags.
+     * @return Index of the cell or -1 if there is none.
+     */
+    public int nextChangedCell(int fromIndex, int changes) {
+        for (int word = fromIndex >>> 6; word < 2; word++) {
+            long cells = getChangedCells(word, changes);
+            if (word == fromIndex >>> 6) {
+                cells &= -1L << fromIndex;
+            }
+            if (cells != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(cells);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns number of cells to which any of given changes happened.
+     *
+     * @param changes Combination of <code>CHANGE_*</code> flags.
+     */
+    public int getChangedCellCount(int changes) {
+        return Long.bitCount(getChangedCells(0, changes)) + Long.bitCount(getChangedCells(1, changes));
+    }
+
+    /**
+     * Returns true if any value became completed or stopped to be completed.
+     */
+    public boolean isAnyValueCompletionChanged() {
+        return mValueCompletions != 0;
+    }
+
+    /**
+     * Returns true if given value became completed or stopped to be completed. Value which was
+     * completed and then changed back within the same batch is reported too.
+     */
+    public boolean isValueCompletionChanged(int value) {
+        return (mValueCompletions & (1 << value)) != 0;
+    }
+
+    private long getChangedCells(int word, int changes) {
+        long cells = 0;
+        for (int type = 0; type < CHANGE_TYPE_COUNT; type++) {
+            if ((changes & (1 << type)) != 0) {
+                cells |= mCells[type * 2 + word];
+            }
+        }
+        return cells;
+    }
+}
@@ -20,15 +20,18 @@
 
 package org.moire.opensudoku.game;
 
+import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
 /**
  * Collection of sudoku cells. This class in fact represents one sudoku board (9x9).
+ * <p>
+ * Data of the cells are stored in arrays of primitives indexed by row * 9 + column, so the
+ * collection is small and scanning all the cells is fast. {@link Cell} and {@link CellGroup}
+ * objects are only views of this data, they are created when first asked for.
  *
  * @author romario
  */
@@ -36,6 +39,45 @@ public class CellCollection {
 
     public static final int SUDOKU_SIZE = 9;
 
+    // Offsets of the groups of each kind, see getGroup.
+    static final int ROW_GROUPS = 0;
+    static final int COLUMN_GROUPS = 9;
+    static final int SECTOR_GROUPS = 18;
+
+    private static final int NUM_CELLS = SUDOKU_SIZE * SUDOKU_SIZE;
+    private static final int ALL_NOTES = 0x1FF;
+
+    // Row, column and sector of each cell, cells are indexed row by row.
+    static final int[] CELL_ROW = new int[NUM_CELLS];
+    static final int[] CELL_COL = new int[NUM_CELLS];
+    static final int[] CELL_BOX = new int[NUM_CELLS];
+
+    /**
+     * Cells of each group: rows 0-8, columns 9-17, sectors 18-26. Shared with the solvers.
+     */
+    static final int[][] GROUP_CELLS = new int[3 * SUDOKU_SIZE][SUDOKU_SIZE];
+
+    static {
+        int[] groupSizes = new int[GROUP_CELLS.length];
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            int row = cell / SUDOKU_SIZE;
+            int col = cell % SUDOKU_SIZE;
+            int box = (row / 3) * 3 + col / 3;
+            CELL_ROW[cell] = row;
+            CELL_COL[cell] = col;
+            CELL_BOX[cell] = box;
+            GROUP_CELLS[ROW_GROUPS + row][groupSizes[ROW_GROUPS + row]++] = cell;
+            GROUP_CELLS[COLUMN_GROUPS + col][groupSizes[COLUMN_GROUPS + col]++] = cell;
+            GROUP_CELLS[SECTOR_GROUPS + box][groupSizes[SECTOR_GROUPS + box]++] = cell;
+        }
+    }
+
+    // Layout of the binary format, see toByteArray.
+    private static final int BINARY_VALUES_OFFSET = 1;
+    private static final int BINARY_EDITABLE_OFFSET = BINARY_VALUES_OFFSET + (NUM_CELLS + 1) / 2;
+    private static final int BINARY_NOTES_OFFSET = BINARY_EDITABLE_OFFSET + (NUM_CELLS + 7) / 8;
+    private static final int BINARY_EMPTY_NOTES = 0x80;
+
     /**
      * String is expected to be in format "00002343243202...", where each number represents
      * cell value, no other information can be set using this method.
@@ -43,7 +85,7 @@ public class CellCollection {
     public static int DATA_VERSION_PLAIN = 0;
 
     /**
-     * See {@link #DATA_PATTERN_VERSION_1} and {@link #serialize()}.
+     * See {@link CellCollectionParser} and {@link #serialize()}.
      * Notes stored as an array of numbers
      */
     public static int DATA_VERSION_1 = 1;
@@ -61,31 +103,40 @@ public class CellCollection {
      */
     public static int DATA_VERSION_3 = 3;
 
+    /**
+     * Binary format used to store puzzles in the database, see {@link #toByteArray()}. Text
+     * formats are still used everywhere else.
+     */
+    public static int DATA_VERSION_4 = 4;
+
     public static int DATA_VERSION = DATA_VERSION_3;
-    private static Pattern DATA_PATTERN_VERSION_PLAIN = Pattern.compile("^\\d{81}$");
-    private static Pattern DATA_PATTERN_VERSION_1 = Pattern.compile("^version: 1\\n((?#value)\\d\\|(?#note)((\\d,)+|-)\\|(?#editable)[01]\\|){0,81}$");
-    private static Pattern DATA_PATTERN_VERSION_2 = Pattern.compile("^version: 2\\n((?#value)\\d\\|(?#note)(\\d){1,3}\\|{1,2}(?#editable)[01]\\|){0,81}$");
-    private static Pattern DATA_PATTERN_VERSION_3 = Pattern.compile("^version: 3\\n((?#value)\\d\\|(?#note)(\\d){1,3}\\|(?#editable)[01]\\|){0,81}$");
     private final List<OnChangeListener> mChangeListeners = new ArrayList<>();
-    // TODO: An array of ints is a much better than an array of Integers, but this also generalizes to the fact that two parallel arrays of ints are also a lot more efficient than an array of (int,int) objects
     // Cell's data.
-    private Cell[][] mCells;
-    // Helper arrays, contains references to the groups of cells, which should contain unique
-    // numbers.
-    private CellGroup[] mSectors;
-    private CellGroup[] mRows;
-    private CellGroup[] mColumns;
+    private final byte[] mValues = new byte[NUM_CELLS];
+    // noted numbers of each cell, see CellNote#getBitmask()
+    private final short[] mNotes = new short[NUM_CELLS];
+    // Flags of the cells as bitset, flag of cell i is bit i % 64 of word i / 64.
+    private final long[] mEditable = new long[2];
+    // Number of occurrences of each value in each group, at group * 9 + value - 1. Counts
+    // are updated with each change of value, so validity of cells is always known.
+    private final byte[] mValueCounts = new byte[GROUP_CELLS.length * SUDOKU_SIZE];
+    // number of values which occur more than once in some group
+    private int mConflictCount;
+    // Number of cells with each value, index 0 is for empty cells.
+    private final int[] mValueUseCounts = new int[SUDOKU_SIZE + 1];
+    // Views of the cells and of the groups of cells, which should contain unique numbers.
+    private volatile Cell[][] mCells;
+    private volatile CellGroup[] mGroups;
     private boolean mOnChangeEnabled = true;
+    // changes not yet passed to the listeners
+    private CellChanges mPendingChanges;
+    private int mBatchDepth;
 
     /**
-     * Wraps given array in this object.
-     *
-     * @param cells
+     * Creates collection of empty cells, which are not editable.
      */
-    private CellCollection(Cell[][] cells) {
-
-        mCells = cells;
-        initCollection();
+    private CellCollection() {
+        mValueUseCounts[0] = NUM_CELLS;
     }
 
     /**
@@ -94,16 +145,9 @@ public class CellCollection {
      * @return
      */
     public static CellCollection createEmpty() {
-        Cell[][] cells = new Cell[SUDOKU_SIZE][SUDOKU_SIZE];
-
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                cells[r][c] = new Cell();
-            }
-        }
-
-        return new CellCollection(cells);
+        CellCollection cells = new CellCollection();
+        cells.markAllCellsAsEditable();
+        return cells;
     }
 
     /**
@@ -112,19 +156,16 @@ public class CellCollection {
      * @return
      */
     public static CellCollection createDebugGame() {
-        CellCollection debugGame = new CellCollection(new Cell[][]{
-                {new Cell(), new Cell(), new Cell(), new Cell(4), new Cell(5), new Cell(6), new Cell(7), new Cell(8), new Cell(9),},
-                {new Cell(), new Cell(), new Cell(), new Cell(7), new Cell(8), new Cell(9), new Cell(1), new Cell(2), new Cell(3),},
-                {new Cell(), new Cell(), new Cell(), new Cell(1), new Cell(2), new Cell(3), new Cell(4), new Cell(5), new Cell(6),},
-                {new Cell(2), new Cell(3), new Cell(4), new Cell(), new Cell(), new Cell(), new Cell(8), new Cell(9), new Cell(1),},
-                {new Cell(5), new Cell(6), new Cell(7), new Cell(), new Cell(), new Cell(), new Cell(2), new Cell(3), new Cell(4),},
-                {new Cell(8), new Cell(9), new Cell(1), new Cell(), new Cell(), new Cell(), new Cell(5), new Cell(6), new Cell(7),},
-                {new Cell(3), new Cell(4), new Cell(5), new Cell(6), new Cell(7), new Cell(8), new Cell(9), new Cell(1), new Cell(2),},
-                {new Cell(6), new Cell(7), new Cell(8), new Cell(9), new Cell(1), new Cell(2), new Cell(3), new Cell(4), new Cell(5),},
-                {new Cell(9), new Cell(1), new Cell(2), new Cell(3), new Cell(4), new Cell(5), new Cell(6), new Cell(7), new Cell(8),},
-        });
-        debugGame.markFilledCellsAsNotEditable();
-        return debugGame;
+        return fromString(""
+                + "000456789"
+                + "000789123"
+                + "000123456"
+                + "234000891"
+                + "567000234"
+                + "891000567"
+                + "345678912"
+                + "678912345"
+                + "912345678");
     }
 
     /**
@@ -134,31 +175,35 @@ public class CellCollection {
      * @return
      */
     public static CellCollection deserialize(StringTokenizer data, int version) {
-        Cell[][] cells = new Cell[SUDOKU_SIZE][SUDOKU_SIZE];
-
-        int r = 0, c = 0;
-        while (data.hasMoreTokens() && r < 9) {
-            cells[r][c] = Cell.deserialize(data, version);
-            c++;
-
-            if (c == 9) {
-                r++;
-                c = 0;
-            }
+        CellCollection cells = new CellCollection();
+
+        cells.beginBatch();
+        int index = 0;
+        while (data.hasMoreTokens() && index < NUM_CELLS) {
+            cells.setValue(index, Integer.parseInt(data.nextToken()));
+            cells.setNote(index, CellNote.deserialize(data.nextToken(), version));
+            cells.setEditable(index, data.nextToken().equals("1"));
+            index++;
         }
+        cells.endBatch();
 
-        return new CellCollection(cells);
+        return cells;
     }
 
     /**
      * Creates instance from given string (string which has been
      * created by {@link #serialize(StringBuilder)} or {@link #serialize()} method).
-     * earlier.
+     * earlier. Data which are not valid are read as well as possible.
      *
      * @param note
      */
     public static CellCollection deserialize(String data) {
-        // TODO: use DATA_PATTERN_VERSION_1 to validate and extract puzzle data
+        try {
+            return parse(data);
+        } catch (ParseException e) {
+            // read by the lenient code below
+        }
+
         String[] lines = data.split("\n");
         if (lines.length == 0) {
             throw new IllegalArgumentException("Cannot deserialize Sudoku, data corrupted.");
@@ -186,29 +231,111 @@ public class CellCollection {
     public static CellCollection fromString(String data) {
         // TODO: validate
 
-        Cell[][] cells = new Cell[SUDOKU_SIZE][SUDOKU_SIZE];
+        CellCollection cells = new CellCollection();
 
+        cells.beginBatch();
         int pos = 0;
-        for (int r = 0; r < CellCollection.SUDOKU_SIZE; r++) {
-            for (int c = 0; c < CellCollection.SUDOKU_SIZE; c++) {
-                int value = 0;
-                while (pos < data.length()) {
-                    pos++;
-                    if (data.charAt(pos - 1) >= '0'
-                            && data.charAt(pos - 1) <= '9') {
-                        // value=Integer.parseInt(data.substring(pos-1, pos));
-                        value = data.charAt(pos - 1) - '0';
-                        break;
-                    }
+        for (int index = 0; index < NUM_CELLS; index++) {
+            int value = 0;
+            while (pos < data.length()) {
+                pos++;
+                if (data.charAt(pos - 1) >= '0'
+                        && data.charAt(pos - 1) <= '9') {
+                    value = data.charAt(pos - 1) - '0';
+                    break;
                 }
-                Cell cell = new Cell();
-                cell.setValue(value);
-                cell.setEditable(value == 0);
-                cells[r][c] = cell;
             }
+            cells.setValue(index, value);
+            cells.setEditable(index, value == 0);
+        }
+        cells.endBatch();
+
+        return cells;
+    }
+
+    /**
+     * Creates collection from data in binary format, created by {@link #toByteArray()}.
+     *
+     * @throws IllegalArgumentException if data are not valid.
+     */
+    public static CellCollection fromByteArray(byte[] data) {
+        if (data.length < BINARY_NOTES_OFFSET || data[0] != DATA_VERSION_4) {
+            throw new IllegalArgumentException("Cannot deserialize Sudoku, data corrupted.");
+        }
+
+        CellCollection cells = new CellCollection();
+
+        cells.beginBatch();
+        for (int index = 0; index < NUM_CELLS; index++) {
+            cells.setValue(index, (data[BINARY_VALUES_OFFSET + index / 2] >> (index % 2 == 0 ? 4 : 0)) & 0xF);
+            cells.updateEditable(index, (data[BINARY_EDITABLE_OFFSET + index / 8] & (1 << (index % 8))) != 0);
+        }
+
+        int pos = BINARY_NOTES_OFFSET;
+        int index = 0;
+        while (index < NUM_CELLS && pos < data.length) {
+            int b = data[pos++];
+            if ((b & BINARY_EMPTY_NOTES) != 0) {
+                index += (b & ~BINARY_EMPTY_NOTES & 0xFF) + 1;
+            } else if (b <= 1 && pos < data.length) {
+                cells.updateNote(index++, (b << 8) | (data[pos++] & 0xFF));
+            } else {
+                break;
+            }
+        }
+        if (index != NUM_CELLS || pos != data.length) {
+            throw new IllegalArgumentException("Cannot deserialize Sudoku, data corrupted.");
         }
+        cells.endBatch();
 
-        return new CellCollection(cells);
+        return cells;
+    }
+
+    /**
+     * Reads just values and editable flags from data in binary format, notes are skipped.
+     * Used by {@link PuzzlePreview}.
+     *
+     * @param values   Array of 81 values to write values to.
+     * @param editable Two words to write editable flags to, flag of cell i is bit i % 64
+     *                 of word i / 64.
+     * @return False if data are not valid, values and flags are undefined then.
+     */
+    static boolean readValues(byte[] data, byte[] values, long[] editable) {
+        if (data.length < BINARY_NOTES_OFFSET || data[0] != DATA_VERSION_4) {
+            return false;
+        }
+
+        editable[0] = 0;
+        editable[1] = 0;
+        for (int index = 0; index < NUM_CELLS; index++) {
+            int value = (data[BINARY_VALUES_OFFSET + index / 2] >> (index % 2 == 0 ? 4 : 0)) & 0xF;
+            if (value > SUDOKU_SIZE) {
+                return false;
+            }
+            values[index] = (byte) value;
+            if ((data[BINARY_EDITABLE_OFFSET + index / 8] & (1 << (index % 8))) != 0) {
+                editable[index >>> 6] |= 1L << index;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates instance from given string in any of the text formats, see
+     * {@link CellCollectionParser}. Data are checked and read in one pass, so this is faster
+     * than {@link #isValid(String)} followed by {@link #deserialize(String)}.
+     *
+     * @throws ParseException if data are not valid, {@link ParseException#getErrorOffset()}
+     *                        is position of the first wrong character.
+     */
+    public static CellCollection parse(CharSequence data) throws ParseException {
+        CellCollection cells = new CellCollection();
+
+        cells.beginBatch();
+        CellCollectionParser.parse(data, cells);
+        cells.endBatch();
+
+        return cells;
     }
 
     /**
@@ -219,17 +346,14 @@ public class CellCollection {
      * @return
      */
     public static boolean isValid(String data, int dataVersion) {
-        if (dataVersion == DATA_VERSION_PLAIN) {
-            return DATA_PATTERN_VERSION_PLAIN.matcher(data).matches();
-        } else if (dataVersion == DATA_VERSION_1) {
-            return DATA_PATTERN_VERSION_1.matcher(data).matches();
-        } else if (dataVersion == DATA_VERSION_2) {
-            return DATA_PATTERN_VERSION_2.matcher(data).matches();
-        } else if (dataVersion == DATA_VERSION_3) {
-            return DATA_PATTERN_VERSION_3.matcher(data).matches();
-        } else {
+        if (dataVersion < DATA_VERSION_PLAIN || dataVersion > DATA_VERSION_3) {
             throw new IllegalArgumentException("Unknown version: " + dataVersion);
         }
+        try {
+            return CellCollectionParser.parse(data, null) == dataVersion;
+        } catch (ParseException e) {
+            return false;
+        }
     }
 
     /**
@@ -239,11 +363,12 @@ public class CellCollection {
      * @return
      */
     public static boolean isValid(String data) {
-        return (DATA_PATTERN_VERSION_PLAIN.matcher(data).matches() ||
-                DATA_PATTERN_VERSION_1.matcher(data).matches() ||
-                DATA_PATTERN_VERSION_2.matcher(data).matches() ||
-                DATA_PATTERN_VERSION_3.matcher(data).matches()
-        );
+        try {
+            CellCollectionParser.parse(data, null);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
     }
 
     /**
@@ -252,18 +377,16 @@ public class CellCollection {
      * @return
      */
     public boolean isEmpty() {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
-                if (cell.getValue() != 0)
-                    return false;
-            }
+        for (int index = 0; index < NUM_CELLS; index++) {
+            if (mValues[index] != 0)
+                return false;
         }
         return true;
     }
 
     public Cell[][] getCells() {
-        return mCells;
+        Cell[][] cells = mCells;
+        return cells != null ? cells : createCells();
     }
 
     /**
@@ -274,103 +397,129 @@ public class CellCollection {
      * @return
      */
     public Cell getCell(int rowIndex, int colIndex) {
-        return mCells[rowIndex][colIndex];
+        return getCells()[rowIndex][colIndex];
     }
 
-    public Cell findFirstCell(int val) {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
-                if (cell.getValue() == val)
-                    return cell;
-            }
-        }
-        return null;
+    /**
+     * Gets cell with given index (row * 9 + column).
+     */
+    Cell getCell(int index) {
+        return getCells()[index / SUDOKU_SIZE][index % SUDOKU_SIZE];
     }
 
-    public void markAllCellsAsValid() {
-        mOnChangeEnabled = false;
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                mCells[r][c].setValid(true);
-            }
+    public Cell findFirstCell(int val) {
+        for (int index = 0; index < NUM_CELLS; index++) {
+            if (mValues[index] == val)
+                return getCell(index);
         }
-        mOnChangeEnabled = true;
-        onChange();
+        return null;
     }
 
     /**
-     * Validates numbers in collection according to the sudoku rules. Cells with invalid
-     * values are marked - you can use getInvalid method of cell to find out whether cell
-     * contains valid value.
-     *
-     * @return True if validation is successful.
+     * Returns value of the cell with given index (row * 9 + column), 0 if cell is empty.
      */
-    public boolean validate() {
-
-        boolean valid = true;
-
-        // first set all cells as valid
-        markAllCellsAsValid();
+    int getValue(int index) {
+        return mValues[index];
+    }
 
-        mOnChangeEnabled = false;
-        // run validation in groups
-        for (CellGroup row : mRows) {
-            if (!row.validate()) {
-                valid = false;
-            }
+    void setValue(int index, int value) {
+        if (value < 0 || value > 9) {
+            throw new IllegalArgumentException("Value must be between 0-9.");
         }
-        for (CellGroup column : mColumns) {
-            if (!column.validate()) {
-                valid = false;
-            }
+        int oldValue = mValues[index];
+        if (oldValue == value) {
+            return;
         }
-        for (CellGroup sector : mSectors) {
-            if (!sector.validate()) {
-                valid = false;
-            }
+        addChange(index, CellChanges.CHANGE_VALUE);
+        if (oldValue != 0) {
+            updateValueCounts(index, oldValue, -1);
+        }
+        updateValueUseCount(oldValue, -1);
+        mValues[index] = (byte) value;
+        if (value != 0) {
+            updateValueCounts(index, value, 1);
         }
+        updateValueUseCount(value, 1);
+        onChange();
+    }
+
+    CellNote getNote(int index) {
+        return CellNote.fromBitmask(mNotes[index]);
+    }
 
-        mOnChangeEnabled = true;
+    void setNote(int index, CellNote note) {
+        updateNote(index, note == null ? 0 : note.getBitmask());
         onChange();
+    }
 
-        return valid;
+    boolean isEditable(int index) {
+        return getFlag(mEditable, index);
     }
 
-    public boolean isCompleted() {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
-                if (cell.getValue() == 0 || !cell.isValid()) {
-                    return false;
-                }
+    void setEditable(int index, boolean editable) {
+        updateEditable(index, editable);
+        onChange();
+    }
+
+    /**
+     * Returns true if value of the cell with given index occurs just once in each of its
+     * groups, or if the cell is empty.
+     */
+    boolean isValid(int index) {
+        int value = mValues[index];
+        if (value == 0) {
+            return true;
+        }
+        return mValueCounts[(ROW_GROUPS + CELL_ROW[index]) * SUDOKU_SIZE + value - 1] < 2
+                && mValueCounts[(COLUMN_GROUPS + CELL_COL[index]) * SUDOKU_SIZE + value - 1] < 2
+                && mValueCounts[(SECTOR_GROUPS + CELL_BOX[index]) * SUDOKU_SIZE + value - 1] < 2;
+    }
+
+    /**
+     * Returns true if no value occurs more than once in given group, see {@link #getGroup(int)}.
+     */
+    boolean isGroupValid(int group) {
+        for (int i = group * SUDOKU_SIZE; i < (group + 1) * SUDOKU_SIZE; i++) {
+            if (mValueCounts[i] > 1) {
+                return false;
             }
         }
         return true;
     }
 
+    /**
+     * Validates numbers in collection according to the sudoku rules. Validity of the cells
+     * is updated with each change of value, so this just reports the result, you can use
+     * {@link Cell#isValid()} to find out whether cell contains valid value.
+     *
+     * @return True if validation is successful.
+     */
+    public boolean validate() {
+        return mConflictCount == 0;
+    }
+
+    public boolean isCompleted() {
+        return mValueUseCounts[0] == 0 && mConflictCount == 0;
+    }
+
     /**
      * Marks all cells as editable.
      */
     public void markAllCellsAsEditable() {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
-                cell.setEditable(true);
-            }
+        for (int index = 0; index < NUM_CELLS; index++) {
+            updateEditable(index, true);
         }
+        onChange();
     }
 
     /**
      * Marks all filled cells (cells with value other than 0) as not editable.
      */
     public void markFilledCellsAsNotEditable() {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
-                cell.setEditable(cell.getValue() == 0);
-            }
+        for (int index = 0; index < NUM_CELLS; index++) {
+            updateEditable(index, mValues[index] == 0);
         }
+        onChange();
     }
 
     /**
@@ -378,21 +527,13 @@ public class CellCollection {
      * This is a destructive operation in that the existing notes are overwritten.
      */
     public void fillInNotes() {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = getCell(r, c);
-                cell.setNote(new CellNote());
-
-                CellGroup row = cell.getRow();
-                CellGroup column = cell.getColumn();
-                CellGroup sector = cell.getSector();
-                for (int i = 1; i <= SUDOKU_SIZE; i++) {
-                    if (row.DoesntContain(i) && column.DoesntContain(i) && sector.DoesntContain(i)) {
-                        cell.setNote(cell.getNote().addNumber(i));
-                    }
-                }
-            }
+        for (int index = 0; index < NUM_CELLS; index++) {
+            int usedInGroups = getUsedValues(ROW_GROUPS + CELL_ROW[index])
+                    | getUsedValues(COLUMN_GROUPS + CELL_COL[index])
+                    | getUsedValues(SECTOR_GROUPS + CELL_BOX[index]);
+            updateNote(index, ALL_NOTES & ~usedInGroups);
         }
+        onChange();
     }
 
     /**
@@ -400,15 +541,10 @@ public class CellCollection {
      * This is a destructive operation in that the existing notes are overwritten.
      */
     public void fillInNotesWithAllValues() {
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = getCell(r, c);
-                cell.setNote(new CellNote());
-                for (int i = 1; i <= SUDOKU_SIZE; i++) {
-                    cell.setNote(cell.getNote().addNumber(i));
-                }
-            }
+        for (int index = 0; index < NUM_CELLS; index++) {
+            updateNote(index, ALL_NOTES);
         }
+        onChange();
     }
 
     public void removeNotesForChangedCell(Cell cell, int number) {
@@ -416,81 +552,168 @@ public class CellCollection {
             return;
         }
 
-        CellGroup row = cell.getRow();
-        CellGroup column = cell.getColumn();
-        CellGroup sector = cell.getSector();
+        int index = cell.getIndex();
+        int mask = ~(1 << (number - 1));
+        removeNotes(ROW_GROUPS + CELL_ROW[index], mask);
+        removeNotes(COLUMN_GROUPS + CELL_COL[index], mask);
+        removeNotes(SECTOR_GROUPS + CELL_BOX[index], mask);
+        onChange();
+    }
+
+    private void removeNotes(int group, int mask) {
+        for (int other : GROUP_CELLS[group]) {
+            updateNote(other, mNotes[other] & mask);
+        }
+    }
+
+    /**
+     * Returns values used in given group as bitmask (bit 0 for value 1, bit 8 for 9).
+     */
+    private int getUsedValues(int group) {
+        int used = 0;
+        int offset = group * SUDOKU_SIZE;
         for (int i = 0; i < SUDOKU_SIZE; i++) {
-            row.getCells()[i].setNote(row.getCells()[i].getNote().removeNumber(number));
-            column.getCells()[i].setNote(column.getCells()[i].getNote().removeNumber(number));
-            sector.getCells()[i].setNote(sector.getCells()[i].getNote().removeNumber(number));
+            if (mValueCounts[offset + i] != 0) {
+                used |= 1 << i;
+            }
         }
+        return used;
     }
 
     /**
-     * Returns how many times each value is used in <code>CellCollection</code>.
-     * Returns map with entry for each value.
-     *
-     * @return
+     * Returns how many times given value is used in <code>CellCollection</code>, for value 0
+     * returns number of empty cells.
      */
-    public Map<Integer, Integer> getValuesUseCount() {
-        Map<Integer, Integer> valuesUseCount = new HashMap<>();
-        for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
-            valuesUseCount.put(value, 0);
+    public int getValueUseCount(int value) {
+        return mValueUseCounts[value];
+    }
+
+    /**
+     * Returns true if given value is used in {@link #SUDOKU_SIZE} or more cells. Listeners are
+     * told when value becomes completed, see {@link CellChanges#isValueCompletionChanged(int)}.
+     */
+    public boolean isValueCompleted(int value) {
+        return value != 0 && mValueUseCounts[value] >= SUDOKU_SIZE;
+    }
+
+    /**
+     * Returns group of cells which must contain unique numbers. Rows are groups 0-8,
+     * columns 9-17 and sectors 18-26.
+     */
+    CellGroup getGroup(int group) {
+        CellGroup[] groups = mGroups;
+        if (groups == null) {
+            groups = createGroups();
         }
+        return groups[group];
+    }
 
-        for (int r = 0; r < CellCollection.SUDOKU_SIZE; r++) {
-            for (int c = 0; c < CellCollection.SUDOKU_SIZE; c++) {
-                int value = getCell(r, c).getValue();
-                if (value != 0) {
-                    valuesUseCount.put(value, valuesUseCount.get(value) + 1);
+    /**
+     * Creates views of the cells. Views must be created only once, because they are compared
+     * by reference (for example to find out whether cell is selected).
+     */
+    private synchronized Cell[][] createCells() {
+        if (mCells == null) {
+            Cell[][] cells = new Cell[SUDOKU_SIZE][SUDOKU_SIZE];
+            for (int r = 0; r < SUDOKU_SIZE; r++) {
+                for (int c = 0; c < SUDOKU_SIZE; c++) {
+                    cells[r][c] = new Cell(this, r * SUDOKU_SIZE + c);
                 }
             }
+            mCells = cells;
         }
+        return mCells;
+    }
 
-        return valuesUseCount;
+    private synchronized CellGroup[] createGroups() {
+        if (mGroups == null) {
+            CellGroup[] groups = new CellGroup[GROUP_CELLS.length];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = new CellGroup(this, i);
+            }
+            mGroups = groups;
+        }
+        return mGroups;
     }
 
     /**
-     * Initializes collection, initialization has two steps:
-     * 1) Groups of cells which must contain unique numbers are created.
-     * 2) Row and column index for each cell is set.
+     * Adds delta to the count of given value in all the groups of given cell.
      */
-    private void initCollection() {
-        mRows = new CellGroup[SUDOKU_SIZE];
-        mColumns = new CellGroup[SUDOKU_SIZE];
-        mSectors = new CellGroup[SUDOKU_SIZE];
+    private void updateValueCounts(int index, int value, int delta) {
+        updateValueCount(ROW_GROUPS + CELL_ROW[index], value, delta);
+        updateValueCount(COLUMN_GROUPS + CELL_COL[index], value, delta);
+        updateValueCount(SECTOR_GROUPS + CELL_BOX[index], value, delta);
+    }
+
+    private void updateValueCount(int group, int value, int delta) {
+        int i = group * SUDOKU_SIZE + value - 1;
+        int count = mValueCounts[i] + delta;
+        mValueCounts[i] = (byte) count;
+        if ((delta > 0 && count == 2) || (delta < 0 && count == 1)) {
+            mConflictCount += delta;
+            // cells with this value in the group became invalid or valid
+            for (int index : GROUP_CELLS[group]) {
+                if (mValues[index] == value) {
+                    addChange(index, CellChanges.CHANGE_VALIDITY);
+                }
+            }
+        }
+    }
 
-        for (int i = 0; i < SUDOKU_SIZE; i++) {
-            mRows[i] = new CellGroup();
-            mColumns[i] = new CellGroup();
-            mSectors[i] = new CellGroup();
+    private void updateValueUseCount(int value, int delta) {
+        int count = mValueUseCounts[value] + delta;
+        mValueUseCounts[value] = count;
+        if (value != 0 && (delta > 0 ? count == SUDOKU_SIZE : count == SUDOKU_SIZE - 1)) {
+            // called after addChange, so there are pending changes
+            mPendingChanges.addValueCompletion(value);
+        }
+    }
+
+    private void updateNote(int index, int notedNumbers) {
+        if (mNotes[index] != notedNumbers) {
+            mNotes[index] = (short) notedNumbers;
+            addChange(index, CellChanges.CHANGE_NOTE);
         }
+    }
 
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
+    private void updateEditable(int index, boolean editable) {
+        if (getFlag(mEditable, index) != editable) {
+            setFlag(mEditable, index, editable);
+            addChange(index, CellChanges.CHANGE_EDITABLE);
+        }
+    }
 
-                cell.initCollection(this, r, c,
-                        mSectors[((c / 3) * 3) + (r / 3)],
-                        mRows[c],
-                        mColumns[r]
-                );
-            }
+    private void addChange(int index, int change) {
+        if (mPendingChanges == null) {
+            mPendingChanges = new CellChanges();
+        }
+        mPendingChanges.add(index, change);
+    }
+
+    private static boolean getFlag(long[] flags, int index) {
+        return (flags[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setFlag(long[] flags, int index, boolean value) {
+        if (value) {
+            flags[index >>> 6] |= 1L << index;
+        } else {
+            flags[index >>> 6] &= ~(1L << index);
         }
     }
 
     /**
      * Returns a string representation of this collection in a default
-     * ({@link #DATA_PATTERN_VERSION_3}) format version.
+     * ({@link #DATA_VERSION_3}) format version.
      *
      * @see #serialize(StringBuilder, int)
      *
      * @return A string representation of this collection.
      */
     public String serialize() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = ScratchBuilder.acquire();
         serialize(sb, DATA_VERSION);
-        return sb.toString();
+        return ScratchBuilder.release(sb);
     }
 
     /**
@@ -501,14 +724,14 @@ public class CellCollection {
      * @return A string representation of this collection.
      */
     public String serialize(int dataVersion) {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = ScratchBuilder.acquire();
         serialize(sb, dataVersion);
-        return sb.toString();
+        return ScratchBuilder.release(sb);
     }
 
     /**
      * Writes collection to given <code>StringBuilder</code> in a default
-     * ({@link #DATA_PATTERN_VERSION_3}) data format version.
+     * ({@link #DATA_VERSION_3}) data format version.
      *
      * @see #serialize(StringBuilder, int)
      */
@@ -520,28 +743,84 @@ public class CellCollection {
      * Writes collection to given <code>StringBuilder</code> in a given data format version.
      * You can later recreate object instance by calling {@link #deserialize(String)} method.
      *
-     * Supports only {@link #DATA_PATTERN_VERSION_PLAIN} and {@link #DATA_PATTERN_VERSION_3} formats.
+     * Supports only {@link #DATA_VERSION_PLAIN} and {@link #DATA_VERSION_3} formats.
      * All the other data format versions are ignored and treated as
-     * {@link #DATA_PATTERN_VERSION_3} format.
+     * {@link #DATA_VERSION_3} format.
      *
-     * @see #DATA_PATTERN_VERSION_PLAIN
-     * @see #DATA_PATTERN_VERSION_3
+     * @see #DATA_VERSION_PLAIN
+     * @see #DATA_VERSION_3
      *
      * @param data A <code>StringBuilder</code> where to write data.
      * @param dataVersion A version of data format.
      */
     public void serialize(StringBuilder data, int dataVersion) {
+        if (dataVersion > DATA_VERSION_3) {
+            // binary format is written by toByteArray
+            dataVersion = DATA_VERSION_3;
+        }
         if (dataVersion > DATA_VERSION_PLAIN) {
             data.append("version: ");
             data.append(dataVersion);
-            data.append("\n");
+            data.append('\n');
         }
-        for (int r = 0; r < SUDOKU_SIZE; r++) {
-            for (int c = 0; c < SUDOKU_SIZE; c++) {
-                Cell cell = mCells[r][c];
-                cell.serialize(data, dataVersion);
+        for (int index = 0; index < NUM_CELLS; index++) {
+            serializeCell(index, data, dataVersion);
+        }
+    }
+
+    /**
+     * Writes one cell to given <code>StringBuilder</code>, see {@link Cell#serialize(StringBuilder, int)}.
+     */
+    void serializeCell(int index, StringBuilder data, int dataVersion) {
+        if (dataVersion == DATA_VERSION_PLAIN) {
+            data.append(mValues[index]);
+        } else {
+            data.append(mValues[index]).append('|');
+            data.append(mNotes[index]).append('|');
+            data.append(isEditable(index) ? '1' : '0').append('|');
+        }
+    }
+
+    /**
+     * Returns this collection in binary format ({@link #DATA_VERSION_4}), which is several times
+     * smaller and faster to read than the text formats. Collection can be recreated by
+     * {@link #fromByteArray(byte[])}.
+     * <p>
+     * The first byte is the version. Values of the cells follow, two cells per byte with the first
+     * one in the high 4 bits, and then editable flags, eight cells per byte with the first one
+     * in the lowest bit. Notes are at the end: byte with the highest bit set stands for
+     * <code>(byte &amp; 0x7F) + 1</code> cells without notes, otherwise the byte is the highest
+     * bit of the note's bitmask (see {@link CellNote#getBitmask()}) and the next byte has the rest.
+     */
+    public byte[] toByteArray() {
+        byte[] data = new byte[BINARY_NOTES_OFFSET + NUM_CELLS * 2];
+        data[0] = (byte) DATA_VERSION_4;
+        for (int index = 0; index < NUM_CELLS; index++) {
+            data[BINARY_VALUES_OFFSET + index / 2] |= mValues[index] << (index % 2 == 0 ? 4 : 0);
+            if (isEditable(index)) {
+                data[BINARY_EDITABLE_OFFSET + index / 8] |= 1 << (index % 8);
             }
         }
+
+        int pos = BINARY_NOTES_OFFSET;
+        int index = 0;
+        while (index < NUM_CELLS) {
+            int note = mNotes[index];
+            if (note == 0) {
+                // runs are never longer than 81 cells, so they fit in 7 bits
+                int run = 1;
+                while (index + run < NUM_CELLS && mNotes[index + run] == 0) {
+                    run++;
+                }
+                data[pos++] = (byte) (BINARY_EMPTY_NOTES | (run - 1));
+                index += run;
+            } else {
+                data[pos++] = (byte) (note >>> 8);
+                data[pos++] = (byte) note;
+                index++;
+            }
+        }
+        return Arrays.copyOf(data, pos);
     }
 
     public void addOnChangeListener(OnChangeListener listener) {
@@ -593,22 +872,68 @@ public class CellCollection {
 */
 
     /**
-     * Notify all registered listeners that something has changed.
+     * Starts batch of changes. Listeners are notified just once, when the batch ends, about all
+     * the changes made in it. Batches can be nested, only the outermost one notifies listeners.
+     * Each call must be paired with {@link #endBatch()}.
+     */
+    public void beginBatch() {
+        mBatchDepth++;
+    }
+
+    /**
+     * Ends batch of changes started by {@link #beginBatch()}.
+     */
+    public void endBatch() {
+        if (mBatchDepth == 0) {
+            throw new IllegalStateException("No batch was started.");
+        }
+        mBatchDepth--;
+        onChange();
+    }
+
+    /**
+     * Makes all the changes done by given <code>Runnable</code> in one batch,
+     * see {@link #beginBatch()}.
+     */
+    public void runBatch(Runnable changes) {
+        beginBatch();
+        try {
+            changes.run();
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Notify all registered listeners about the changes made so far, unless batch of changes
+     * is in progress.
      */
     protected void onChange() {
-        if (mOnChangeEnabled) {
-            synchronized (mChangeListeners) {
-                for (OnChangeListener l : mChangeListeners) {
-                    l.onChange();
-                }
+        if (mBatchDepth > 0 || mPendingChanges == null || mPendingChanges.isEmpty()) {
+            return;
+        }
+
+        synchronized (mChangeListeners) {
+            if (!mOnChangeEnabled || mChangeListeners.isEmpty()) {
+                // nobody has seen the changes, so the instance can be reused
+                mPendingChanges.clear();
+                return;
+            }
+            CellChanges changes = mPendingChanges;
+            mPendingChanges = null;
+            for (OnChangeListener l : mChangeListeners) {
+                l.onChange(changes);
             }
         }
     }
 
     public interface OnChangeListener {
         /**
-         * Called when anything in the collection changes (cell's value, note, etc.)
+         * Called when anything in the collection changes (cell's value, note, etc.), once
+         * for each batch of changes.
+         *
+         * @param changes Cells which changed and what changed in them.
          */
-        void onChange();
+        void onChange(CellChanges changes);
     }
 }
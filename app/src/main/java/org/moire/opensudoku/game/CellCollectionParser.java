@@ -0,0 +1,172 @@
+package org.moire.opensudoku.game;
+
+import java.text.ParseException;
+
+/**
+ * Checks and reads text formats of {@link CellCollection} in one pass, without regular
+ * expressions and without creating any intermediate strings. Supported formats are:
+ * <ul>
+ * <li>{@link CellCollection#DATA_VERSION_PLAIN}: exactly 81 digits, values of the cells.</li>
+ * <li>{@link CellCollection#DATA_VERSION_1}: <code>version: 1\n</code> followed by up to 81 cells
+ * <code>value|notes|editable|</code>, where notes are either <code>-</code> or noted numbers,
+ * each followed by comma (<code>1,5,</code>), and editable is 0 or 1.</li>
+ * <li>{@link CellCollection#DATA_VERSION_2}: the same with notes as bitmask of 1-3 digits,
+ * which may be followed by two bars.</li>
+ * <li>{@link CellCollection#DATA_VERSION_3}: the same with notes as bitmask followed
+ * by just one bar.</li>
+ * </ul>
+ */
+final class CellCollectionParser {
+
+    private static final String VERSION_PREFIX = "version: ";
+
+    private final CharSequence mData;
+    private final int mLength;
+    private int mPos;
+
+    private CellCollectionParser(CharSequence data) {
+        mData = data;
+        mLength = data.length();
+    }
+
+    /**
+     * Checks given data and writes the cells into given collection.
+     *
+     * @param cells Collection to write the cells to, or null if the data should be just checked.
+     * @return Version of the format of the data.
+     * @throws ParseException if data are not valid, error offset is position of the first
+     *                        wrong character or length of the data if they end too early.
+     */
+    static int parse(CharSequence data, CellCollection cells) throws ParseException {
+        return new CellCollectionParser(data).parse(cells);
+    }
+
+    private int parse(CellCollection cells) throws ParseException {
+        if (!startsWithVersion()) {
+            parsePlain(cells);
+            return CellCollection.DATA_VERSION_PLAIN;
+        }
+
+        mPos = VERSION_PREFIX.length();
+        int version = readDigit();
+        if (version < CellCollection.DATA_VERSION_1 || version > CellCollection.DATA_VERSION_3) {
+            throw new ParseException("Unknown version: " + version, mPos - 1);
+        }
+        expect('\n');
+
+        int index = 0;
+        while (mPos < mLength) {
+            if (index == CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE) {
+                throw new ParseException("Too many cells.", mPos);
+            }
+            int value = readDigit();
+            expect('|');
+            int notedNumbers = version == CellCollection.DATA_VERSION_1 ? readNumberList() : readBitmask();
+            expect('|');
+            if (version == CellCollection.DATA_VERSION_2 && mPos < mLength && mData.charAt(mPos) == '|') {
+                mPos++;
+            }
+            boolean editable = readFlag();
+            expect('|');
+
+            if (cells != null) {
+                cells.setValue(index, value);
+                // older versions did not check numbers of notes, extra bits are ignored
+                cells.setNote(index, CellNote.fromBitmask(notedNumbers & 0x1FF));
+                cells.setEditable(index, editable);
+            }
+            index++;
+        }
+        return version;
+    }
+
+    private void parsePlain(CellCollection cells) throws ParseException {
+        for (int index = 0; index < CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE; index++) {
+            int value = readDigit();
+            if (cells != null) {
+                cells.setValue(index, value);
+                cells.setEditable(index, value == 0);
+            }
+        }
+        if (mPos < mLength) {
+            throw new ParseException("Too many cells.", mPos);
+        }
+    }
+
+    private boolean startsWithVersion() {
+        if (mLength < VERSION_PREFIX.length()) {
+            return false;
+        }
+        for (int i = 0; i < VERSION_PREFIX.length(); i++) {
+            if (mData.charAt(i) != VERSION_PREFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads notes of version 1, <code>-</code> or list of numbers each followed by comma.
+     *
+     * @return Noted numbers as bitmask.
+     */
+    private int readNumberList() throws ParseException {
+        if (mPos < mLength && mData.charAt(mPos) == '-') {
+            mPos++;
+            return 0;
+        }
+        int notedNumbers = 0;
+        do {
+            int number = readDigit();
+            expect(',');
+            if (number != 0) {
+                notedNumbers |= 1 << (number - 1);
+            }
+        } while (mPos < mLength && isDigit(mData.charAt(mPos)));
+        return notedNumbers;
+    }
+
+    /**
+     * Reads notes of versions 2 and 3, bitmask of 1-3 digits.
+     */
+    private int readBitmask() throws ParseException {
+        int notedNumbers = readDigit();
+        for (int i = 1; i < 3 && mPos < mLength && isDigit(mData.charAt(mPos)); i++) {
+            notedNumbers = notedNumbers * 10 + mData.charAt(mPos++) - '0';
+        }
+        return notedNumbers;
+    }
+
+    private boolean readFlag() throws ParseException {
+        char c = next();
+        if (c != '0' && c != '1') {
+            throw new ParseException("Expected 0 or 1.", mPos - 1);
+        }
+        return c == '1';
+    }
+
+    private int readDigit() throws ParseException {
+        char c = next();
+        if (!isDigit(c)) {
+            throw new ParseException("Expected digit.", mPos - 1);
+        }
+        return c - '0';
+    }
+
+    private void expect(char expected) throws ParseException {
+        if (next() != expected) {
+            throw new ParseException("Expected '" + expected + "'.", mPos - 1);
+        }
+    }
+
+    private char next() throws ParseException {
+        if (mPos >= mLength) {
+            throw new ParseException("Unexpected end of data.", mLength);
+        }
+        return mData.charAt(mPos++);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -20,59 +20,40 @@
 
 package org.moire.opensudoku.game;
 
-import java.util.HashMap;
-import java.util.Map;
-
-
 /**
  * Represents group of cells which must each contain unique number.
  * <p/>
  * Typical examples of instances are sudoku row, column or sector (3x3 group of cells).
+ * Like {@link Cell}, group is just a view of its {@link CellCollection}.
  *
  * @author romario
  */
 public class CellGroup {
-    private Cell[] mCells = new Cell[CellCollection.SUDOKU_SIZE];
-    private int mPos = 0;
+    private final CellCollection mCellCollection;
+    // index of the group within collection, see CellCollection#getGroup(int)
+    private final int mGroup;
+    // indexes of the cells within collection
+    private final int[] mIndexes;
+    private Cell[] mCells;
 
-    public void addCell(Cell cell) {
-        mCells[mPos] = cell;
-        mPos++;
+    CellGroup(CellCollection cellCollection, int group) {
+        mCellCollection = cellCollection;
+        mGroup = group;
+        mIndexes = CellCollection.GROUP_CELLS[group];
     }
 
-
     /**
-     * Validates numbers in given sudoku group - numbers must be unique. Cells with invalid
-     * numbers are marked (see {@link Cell#isValid}).
-     * <p/>
-     * Method expects that cell's invalid properties has been set to false
-     * ({@link CellCollection#validate} does this).
+     * Validates numbers in given sudoku group - numbers must be unique.
      *
      * @return True if validation is successful.
      */
     protected boolean validate() {
-        boolean valid = true;
-
-        Map<Integer, Cell> cellsByValue = new HashMap<>();
-        for (Cell cell : mCells) {
-            int value = cell.getValue();
-            if (cellsByValue.get(value) != null) {
-                cell.setValid(false);
-                cellsByValue.get(value).setValid(false);
-                valid = false;
-            } else {
-                cellsByValue.put(value, cell);
-                // we cannot set cell as valid here, because same cell can be invalid
-                // as part of another group
-            }
-        }
-
-        return valid;
+        return mCellCollection.isGroupValid(mGroup);
     }
 
     public boolean DoesntContain(int value) {
-        for (Cell mCell : mCells) {
-            if (mCell.getValue() == value) {
+        for (int index : mIndexes) {
+            if (mCellCollection.getValue(index) == value) {
                 return false;
             }
         }
@@ -80,6 +61,13 @@ public class CellGroup {
     }
 
     public Cell[] getCells() {
+        if (mCells == null) {
+            Cell[] cells = new Cell[mIndexes.length];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = mCellCollection.getCell(mIndexes[i]);
+            }
+            mCells = cells;
+        }
         return mCells;
     }
 }
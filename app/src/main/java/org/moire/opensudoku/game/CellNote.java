@@ -26,6 +26,10 @@ import java.util.StringTokenizer;
 
 /**
  * Note attached to cell. This object is immutable by design.
+ * <p>
+ * There is only one instance for each combination of noted numbers, so notes can be changed
+ * without allocation. Noted numbers can be iterated without allocation too,
+ * see {@link #nextNumber(int)}.
  *
  * @author romario
  * <p>
@@ -34,17 +38,36 @@ import java.util.StringTokenizer;
  */
 public class CellNote {
 
-    public static final CellNote EMPTY = new CellNote();
-    private final short mNotedNumbers;
+    private static final int ALL_NUMBERS = 0x1FF;
+    // all the possible notes, indexed by their bitmask
+    private static final CellNote[] NOTES = new CellNote[ALL_NUMBERS + 1];
 
-    public CellNote() {
-        mNotedNumbers = 0;
+    static {
+        for (int i = 0; i < NOTES.length; i++) {
+            NOTES[i] = new CellNote((short) i);
+        }
     }
 
+    public static final CellNote EMPTY = NOTES[0];
+
+    private final short mNotedNumbers;
+
     private CellNote(short notedNumbers) {
         mNotedNumbers = notedNumbers;
     }
 
+    /**
+     * Returns note with given noted numbers as bitmask (bit 0 for number 1, bit 8 for 9).
+     *
+     * @throws IllegalArgumentException if bitmask contains other bits than those of numbers 1-9.
+     */
+    public static CellNote fromBitmask(int notedNumbers) {
+        if ((notedNumbers & ~ALL_NUMBERS) != 0)
+            throw new IllegalArgumentException("Invalid note bitmask: " + notedNumbers);
+
+        return NOTES[notedNumbers];
+    }
+
     /**
      * Creates instance from given string (string which has been
      * created by {@link #serialize(StringBuilder)} or {@link #serialize()} method).
@@ -75,7 +98,7 @@ public class CellNote {
             }
         }
 
-        return new CellNote((short) noteValue);
+        return NOTES[noteValue & ALL_NUMBERS];
     }
 
 
@@ -83,7 +106,7 @@ public class CellNote {
      * Creates note instance from given <code>int</code> array.
      *
      * @param notedNums Array of integers, which should be part of note.
-     * @return New note instance.
+     * @return Note instance.
      */
     public static CellNote fromIntArray(Integer[] notedNums) {
         int notedNumbers = 0;
@@ -92,7 +115,7 @@ public class CellNote {
             notedNumbers = (short) (notedNumbers | (1 << (n - 1)));
         }
 
-        return new CellNote((short) notedNumbers);
+        return NOTES[notedNumbers & ALL_NUMBERS];
     }
 
 
@@ -104,17 +127,49 @@ public class CellNote {
      */
     public void serialize(StringBuilder data) {
         data.append(mNotedNumbers);
-        data.append("|");
+        data.append('|');
     }
 
     public String serialize() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = ScratchBuilder.acquire();
         serialize(sb);
-        return sb.toString();
+        return ScratchBuilder.release(sb);
+    }
+
+    /**
+     * Returns numbers currently noted in cell as bitmask (bit 0 for number 1, bit 8 for 9).
+     */
+    public int getBitmask() {
+        return mNotedNumbers;
+    }
+
+    /**
+     * Returns how many numbers are noted.
+     */
+    public int getNumberCount() {
+        return Integer.bitCount(mNotedNumbers);
+    }
+
+    /**
+     * Returns the lowest noted number greater than given one, so noted numbers can be iterated
+     * without allocation:
+     * <pre>
+     * for (int n = note.nextNumber(0); n != 0; n = note.nextNumber(n))
+     * </pre>
+     *
+     * @return Noted number or 0 if there is none.
+     */
+    public int nextNumber(int number) {
+        if (number >= 9) {
+            return 0;
+        }
+        int numbers = number < 0 ? mNotedNumbers : mNotedNumbers & (-1 << number);
+        return numbers == 0 ? 0 : Integer.numberOfTrailingZeros(numbers) + 1;
     }
 
     /**
-     * Returns numbers currently noted in cell.
+     * Returns numbers currently noted in cell. Allocates new list, use {@link #nextNumber(int)}
+     * where it matters.
      *
      * @return
      */
@@ -136,13 +191,13 @@ public class CellNote {
      * Toggles noted number: if number is already noted, it will be removed otherwise it will be added.
      *
      * @param number Number to toggle.
-     * @return New CellNote instance with changes.
+     * @return CellNote instance with changes.
      */
     public CellNote toggleNumber(int number) {
         if (number < 1 || number > 9)
             throw new IllegalArgumentException("Number must be between 1-9.");
 
-        return new CellNote((short) (mNotedNumbers ^ (1 << (number - 1))));
+        return NOTES[mNotedNumbers ^ (1 << (number - 1))];
     }
 
     /**
@@ -155,7 +210,7 @@ public class CellNote {
         if (number < 1 || number > 9)
             throw new IllegalArgumentException("Number must be between 1-9.");
 
-        return new CellNote((short) (mNotedNumbers | (1 << (number - 1))));
+        return NOTES[mNotedNumbers | (1 << (number - 1))];
     }
 
     /**
@@ -168,7 +223,7 @@ public class CellNote {
         if (number < 1 || number > 9)
             throw new IllegalArgumentException("Number must be between 1-9.");
 
-        return new CellNote((short) (mNotedNumbers & ~(1 << (number - 1))));
+        return NOTES[mNotedNumbers & ~(1 << (number - 1))];
     }
 
     public boolean hasNumber(int number) {
@@ -180,7 +235,7 @@ public class CellNote {
     }
 
     public CellNote clear() {
-        return new CellNote();
+        return EMPTY;
     }
 
     /**
@@ -0,0 +1,164 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Exact cover matrix of the sudoku puzzle with the dancing links (DLX) search.
+ * <p>
+ * Links are built once by subclasses, every covered column is recorded on a stack, so the
+ * matrix can be restored by {@link #uncoverTo(int)} and reused for another puzzle.
+ */
+abstract class DancingLinks {
+
+    static final int NUM_ROWS = 9;
+    static final int NUM_COLS = 9;
+    static final int NUM_VALS = 9;
+    static final int NUM_CONSTRAINTS = 4;
+    static final int NUM_CELLS = NUM_ROWS * NUM_COLS;
+    static final int NUM_MATRIX_ROWS = NUM_CELLS * NUM_VALS;
+    static final int NUM_MATRIX_COLS = NUM_CELLS * NUM_CONSTRAINTS;
+
+    /**
+     * Constraint matrix shared by all instances. For each row of the matrix (cell and value
+     * combination) it contains indexes of the four columns (cell, row, column and block
+     * constraints), which are satisfied by that row.
+     */
+    static final int[][] CONSTRAINT_MATRIX = createConstraintMatrix();
+
+    // Matrix rows of the partial solution, complete after search() returns true.
+    final int[] mSolution = new int[NUM_CELLS];
+    int mSolutionSize;
+    // Rows of the first found solution.
+    final int[] mFirstSolution = new int[NUM_CELLS];
+    int mFirstSolutionSize;
+    // Search stops after this number of solutions is found.
+    int mSolutionLimit = 1;
+    int mSolutionCount;
+
+    SolverControl mControl;
+    long mExploredNodes;
+    long mBacktracks;
+    long mCoveredColumns;
+    int mMaxDepth;
+    // True if the search was stopped by mControl.
+    boolean mStopped;
+
+    /**
+     * Covers all columns of given matrix row.
+     *
+     * @return false, if any of the row's columns is already covered, nothing is covered
+     * in such case.
+     */
+    abstract boolean coverRow(int matrixRow);
+
+    /**
+     * Returns number of currently covered columns.
+     */
+    abstract int getCoverDepth();
+
+    /**
+     * Uncovers columns in the reverse order until only <code>depth</code> columns
+     * remain covered.
+     */
+    abstract void uncoverTo(int depth);
+
+    /**
+     * Dancing links algorithm. Every found solution is counted by {@link #onSolutionFound()},
+     * search stops when <code>mSolutionLimit</code> solutions are found or when it is stopped
+     * by <code>mControl</code>. Covered columns are then left as they are, call
+     * {@link #uncoverTo(int)} to restore the matrix.
+     *
+     * @return true if the search was stopped.
+     */
+    abstract boolean search();
+
+    /**
+     * Resets search state, call before {@link #search()}.
+     */
+    void prepareSearch(int solutionLimit, SolverControl control) {
+        mSolutionSize = 0;
+        mFirstSolutionSize = 0;
+        mSolutionLimit = solutionLimit;
+        mSolutionCount = 0;
+        mControl = control;
+        mExploredNodes = 0;
+        mBacktracks = 0;
+        mCoveredColumns = 0;
+        mMaxDepth = 0;
+        mStopped = false;
+        if (control != null) {
+            control.start();
+        }
+    }
+
+    /**
+     * Called by {@link #search()} when all columns are covered.
+     *
+     * @return true if the solution limit was reached.
+     */
+    final boolean onSolutionFound() {
+        mSolutionCount++;
+        if (mSolutionCount == 1) {
+            System.arraycopy(mSolution, 0, mFirstSolution, 0, mSolutionSize);
+            mFirstSolutionSize = mSolutionSize;
+        }
+        return mSolutionCount >= mSolutionLimit;
+    }
+
+    /**
+     * Called by {@link #search()} for each explored node.
+     *
+     * @return true if the search should be stopped.
+     */
+    final boolean onNodeExplored() {
+        mExploredNodes++;
+        if (mSolutionSize > mMaxDepth) {
+            mMaxDepth = mSolutionSize;
+        }
+        if (mControl != null && mControl.shouldStop(mExploredNodes)) {
+            mStopped = true;
+        }
+        return mStopped;
+    }
+
+    private static int[][] createConstraintMatrix() {
+        int[][] matrix = new int[NUM_MATRIX_ROWS][NUM_CONSTRAINTS];
+
+        // calculate column where constraint will go
+        int rowShift = NUM_CELLS;
+        int colShift = NUM_CELLS * 2;
+        int blockShift = NUM_CELLS * 3;
+
+        for (int row = 0; row < NUM_ROWS; row++) {
+            for (int col = 0; col < NUM_COLS; col++) {
+                int block = (row / 3) * 3 + col / 3;
+                for (int val = 0; val < NUM_VALS; val++) {
+                    int[] columns = matrix[cellToRow(row, col, val)];
+                    columns[0] = row * NUM_COLS + col; // cell constraint
+                    columns[1] = rowShift + row * NUM_VALS + val; // row constraint
+                    columns[2] = colShift + col * NUM_VALS + val; // col constraint
+                    columns[3] = blockShift + block * NUM_VALS + val; // block constraint
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Converts from puzzle cell to constraint matrix
+     *
+     * @param row 0-8 index
+     * @param col 0-8 index
+     * @param val 0-8 index (representing values 1-9)
+     * @return row in constraint matrix corresponding to cell indices and value
+     */
+    static int cellToRow(int row, int col, int val) {
+        return 81 * row + 9 * col + val;
+    }
+
+    static int[] rowToCell(int matrixRow) {
+        int[] rowColVal = new int[3];
+        rowColVal[0] = matrixRow / 81;
+        rowColVal[1] = matrixRow % 81 / 9;
+        rowColVal[2] = matrixRow % 9 + 1;
+        return rowColVal;
+    }
+}
@@ -0,0 +1,68 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Finds the next logical step of the game, which can be shown to the player as a hint.
+ * <p>
+ * Candidates of the cells are kept in {@link LogicalSolver} between the hints. Before each
+ * hint, values of the game are compared with the values known to the solver and only the
+ * changed cells are updated, so a hint costs just a search for the easiest applicable
+ * technique, not solving the whole puzzle. Comparing the values (instead of listening to
+ * the individual commands) keeps the state correct after any kind of undo.
+ * <p>
+ * Values which do not match the solution are left out, so the solver works only with
+ * the givens and the correct values. Otherwise it would deduce steps from the wrong values,
+ * which are wrong too. Cell with wrong value is then just one of the empty cells, so it
+ * can be the cell of the next placement.
+ * <p>
+ * Eliminations of the hints given so far are remembered, so asking repeatedly for a hint
+ * leads towards a cell which can be filled in. They are forgotten once some value
+ * is cleared or replaced.
+ */
+public class HintEngine {
+
+    private final CellCollection mCells;
+    private final LogicalSolver mSolver = new LogicalSolver();
+    private boolean mLoaded;
+
+    public HintEngine(CellCollection cells) {
+        mCells = cells;
+    }
+
+    /**
+     * Returns the easiest step which can be made in the current state of the game. Step
+     * which fills in a value is only reported, the value is not filled in.
+     *
+     * @param solution Values of all cells in the solution, indexed by row * 9 + column,
+     *                 or null if it is not known, all the values are used then.
+     * @return Next step or null if the game is completed or the values entered so far
+     * contradict each other.
+     */
+    public LogicalStep getNextStep(int[] solution) {
+        update(solution);
+        return mSolver.findHint();
+    }
+
+    /**
+     * Forgets the state, should be called when givens change.
+     */
+    public void reset() {
+        mLoaded = false;
+    }
+
+    private void update(int[] solution) {
+        if (!mLoaded) {
+            mSolver.setBoard(mCells);
+            mLoaded = true;
+        }
+
+        for (int index = 0; index < CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE; index++) {
+            int value = mCells.getValue(index);
+            if (solution != null && value != solution[index]) {
+                value = 0;
+            }
+            if (mSolver.getValue(index) != value) {
+                mSolver.setValue(index, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,1006 @@
+package org.moire.opensudoku.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Solves sudoku the way a human would, using logical techniques only, and rates its difficulty.
+ * <p>
+ * Candidates of each cell are represented by 9-bit mask (bit 0 for value 1, bit 8 for
+ * value 9). In each step the easiest technique which makes some progress is used, the
+ * difficulty of the puzzle is the difficulty of the hardest technique needed. When no
+ * technique helps, correct value is filled into the cell with the fewest candidates
+ * ({@link #TECHNIQUE_GUESS}) and solving continues.
+ * <p>
+ * Instances can be reused, just call {@link #setPuzzle(CellCollection)} before each
+ * {@link #solve()}. Instances are not thread safe.
+ */
+public class LogicalSolver {
+
+    // Techniques are ordered by their difficulty.
+    public static final int TECHNIQUE_HIDDEN_SINGLE = 0;
+    public static final int TECHNIQUE_NAKED_SINGLE = 1;
+    public static final int TECHNIQUE_LOCKED_CANDIDATES = 2;
+    public static final int TECHNIQUE_NAKED_PAIR = 3;
+    public static final int TECHNIQUE_X_WING = 4;
+    public static final int TECHNIQUE_HIDDEN_PAIR = 5;
+    public static final int TECHNIQUE_NAKED_TRIPLE = 6;
+    public static final int TECHNIQUE_SWORDFISH = 7;
+    public static final int TECHNIQUE_HIDDEN_TRIPLE = 8;
+    public static final int TECHNIQUE_XY_WING = 9;
+    public static final int TECHNIQUE_NAKED_QUAD = 10;
+    public static final int TECHNIQUE_HIDDEN_QUAD = 11;
+    public static final int TECHNIQUE_SIMPLE_COLORING = 12;
+    public static final int TECHNIQUE_GUESS = 13;
+
+    /**
+     * Difficulty of puzzles which have no solution.
+     */
+    public static final int DIFFICULTY_UNKNOWN = -1;
+
+    public static final int LEVEL_UNKNOWN = -1;
+    public static final int LEVEL_EASY = 0;
+    public static final int LEVEL_MEDIUM = 1;
+    public static final int LEVEL_HARD = 2;
+    public static final int LEVEL_EXPERT = 3;
+
+    private static final int[] TECHNIQUE_DIFFICULTY = {
+            12, 23, 28, 30, 32, 34, 36, 38, 40, 42, 50, 54, 65, 100
+    };
+
+    // highest difficulty of each level
+    private static final int[] LEVEL_MAX_DIFFICULTY = {23, 34, 65, 100};
+
+    private static final int NUM_CELLS = 81;
+    private static final int ALL_VALUES = 0x1FF;
+    private static final int NO_TECHNIQUE = -1;
+
+    private static final int[] CELL_ROW = CellCollection.CELL_ROW;
+    private static final int[] CELL_COL = CellCollection.CELL_COL;
+    private static final int[] CELL_BOX = CellCollection.CELL_BOX;
+    private static final int[][] UNITS = CellCollection.GROUP_CELLS;
+
+    /**
+     * Cells sharing row, column or box with each cell.
+     */
+    private static final int[][] PEERS = new int[NUM_CELLS][20];
+
+    /**
+     * Intersections of boxes with rows and columns: cells of the intersection, remaining
+     * cells of the box and remaining cells of the line.
+     */
+    private static final int[][] INTERSECTION_CELLS = new int[54][3];
+    private static final int[][] INTERSECTION_BOX_REST = new int[54][6];
+    private static final int[][] INTERSECTION_LINE_REST = new int[54][6];
+
+    static {
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            int size = 0;
+            for (int other = 0; other < NUM_CELLS; other++) {
+                if (other != cell && sees(cell, other)) {
+                    PEERS[cell][size++] = other;
+                }
+            }
+        }
+
+        int intersection = 0;
+        for (int box = 0; box < 9; box++) {
+            for (int k = 0; k < 6; k++) {
+                int line = k < 3 ? (box / 3) * 3 + k : 9 + (box % 3) * 3 + k - 3;
+                int cellCount = 0;
+                int boxRestCount = 0;
+                int lineRestCount = 0;
+                for (int cell : UNITS[18 + box]) {
+                    if (isInUnit(cell, line)) {
+                        INTERSECTION_CELLS[intersection][cellCount++] = cell;
+                    } else {
+                        INTERSECTION_BOX_REST[intersection][boxRestCount++] = cell;
+                    }
+                }
+                for (int cell : UNITS[line]) {
+                    if (CELL_BOX[cell] != box) {
+                        INTERSECTION_LINE_REST[intersection][lineRestCount++] = cell;
+                    }
+                }
+                intersection++;
+            }
+        }
+    }
+
+    private final int[] mValues = new int[NUM_CELLS];
+    private final int[] mCandidates = new int[NUM_CELLS];
+    private int mEmptyCells;
+    private boolean mContradiction;
+    private int mDifficulty;
+    // Values of the givens, used to find the solution for guessing.
+    private final int[] mGivens = new int[NUM_CELLS];
+
+    // Solution used for guessing, found by brute force when it is needed for the first time.
+    private BitmaskSolver mBruteForceSolver;
+    private final int[] mSolution = new int[NUM_CELLS];
+    private boolean mSolutionKnown;
+
+    private boolean mTraceEnabled;
+    private final List<LogicalStep> mSteps = new ArrayList<>();
+
+    // State of the step being made, it is recorded only when mRecording is true.
+    private boolean mRecording;
+    // Values found by the techniques are not filled in when looking for a hint.
+    private boolean mHintMode;
+    private LogicalStep mLastStep;
+    private final int[] mEliminations = new int[NUM_CELLS * 9];
+    private int mEliminationCount;
+
+    // Work arrays of the techniques.
+    private final int[] mUnitCells = new int[9];
+    private final int[] mSubset = new int[9];
+    private final int[] mPositions = new int[9];
+    private final int[] mColors = new int[NUM_CELLS];
+    private final int[] mComponent = new int[NUM_CELLS];
+    private final int[] mConjugates = new int[27 * 2];
+    private final int[] mCandidateCounts = new int[27];
+
+    /**
+     * Rates given puzzle.
+     *
+     * @return Difficulty of the puzzle, see {@link #getDifficulty()}.
+     */
+    public static int rate(CellCollection cells) {
+        LogicalSolver solver = new LogicalSolver();
+        solver.setPuzzle(cells);
+        solver.solve();
+        return solver.getDifficulty();
+    }
+
+    /**
+     * Returns difficulty of given technique, the higher the harder.
+     */
+    public static int getTechniqueDifficulty(int technique) {
+        return TECHNIQUE_DIFFICULTY[technique];
+    }
+
+    /**
+     * Returns difficulty level of the puzzle with given difficulty.
+     *
+     * @return One of <code>LEVEL_*</code> constants.
+     */
+    public static int getDifficultyLevel(int difficulty) {
+        if (difficulty < 0) {
+            return LEVEL_UNKNOWN;
+        }
+        for (int level = LEVEL_EASY; level < LEVEL_EXPERT; level++) {
+            if (difficulty <= LEVEL_MAX_DIFFICULTY[level]) {
+                return level;
+            }
+        }
+        return LEVEL_EXPERT;
+    }
+
+    /**
+     * Returns the lowest difficulty of puzzles in given level.
+     */
+    public static int getLevelMinDifficulty(int level) {
+        return level == LEVEL_EASY ? 0 : LEVEL_MAX_DIFFICULTY[level - 1] + 1;
+    }
+
+    /**
+     * Returns the highest difficulty of puzzles in given level.
+     */
+    public static int getLevelMaxDifficulty(int level) {
+        return level == LEVEL_EXPERT ? Integer.MAX_VALUE : LEVEL_MAX_DIFFICULTY[level];
+    }
+
+    /**
+     * Enables recording of all the steps made by {@link #solve()}, see {@link #getSteps()}.
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        mTraceEnabled = traceEnabled;
+    }
+
+    /**
+     * Sets puzzle to solve, only values of the cells which are not editable are used.
+     */
+    public void setPuzzle(CellCollection cells) {
+        readValues(cells, true, mGivens);
+        load(mGivens);
+    }
+
+    /**
+     * Sets puzzle given as values of the cells indexed by row * 9 + column, 0 for empty cell.
+     */
+    void setPuzzle(int[] givens) {
+        System.arraycopy(givens, 0, mGivens, 0, NUM_CELLS);
+        load(mGivens);
+    }
+
+    /**
+     * Sets current state of the game, values entered by the player are used as well
+     * as the givens. Used by {@link HintEngine}, which then keeps the state up to date by
+     * {@link #setValue(int, int)}.
+     */
+    void setBoard(CellCollection cells) {
+        readValues(cells, true, mGivens);
+        readValues(cells, false, mValues);
+        load(mValues);
+    }
+
+    private void load(int[] values) {
+        mSolutionKnown = false;
+        mDifficulty = 0;
+        mSteps.clear();
+        System.arraycopy(values, 0, mValues, 0, NUM_CELLS);
+        rebuildCandidates();
+    }
+
+    private static void readValues(CellCollection cells, boolean givensOnly, int[] values) {
+        for (int index = 0; index < NUM_CELLS; index++) {
+            values[index] = givensOnly && cells.isEditable(index) ? 0 : cells.getValue(index);
+        }
+    }
+
+    /**
+     * Changes value of one cell (0 to clear it). Filling in a value only removes it from
+     * candidates of the peers, but when value is cleared or replaced, candidates of the whole
+     * board are computed again, since eliminations made so far may depend on the old value.
+     */
+    void setValue(int cell, int value) {
+        int oldValue = mValues[cell];
+        if (oldValue == value) {
+            return;
+        }
+        if (oldValue == 0) {
+            if ((mCandidates[cell] & (1 << (value - 1))) == 0) {
+                mContradiction = true;
+            }
+            place(cell, value);
+        } else {
+            mValues[cell] = value;
+            rebuildCandidates();
+        }
+    }
+
+    /**
+     * Solves the puzzle.
+     *
+     * @return False if puzzle has no solution.
+     */
+    public boolean solve() {
+        mRecording = mTraceEnabled;
+        while (mEmptyCells > 0 && !mContradiction) {
+            int technique = step();
+            if (technique == NO_TECHNIQUE) {
+                break;
+            }
+            if (mTraceEnabled) {
+                mSteps.add(mLastStep);
+            }
+        }
+        mRecording = false;
+        return isSolved();
+    }
+
+    /**
+     * Makes one step of the solution.
+     *
+     * @return Step made or null if puzzle is already solved or has no solution.
+     */
+    public LogicalStep nextStep() {
+        if (mEmptyCells == 0 || mContradiction) {
+            return null;
+        }
+
+        mRecording = true;
+        int technique = step();
+        mRecording = false;
+        return technique == NO_TECHNIQUE ? null : mLastStep;
+    }
+
+    /**
+     * Finds the easiest step which can be made from the current state, without filling in
+     * its value. Eliminations made by the step are kept, so that next call finds another step.
+     *
+     * @return Step found or null if puzzle is already solved or has no solution.
+     */
+    LogicalStep findHint() {
+        if (mEmptyCells == 0 || mContradiction) {
+            return null;
+        }
+
+        mRecording = true;
+        mHintMode = true;
+        int technique = findStep();
+        mHintMode = false;
+        mRecording = false;
+        return technique == NO_TECHNIQUE ? null : mLastStep;
+    }
+
+    public boolean isSolved() {
+        return mEmptyCells == 0 && !mContradiction;
+    }
+
+    /**
+     * Returns difficulty of the puzzle, which is the difficulty of the hardest technique
+     * used so far. Returns {@link #DIFFICULTY_UNKNOWN} if the puzzle has no solution.
+     */
+    public int getDifficulty() {
+        return mContradiction ? DIFFICULTY_UNKNOWN : mDifficulty;
+    }
+
+    /**
+     * Returns steps made by {@link #solve()}, if trace was enabled.
+     */
+    public List<LogicalStep> getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * Returns value of the cell with given index (row * 9 + column), 0 if it is still empty.
+     */
+    public int getValue(int cell) {
+        return mValues[cell];
+    }
+
+    /**
+     * Returns candidates of the cell with given index (row * 9 + column) as bitmask.
+     */
+    public int getCandidates(int cell) {
+        return mCandidates[cell];
+    }
+
+    private int step() {
+        int technique = findStep();
+        if (technique != NO_TECHNIQUE) {
+            mDifficulty = Math.max(mDifficulty, TECHNIQUE_DIFFICULTY[technique]);
+        }
+        return technique;
+    }
+
+    private int findStep() {
+        mEliminationCount = 0;
+        if (findHiddenSingle()) {
+            return TECHNIQUE_HIDDEN_SINGLE;
+        }
+        if (findNakedSingle()) {
+            return TECHNIQUE_NAKED_SINGLE;
+        }
+        if (mContradiction) {
+            return NO_TECHNIQUE;
+        }
+        if (findLockedCandidates()) {
+            return TECHNIQUE_LOCKED_CANDIDATES;
+        }
+        if (findNakedSubset(2, TECHNIQUE_NAKED_PAIR)) {
+            return TECHNIQUE_NAKED_PAIR;
+        }
+        if (findFish(2, TECHNIQUE_X_WING)) {
+            return TECHNIQUE_X_WING;
+        }
+        if (findHiddenSubset(2, TECHNIQUE_HIDDEN_PAIR)) {
+            return TECHNIQUE_HIDDEN_PAIR;
+        }
+        if (findNakedSubset(3, TECHNIQUE_NAKED_TRIPLE)) {
+            return TECHNIQUE_NAKED_TRIPLE;
+        }
+        if (findFish(3, TECHNIQUE_SWORDFISH)) {
+            return TECHNIQUE_SWORDFISH;
+        }
+        if (findHiddenSubset(3, TECHNIQUE_HIDDEN_TRIPLE)) {
+            return TECHNIQUE_HIDDEN_TRIPLE;
+        }
+        if (findXYWing()) {
+            return TECHNIQUE_XY_WING;
+        }
+        if (findNakedSubset(4, TECHNIQUE_NAKED_QUAD)) {
+            return TECHNIQUE_NAKED_QUAD;
+        }
+        if (findHiddenSubset(4, TECHNIQUE_HIDDEN_QUAD)) {
+            return TECHNIQUE_HIDDEN_QUAD;
+        }
+        if (findSimpleColoring()) {
+            return TECHNIQUE_SIMPLE_COLORING;
+        }
+        if (guess()) {
+            return TECHNIQUE_GUESS;
+        }
+        return NO_TECHNIQUE;
+    }
+
+    /**
+     * Value which has only one possible cell in some group.
+     */
+    private boolean findHiddenSingle() {
+        for (int[] unit : UNITS) {
+            int once = 0;
+            int twice = 0;
+            int placed = 0;
+            for (int cell : unit) {
+                if (mValues[cell] == 0) {
+                    twice |= once & mCandidates[cell];
+                    once |= mCandidates[cell];
+                } else {
+                    placed |= 1 << (mValues[cell] - 1);
+                }
+            }
+
+            if ((once | placed) != ALL_VALUES) {
+                mContradiction = true;
+                return false;
+            }
+
+            int hidden = once & ~twice;
+            if (hidden != 0) {
+                int bit = hidden & -hidden;
+                for (int cell : unit) {
+                    if ((mCandidates[cell] & bit) != 0) {
+                        int value = Integer.numberOfTrailingZeros(bit) + 1;
+                        fill(cell, value);
+                        recordPlacement(TECHNIQUE_HIDDEN_SINGLE, cell, value, unit);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cell with only one candidate.
+     */
+    private boolean findNakedSingle() {
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            if (mValues[cell] == 0) {
+                int candidates = mCandidates[cell];
+                if (candidates == 0) {
+                    mContradiction = true;
+                    return false;
+                }
+                if ((candidates & (candidates - 1)) == 0) {
+                    int value = Integer.numberOfTrailingZeros(candidates) + 1;
+                    fill(cell, value);
+                    recordPlacement(TECHNIQUE_NAKED_SINGLE, cell, value, new int[]{cell});
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Candidates in the intersection of box and line, which are not in the rest of the box
+     * (pointing) or not in the rest of the line (claiming).
+     */
+    private boolean findLockedCandidates() {
+        for (int i = 0; i < INTERSECTION_CELLS.length; i++) {
+            int inside = candidatesOf(INTERSECTION_CELLS[i]);
+            int boxRest = candidatesOf(INTERSECTION_BOX_REST[i]);
+            int lineRest = candidatesOf(INTERSECTION_LINE_REST[i]);
+
+            int pointing = inside & ~boxRest & lineRest;
+            if (pointing != 0) {
+                int bit = pointing & -pointing;
+                eliminateFromCells(INTERSECTION_LINE_REST[i], bit);
+                recordElimination(TECHNIQUE_LOCKED_CANDIDATES, bit, INTERSECTION_CELLS[i]);
+                return true;
+            }
+
+            int claiming = inside & ~lineRest & boxRest;
+            if (claiming != 0) {
+                int bit = claiming & -claiming;
+                eliminateFromCells(INTERSECTION_BOX_REST[i], bit);
+                recordElimination(TECHNIQUE_LOCKED_CANDIDATES, bit, INTERSECTION_CELLS[i]);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * N cells in a group which together have only N candidates.
+     */
+    private boolean findNakedSubset(int size, int technique) {
+        for (int[] unit : UNITS) {
+            int count = 0;
+            for (int cell : unit) {
+                if (mValues[cell] == 0) {
+                    mUnitCells[count++] = cell;
+                }
+            }
+            // subset of all the empty cells cannot eliminate anything
+            if (count > size && findNakedSubset(unit, count, size, 0, 0, 0, technique)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses cells of the subset from <code>mUnitCells</code> recursively.
+     *
+     * @param depth Number of cells chosen so far (stored in <code>mSubset</code>).
+     * @param union Candidates of the cells chosen so far.
+     */
+    private boolean findNakedSubset(int[] unit, int count, int size, int start, int depth,
+                                    int union, int technique) {
+        for (int i = start; i < count; i++) {
+            int cell = mUnitCells[i];
+            int newUnion = union | mCandidates[cell];
+            if (Integer.bitCount(newUnion) > size) {
+                continue;
+            }
+            mSubset[depth] = cell;
+            if (depth + 1 == size) {
+                if (eliminateFromUnit(unit, size, newUnion)) {
+                    recordElimination(technique, newUnion, Arrays.copyOf(mSubset, size));
+                    return true;
+                }
+            } else if (findNakedSubset(unit, count, size, i + 1, depth + 1, newUnion, technique)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Eliminates candidates from the cells of the unit which are not in the subset.
+     */
+    private boolean eliminateFromUnit(int[] unit, int size, int candidates) {
+        boolean changed = false;
+        for (int cell : unit) {
+            if (mValues[cell] == 0 && !isInSubset(cell, size)) {
+                changed |= eliminate(cell, candidates);
+            }
+        }
+        return changed;
+    }
+
+    private boolean isInSubset(int cell, int size) {
+        for (int i = 0; i < size; i++) {
+            if (mSubset[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * N values in a group which together have only N possible cells.
+     */
+    private boolean findHiddenSubset(int size, int technique) {
+        for (int[] unit : UNITS) {
+            int emptyCells = 0;
+            Arrays.fill(mPositions, 0);
+            for (int i = 0; i < 9; i++) {
+                int cell = unit[i];
+                if (mValues[cell] == 0) {
+                    emptyCells++;
+                    for (int candidates = mCandidates[cell]; candidates != 0; candidates &= candidates - 1) {
+                        mPositions[Integer.numberOfTrailingZeros(candidates)] |= 1 << i;
+                    }
+                }
+            }
+            // subset of all the empty cells cannot eliminate anything
+            if (emptyCells > size && findHiddenSubset(unit, size, 0, 0, 0, 0, technique)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses values of the subset recursively.
+     *
+     * @param depth     Number of values chosen so far.
+     * @param digits    Values chosen so far as bitmask.
+     * @param positions Cells of the unit where chosen values can be as bitmask.
+     */
+    private boolean findHiddenSubset(int[] unit, int size, int start, int depth, int digits,
+                                     int positions, int technique) {
+        for (int value = start; value < 9; value++) {
+            if (mPositions[value] == 0) {
+                continue;
+            }
+            int newPositions = positions | mPositions[value];
+            if (Integer.bitCount(newPositions) > size) {
+                continue;
+            }
+            int newDigits = digits | (1 << value);
+            if (depth + 1 == size) {
+                boolean changed = false;
+                for (int p = newPositions; p != 0; p &= p - 1) {
+                    changed |= eliminate(unit[Integer.numberOfTrailingZeros(p)], ~newDigits & ALL_VALUES);
+                }
+                if (changed) {
+                    recordElimination(technique, newDigits, cellsAt(unit, newPositions));
+                    return true;
+                }
+            } else if (findHiddenSubset(unit, size, value + 1, depth + 1, newDigits, newPositions,
+                    technique)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * N rows, where value can be only in the same N columns (or vice versa). Value can then
+     * be eliminated from the rest of these columns.
+     */
+    private boolean findFish(int size, int technique) {
+        for (int value = 0; value < 9; value++) {
+            int bit = 1 << value;
+            // rows (units 0-8) as base lines and columns (units 9-17) as cover lines and back
+            for (int base = 0; base <= 9; base += 9) {
+                for (int line = 0; line < 9; line++) {
+                    int positions = 0;
+                    int[] unit = UNITS[base + line];
+                    for (int i = 0; i < 9; i++) {
+                        if ((mCandidates[unit[i]] & bit) != 0) {
+                            positions |= 1 << i;
+                        }
+                    }
+                    mPositions[line] = positions;
+                }
+                if (findFish(size, bit, base, 0, 0, 0, 0, technique)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses base lines of the fish recursively.
+     *
+     * @param lines     Base lines chosen so far as bitmask.
+     * @param positions Cover lines of the chosen base lines as bitmask.
+     */
+    private boolean findFish(int size, int bit, int base, int start, int depth, int lines,
+                             int positions, int technique) {
+        int cover = base == 0 ? 9 : 0;
+        for (int line = start; line < 9; line++) {
+            if (mPositions[line] == 0) {
+                continue;
+            }
+            int newPositions = positions | mPositions[line];
+            if (Integer.bitCount(newPositions) > size) {
+                continue;
+            }
+            int newLines = lines | (1 << line);
+            if (depth + 1 == size) {
+                boolean changed = false;
+                for (int p = newPositions; p != 0; p &= p - 1) {
+                    int[] coverUnit = UNITS[cover + Integer.numberOfTrailingZeros(p)];
+                    // i-th cell of the cover line lies in the i-th base line
+                    for (int i = 0; i < 9; i++) {
+                        if ((newLines & (1 << i)) == 0) {
+                            changed |= eliminate(coverUnit[i], bit);
+                        }
+                    }
+                }
+                if (changed) {
+                    recordElimination(technique, bit, fishCells(bit, base, newLines, newPositions));
+                    return true;
+                }
+            } else if (findFish(size, bit, base, line + 1, depth + 1, newLines, newPositions,
+                    technique)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] fishCells(int bit, int base, int lines, int positions) {
+        if (!mRecording) {
+            return null;
+        }
+        int count = 0;
+        int[] cells = new int[Integer.bitCount(lines) * Integer.bitCount(positions)];
+        for (int l = lines; l != 0; l &= l - 1) {
+            int[] unit = UNITS[base + Integer.numberOfTrailingZeros(l)];
+            for (int p = positions; p != 0; p &= p - 1) {
+                int cell = unit[Integer.numberOfTrailingZeros(p)];
+                if ((mCandidates[cell] & bit) != 0) {
+                    cells[count++] = cell;
+                }
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+
+    /**
+     * Short chain of three cells with two candidates each: pivot XY and two pincers XZ and YZ
+     * seen by the pivot. One of the pincers is Z, so Z can be eliminated from all the cells
+     * seeing both pincers.
+     */
+    private boolean findXYWing() {
+        for (int pivot = 0; pivot < NUM_CELLS; pivot++) {
+            int pivotCandidates = mCandidates[pivot];
+            if (Integer.bitCount(pivotCandidates) != 2) {
+                continue;
+            }
+
+            for (int i = 0; i < PEERS[pivot].length; i++) {
+                int first = PEERS[pivot][i];
+                int firstCandidates = mCandidates[first];
+                if (Integer.bitCount(firstCandidates) != 2
+                        || Integer.bitCount(firstCandidates & pivotCandidates) != 1) {
+                    continue;
+                }
+                int z = firstCandidates & ~pivotCandidates;
+                int secondCandidates = (pivotCandidates & ~firstCandidates) | z;
+
+                for (int j = i + 1; j < PEERS[pivot].length; j++) {
+                    int second = PEERS[pivot][j];
+                    if (mCandidates[second] != secondCandidates) {
+                        continue;
+                    }
+
+                    boolean changed = false;
+                    for (int cell : PEERS[first]) {
+                        if (cell != pivot && cell != second && sees(cell, second)) {
+                            changed |= eliminate(cell, z);
+                        }
+                    }
+                    if (changed) {
+                        recordElimination(TECHNIQUE_XY_WING, pivotCandidates | z,
+                                new int[]{pivot, first, second});
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chains of conjugate pairs (groups where value has exactly two possible cells) of one
+     * value. Cells of the chain are colored by two alternating colors, the value is in all
+     * the cells of one color. If two cells of the same color see each other, the value can
+     * be eliminated from all the cells of this color. Value can be also eliminated from
+     * any cell which sees cells of both colors.
+     */
+    private boolean findSimpleColoring() {
+        for (int value = 0; value < 9; value++) {
+            int bit = 1 << value;
+
+            for (int u = 0; u < UNITS.length; u++) {
+                int count = 0;
+                for (int cell : UNITS[u]) {
+                    if ((mCandidates[cell] & bit) != 0) {
+                        if (count < 2) {
+                            mConjugates[u * 2 + count] = cell;
+                        }
+                        count++;
+                    }
+                }
+                mCandidateCounts[u] = count;
+            }
+
+            Arrays.fill(mColors, 0);
+            for (int start = 0; start < NUM_CELLS; start++) {
+                if (mColors[start] != 0 || (mCandidates[start] & bit) == 0) {
+                    continue;
+                }
+
+                int size = colorComponent(start);
+                if (size > 2 && eliminateByColors(bit, size)) {
+                    recordElimination(TECHNIQUE_SIMPLE_COLORING, bit, Arrays.copyOf(mComponent, size));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Colors all the cells connected to the start cell by conjugate pairs, colors are 1 and 2.
+     *
+     * @return Number of cells in the component, cells are stored in <code>mComponent</code>.
+     */
+    private int colorComponent(int start) {
+        int size = 0;
+        mComponent[size++] = start;
+        mColors[start] = 1;
+        for (int i = 0; i < size; i++) {
+            int cell = mComponent[i];
+            for (int k = 0; k < 3; k++) {
+                int u = k == 0 ? CELL_ROW[cell] : k == 1 ? 9 + CELL_COL[cell] : 18 + CELL_BOX[cell];
+                if (mCandidateCounts[u] == 2) {
+                    int other = mConjugates[u * 2] == cell ? mConjugates[u * 2 + 1] : mConjugates[u * 2];
+                    if (mColors[other] == 0) {
+                        mColors[other] = 3 - mColors[cell];
+                        mComponent[size++] = other;
+                    }
+                }
+            }
+        }
+        if (size == 1) {
+            // single cell is not a chain, it will be visited as a part of no other component
+            mColors[start] = -1;
+        }
+        return size;
+    }
+
+    private boolean eliminateByColors(int bit, int size) {
+        // color wrap
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                int a = mComponent[i];
+                int b = mComponent[j];
+                if (mColors[a] == mColors[b] && sees(a, b)) {
+                    int wrongColor = mColors[a];
+                    for (int k = 0; k < size; k++) {
+                        if (mColors[mComponent[k]] == wrongColor) {
+                            eliminate(mComponent[k], bit);
+                        }
+                    }
+                    return true;
+                }
+            }
+        }
+
+        // color trap
+        boolean changed = false;
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            if ((mCandidates[cell] & bit) == 0 || isInComponent(cell, size)) {
+                continue;
+            }
+            int seenColors = 0;
+            for (int i = 0; i < size && seenColors != 3; i++) {
+                if (sees(cell, mComponent[i])) {
+                    seenColors |= mColors[mComponent[i]];
+                }
+            }
+            if (seenColors == 3) {
+                changed |= eliminate(cell, bit);
+            }
+        }
+        return changed;
+    }
+
+    private boolean isInComponent(int cell, int size) {
+        for (int i = 0; i < size; i++) {
+            if (mComponent[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills in correct value of the cell with the fewest candidates.
+     */
+    private boolean guess() {
+        if (!mSolutionKnown && !findSolution()) {
+            mContradiction = true;
+            return false;
+        }
+
+        int bestCell = -1;
+        int bestCount = 10;
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            if (mValues[cell] == 0 && Integer.bitCount(mCandidates[cell]) < bestCount) {
+                bestCell = cell;
+                bestCount = Integer.bitCount(mCandidates[cell]);
+            }
+        }
+
+        int value = mSolution[bestCell];
+        if ((mCandidates[bestCell] & (1 << (value - 1))) == 0) {
+            // puzzle has more solutions and the candidates lead to the other one
+            mContradiction = true;
+            return false;
+        }
+        fill(bestCell, value);
+        recordPlacement(TECHNIQUE_GUESS, bestCell, value, new int[]{bestCell});
+        return true;
+    }
+
+    private boolean findSolution() {
+        if (mBruteForceSolver == null) {
+            mBruteForceSolver = new BitmaskSolver();
+        }
+        mBruteForceSolver.setPuzzle(mGivens);
+        if (!mBruteForceSolver.solve(null).isSolved()) {
+            return false;
+        }
+
+        mBruteForceSolver.getSolution(mSolution);
+        mSolutionKnown = true;
+        return true;
+    }
+
+    /**
+     * Fills in value found by a technique, hints only report it and leave the cell empty.
+     */
+    private void fill(int cell, int value) {
+        if (!mHintMode) {
+            place(cell, value);
+        }
+    }
+
+    private void rebuildCandidates() {
+        mContradiction = false;
+        mEmptyCells = NUM_CELLS;
+        Arrays.fill(mCandidates, ALL_VALUES);
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            int value = mValues[cell];
+            if (value != 0) {
+                if ((mCandidates[cell] & (1 << (value - 1))) == 0) {
+                    mContradiction = true;
+                }
+                place(cell, value);
+            }
+        }
+    }
+
+    private void place(int cell, int value) {
+        int mask = ~(1 << (value - 1));
+        mValues[cell] = value;
+        mCandidates[cell] = 0;
+        for (int peer : PEERS[cell]) {
+            mCandidates[peer] &= mask;
+        }
+        mEmptyCells--;
+    }
+
+    private boolean eliminate(int cell, int candidates) {
+        int removed = mCandidates[cell] & candidates;
+        if (removed == 0) {
+            return false;
+        }
+        mCandidates[cell] &= ~removed;
+        if (mRecording) {
+            for (; removed != 0; removed &= removed - 1) {
+                mEliminations[mEliminationCount++] = cell * 9 + Integer.numberOfTrailingZeros(removed);
+            }
+        }
+        return true;
+    }
+
+    private void eliminateFromCells(int[] cells, int candidates) {
+        for (int cell : cells) {
+            eliminate(cell, candidates);
+        }
+    }
+
+    private int candidatesOf(int[] cells) {
+        int candidates = 0;
+        for (int cell : cells) {
+            candidates |= mCandidates[cell];
+        }
+        return candidates;
+    }
+
+    private int[] cellsAt(int[] unit, int positions) {
+        int[] cells = new int[Integer.bitCount(positions)];
+        int count = 0;
+        for (int p = positions; p != 0; p &= p - 1) {
+            cells[count++] = unit[Integer.numberOfTrailingZeros(p)];
+        }
+        return cells;
+    }
+
+    private void recordPlacement(int technique, int cell, int value, int[] patternCells) {
+        if (mRecording) {
+            mLastStep = new LogicalStep(technique, cell, value, 1 << (value - 1), patternCells,
+                    new int[0]);
+        }
+    }
+
+    private void recordElimination(int technique, int digits, int[] patternCells) {
+        if (mRecording) {
+            mLastStep = new LogicalStep(technique, -1, 0, digits, patternCells,
+                    Arrays.copyOf(mEliminations, mEliminationCount));
+        }
+    }
+
+    private static boolean sees(int a, int b) {
+        return CELL_ROW[a] == CELL_ROW[b] || CELL_COL[a] == CELL_COL[b] || CELL_BOX[a] == CELL_BOX[b];
+    }
+
+    private static boolean isInUnit(int cell, int unit) {
+        return unit < 9 ? CELL_ROW[cell] == unit : CELL_COL[cell] == unit - 9;
+    }
+}
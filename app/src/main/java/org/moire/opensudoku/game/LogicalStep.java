@@ -0,0 +1,84 @@
+package org.moire.opensudoku.game;
+
+/**
+ * One step made by {@link LogicalSolver}. Step either fills in value of one cell, or
+ * eliminates some candidates. Cells are identified by index row * 9 + column.
+ */
+public class LogicalStep {
+
+    private final int mTechnique;
+    private final int mCell;
+    private final int mValue;
+    private final int mDigits;
+    private final int[] mPatternCells;
+    // eliminated candidates packed as cell * 9 + value - 1
+    private final int[] mEliminations;
+
+    LogicalStep(int technique, int cell, int value, int digits, int[] patternCells,
+                int[] eliminations) {
+        mTechnique = technique;
+        mCell = cell;
+        mValue = value;
+        mDigits = digits;
+        mPatternCells = patternCells;
+        mEliminations = eliminations;
+    }
+
+    /**
+     * Returns technique used, one of <code>LogicalSolver.TECHNIQUE_*</code> constants.
+     */
+    public int getTechnique() {
+        return mTechnique;
+    }
+
+    public int getDifficulty() {
+        return LogicalSolver.getTechniqueDifficulty(mTechnique);
+    }
+
+    /**
+     * Returns true if this step fills in value of the cell.
+     */
+    public boolean isPlacement() {
+        return mCell != -1;
+    }
+
+    /**
+     * Returns cell which is filled in by this step, or -1 if step only eliminates candidates.
+     */
+    public int getCell() {
+        return mCell;
+    }
+
+    /**
+     * Returns value which is filled in by this step, or 0 if step only eliminates candidates.
+     */
+    public int getValue() {
+        return mValue;
+    }
+
+    /**
+     * Returns values forming the pattern as bitmask (bit 0 for value 1, bit 8 for value 9).
+     */
+    public int getDigits() {
+        return mDigits;
+    }
+
+    /**
+     * Returns cells forming the pattern (for example both cells of naked pair).
+     */
+    public int[] getPatternCells() {
+        return mPatternCells;
+    }
+
+    public int getEliminationCount() {
+        return mEliminations.length;
+    }
+
+    public int getEliminatedCell(int index) {
+        return mEliminations[index] / 9;
+    }
+
+    public int getEliminatedValue(int index) {
+        return mEliminations[index] % 9 + 1;
+    }
+}
@@ -6,10 +6,12 @@ public class Node {
     int rowID;
     int colID;
     int count;
+    boolean covered;
 
     public Node() {
         left = right = up = down = null;
         rowID = colID = -1;
         count = 0;
+        covered = false;
     }
-}
\ No newline at end of file
+}
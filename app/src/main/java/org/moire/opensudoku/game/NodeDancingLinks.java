@@ -0,0 +1,205 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Dancing links, where each 1 in the constraint matrix is represented by a {@link Node}
+ * object linked to its neighbours.
+ */
+class NodeDancingLinks extends DancingLinks {
+
+    private final Node mHead = new Node();
+    private final Node[] mColumnHeaders = new Node[NUM_MATRIX_COLS];
+    private final Node[] mRowNodes = new Node[NUM_MATRIX_ROWS];
+
+    // Covered column headers in the order in which they were covered.
+    private final Node[] mCoverStack = new Node[NUM_MATRIX_COLS];
+    private int mCoverStackSize;
+
+    NodeDancingLinks() {
+        initializeLinkedList();
+    }
+
+    @Override
+    boolean coverRow(int matrixRow) {
+        Node rowNode = mRowNodes[matrixRow];
+        Node node = rowNode;
+        do {
+            if (node.columnHeader.covered) {
+                return false;
+            }
+            node = node.right;
+        } while (node != rowNode);
+
+        do {
+            cover(node);
+            node = node.right;
+        } while (node != rowNode);
+        return true;
+    }
+
+    @Override
+    int getCoverDepth() {
+        return mCoverStackSize;
+    }
+
+    @Override
+    void uncoverTo(int depth) {
+        while (mCoverStackSize > depth) {
+            uncover(mCoverStack[mCoverStackSize - 1]);
+        }
+    }
+
+    @Override
+    boolean search() {
+        if (mHead.right == mHead) {
+            return onSolutionFound();
+        }
+        if (onNodeExplored()) {
+            return true;
+        }
+
+        Node colNode = chooseColumn();
+        if (colNode.count == 0) {
+            return false;
+        }
+        cover(colNode);
+
+        Node rowNode;
+        for (rowNode = colNode.down; rowNode != colNode; rowNode = rowNode.down) {
+            mSolution[mSolutionSize++] = rowNode.rowID;
+
+            Node rightNode;
+            for (rightNode = rowNode.right; rightNode != rowNode; rightNode = rightNode.right) {
+                cover(rightNode);
+            }
+
+            if (search()) {
+                return true;
+            }
+
+            // undo operations and try the next row
+            mSolutionSize--;
+            mBacktracks++;
+            Node leftNode;
+            for (leftNode = rowNode.left; leftNode != rowNode; leftNode = leftNode.left) {
+                uncover(leftNode);
+            }
+        }
+        uncover(colNode);
+        return false;
+    }
+
+    private void initializeLinkedList() {
+        mHead.left = mHead;
+        mHead.right = mHead;
+
+        // create column headers
+        for (int j = 0; j < NUM_MATRIX_COLS; j++) {
+            Node header = new Node();
+            header.up = header;
+            header.down = header;
+            header.columnHeader = header;
+            header.colID = j;
+
+            header.right = mHead;
+            header.left = mHead.left;
+            mHead.left.right = header;
+            mHead.left = header;
+
+            mColumnHeaders[j] = header;
+        }
+
+        // create node for each 1 in constraint matrix and link it to its column and row
+        for (int i = 0; i < NUM_MATRIX_ROWS; i++) {
+            Node first = null;
+            for (int j : CONSTRAINT_MATRIX[i]) {
+                Node header = mColumnHeaders[j];
+                Node node = new Node();
+                node.columnHeader = header;
+                node.rowID = i;
+                node.colID = j;
+
+                node.down = header;
+                node.up = header.up;
+                header.up.down = node;
+                header.up = node;
+                header.count++;
+
+                if (first == null) {
+                    first = node;
+                    node.left = node;
+                    node.right = node;
+                } else {
+                    node.right = first;
+                    node.left = first.left;
+                    first.left.right = node;
+                    first.left = node;
+                }
+            }
+            mRowNodes[i] = first;
+        }
+    }
+
+    /**
+     * Unlinks node from linked list
+     */
+    private void cover(Node node) {
+        Node colNode = node.columnHeader;
+        colNode.left.right = colNode.right;
+        colNode.right.left = colNode.left;
+
+        Node rowNode;
+        for (rowNode = colNode.down; rowNode != colNode; rowNode = rowNode.down) {
+            Node rightNode;
+            for (rightNode = rowNode.right; rightNode != rowNode; rightNode = rightNode.right) {
+                rightNode.up.down = rightNode.down;
+                rightNode.down.up = rightNode.up;
+                rightNode.columnHeader.count--;
+            }
+        }
+
+        colNode.covered = true;
+        mCoverStack[mCoverStackSize++] = colNode;
+        mCoveredColumns++;
+    }
+
+    /**
+     * Links node back to linked list, columns have to be uncovered in the reverse order
+     * in which they were covered.
+     */
+    private void uncover(Node node) {
+        Node colNode = node.columnHeader;
+        Node upNode;
+        for (upNode = colNode.up; upNode != colNode; upNode = upNode.up) {
+            Node leftNode;
+            for (leftNode = upNode.left; leftNode != upNode; leftNode = leftNode.left) {
+                leftNode.up.down = leftNode;
+                leftNode.down.up = leftNode;
+
+                leftNode.columnHeader.count++;
+            }
+        }
+        colNode.left.right = colNode;
+        colNode.right.left = colNode;
+
+        colNode.covered = false;
+        mCoverStackSize--;
+    }
+
+    /**
+     * Returns column node with lowest # of nodes
+     */
+    private Node chooseColumn() {
+        Node bestNode = null;
+        int lowestNum = 100000;
+
+        Node currentNode = mHead.right;
+        while (currentNode != mHead) {
+            if (currentNode.count < lowestNum) {
+                bestNode = currentNode;
+                lowestNum = currentNode.count;
+            }
+            currentNode = currentNode.right;
+        }
+        return bestNode;
+    }
+}
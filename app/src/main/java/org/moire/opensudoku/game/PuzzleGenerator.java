@@ -0,0 +1,308 @@
+package org.moire.opensudoku.game;
+
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates new puzzles with unique solution, using all available cores.
+ * <p>
+ * Each puzzle starts as a random full grid. Clues are then removed in random order, cells
+ * symmetric to each other are always removed together. Removal is taken back when the puzzle
+ * would have more than one solution, or when it would become harder than requested. Puzzles
+ * which end up easier than requested are thrown away.
+ * <p>
+ * Worker threads generate puzzles until enough of them are accepted, finished puzzles are
+ * passed to {@link OnPuzzleGeneratedListener} on the calling thread, so the listener can store
+ * them in the database directly. Hard puzzles are rare, so generating gives up when no puzzle
+ * is accepted within the time limit.
+ */
+public class PuzzleGenerator {
+
+    public static final int SYMMETRY_NONE = 0;
+    /**
+     * Board looks the same when rotated by 180 degrees.
+     */
+    public static final int SYMMETRY_ROTATIONAL = 1;
+    /**
+     * Left half of the board is mirror image of the right half.
+     */
+    public static final int SYMMETRY_MIRROR = 2;
+    /**
+     * Board is symmetric along the diagonal going from top left to bottom right corner.
+     */
+    public static final int SYMMETRY_DIAGONAL = 3;
+
+    /**
+     * Time limit for {@link #generate(int, int, int, int, long, OnPuzzleGeneratedListener)}
+     * which never stops generating.
+     */
+    public static final long NO_TIME_LIMIT = 0;
+
+    private static final int NUM_CELLS = 81;
+
+    // Number of generated puzzles waiting for the listener per each thread.
+    private static final int QUEUE_SIZE_PER_THREAD = 4;
+    private static final long POLL_INTERVAL = 100;
+
+    private final int mThreadCount;
+    private volatile boolean mCancelled;
+    private boolean mTimeLimitReached;
+
+    /**
+     * Creates generator which uses one thread per each available core.
+     */
+    public PuzzleGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PuzzleGenerator(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1.");
+        }
+        mThreadCount = threadCount;
+    }
+
+    /**
+     * Generates puzzles, returns after all of them are accepted by the listener, the generator
+     * is cancelled or the time limit is reached (see {@link #isTimeLimitReached()}).
+     *
+     * @param count         Number of puzzles to generate.
+     * @param symmetry      One of <code>SYMMETRY_*</code> constants.
+     * @param minDifficulty Lowest accepted difficulty, see {@link LogicalSolver#getDifficulty()}.
+     * @param maxDifficulty Highest accepted difficulty.
+     * @param timeLimit     Longest time in milliseconds to wait for the next accepted puzzle,
+     *                      or {@link #NO_TIME_LIMIT}.
+     * @param listener      Listener called with each puzzle on the calling thread.
+     * @return Number of puzzles accepted by the listener.
+     * @throws IllegalStateException When any of the worker threads fails, with the failure
+     *                               as its cause. Puzzles passed to the listener so far are
+     *                               valid.
+     */
+    public int generate(int count, int symmetry, int minDifficulty, int maxDifficulty,
+                        long timeLimit, OnPuzzleGeneratedListener listener) {
+        if (symmetry < SYMMETRY_NONE || symmetry > SYMMETRY_DIAGONAL) {
+            throw new IllegalArgumentException("Unknown symmetry: " + symmetry);
+        }
+        mCancelled = false;
+        mTimeLimitReached = false;
+
+        BlockingQueue<GeneratedPuzzle> puzzles =
+                new ArrayBlockingQueue<>(mThreadCount * QUEUE_SIZE_PER_THREAD);
+        // first failure of any worker, the other workers are stopped then
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(mThreadCount);
+        for (int i = 0; i < mThreadCount; i++) {
+            executor.execute(() -> {
+                try {
+                    Worker worker = new Worker(symmetry, minDifficulty, maxDifficulty);
+                    while (!mCancelled && !Thread.currentThread().isInterrupted()) {
+                        GeneratedPuzzle puzzle = worker.generate();
+                        if (puzzle != null) {
+                            puzzles.put(puzzle);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // generator is done
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+
+        int generated = 0;
+        boolean interrupted = false;
+        long lastAccepted = System.currentTimeMillis();
+        try {
+            while (generated < count && !mCancelled) {
+                if (failure.get() != null) {
+                    throw new IllegalStateException("Generating of puzzles failed.", failure.get());
+                }
+                GeneratedPuzzle puzzle = puzzles.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (puzzle != null && listener.onPuzzleGenerated(puzzle.mData, puzzle.mDifficulty)) {
+                    generated++;
+                    lastAccepted = System.currentTimeMillis();
+                } else if (timeLimit != NO_TIME_LIMIT
+                        && System.currentTimeMillis() - lastAccepted > timeLimit) {
+                    mTimeLimitReached = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            // workers blocked on the full queue are woken up by the interrupt
+            executor.shutdownNow();
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return generated;
+    }
+
+    /**
+     * Stops generating, can be called from any thread.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Returns true if the last call of
+     * {@link #generate(int, int, int, int, long, OnPuzzleGeneratedListener)} gave up,
+     * because no puzzle was accepted within the time limit.
+     */
+    public boolean isTimeLimitReached() {
+        return mTimeLimitReached;
+    }
+
+    /**
+     * Returns cell symmetric to the given one, it can be the same cell.
+     */
+    static int getSymmetricCell(int cell, int symmetry) {
+        int row = cell / 9;
+        int col = cell % 9;
+        switch (symmetry) {
+            case SYMMETRY_ROTATIONAL:
+                return NUM_CELLS - 1 - cell;
+            case SYMMETRY_MIRROR:
+                return row * 9 + 8 - col;
+            case SYMMETRY_DIAGONAL:
+                return col * 9 + row;
+            default:
+                return cell;
+        }
+    }
+
+    private static final class GeneratedPuzzle {
+        final String mData;
+        final int mDifficulty;
+
+        GeneratedPuzzle(String data, int difficulty) {
+            mData = data;
+            mDifficulty = difficulty;
+        }
+    }
+
+    /**
+     * State of one worker thread, solvers and arrays are reused for all the puzzles
+     * it generates.
+     */
+    private static final class Worker {
+        private final int mSymmetry;
+        private final int mMinDifficulty;
+        private final int mMaxDifficulty;
+
+        private final Random mRandom = new Random();
+        private final BitmaskSolver mSolver = new BitmaskSolver();
+        private final LogicalSolver mRater = new LogicalSolver();
+        private final int[] mPuzzle = new int[NUM_CELLS];
+        private final int[] mOrder = new int[NUM_CELLS];
+
+        Worker(int symmetry, int minDifficulty, int maxDifficulty) {
+            mSymmetry = symmetry;
+            mMinDifficulty = minDifficulty;
+            mMaxDifficulty = maxDifficulty;
+        }
+
+        /**
+         * Generates one puzzle.
+         *
+         * @return Puzzle or null if it is not hard enough.
+         */
+        GeneratedPuzzle generate() {
+            fillGrid();
+            shuffleCells();
+
+            for (int cell : mOrder) {
+                int value = mPuzzle[cell];
+                if (value == 0) {
+                    continue;
+                }
+                int other = getSymmetricCell(cell, mSymmetry);
+                int otherValue = mPuzzle[other];
+
+                mPuzzle[cell] = 0;
+                mPuzzle[other] = 0;
+                if (!isUnique() || (mMaxDifficulty != Integer.MAX_VALUE && rate() > mMaxDifficulty)) {
+                    mPuzzle[cell] = value;
+                    mPuzzle[other] = otherValue;
+                }
+            }
+
+            int difficulty = rate();
+            if (difficulty < mMinDifficulty) {
+                return null;
+            }
+
+            char[] data = new char[NUM_CELLS];
+            for (int cell = 0; cell < NUM_CELLS; cell++) {
+                data[cell] = (char) ('0' + mPuzzle[cell]);
+            }
+            return new GeneratedPuzzle(new String(data), difficulty);
+        }
+
+        /**
+         * Fills <code>mPuzzle</code> with random full grid. Boxes on the diagonal do not share
+         * any row or column, so they are filled with random permutations and the rest
+         * is solved.
+         */
+        private void fillGrid() {
+            for (int cell = 0; cell < NUM_CELLS; cell++) {
+                mPuzzle[cell] = 0;
+            }
+            for (int box = 0; box < 9; box += 4) {
+                int[] cells = CellCollection.GROUP_CELLS[CellCollection.SECTOR_GROUPS + box];
+                for (int i = 0; i < 9; i++) {
+                    int j = mRandom.nextInt(i + 1);
+                    mPuzzle[cells[i]] = mPuzzle[cells[j]];
+                    mPuzzle[cells[j]] = i + 1;
+                }
+            }
+            mSolver.setPuzzle(mPuzzle);
+            mSolver.solve(null);
+            mSolver.getSolution(mPuzzle);
+        }
+
+        private void shuffleCells() {
+            for (int i = 0; i < NUM_CELLS; i++) {
+                int j = mRandom.nextInt(i + 1);
+                mOrder[i] = mOrder[j];
+                mOrder[j] = i;
+            }
+        }
+
+        private boolean isUnique() {
+            mSolver.setPuzzle(mPuzzle);
+            return mSolver.countSolutions(2) == 1;
+        }
+
+        private int rate() {
+            mRater.setPuzzle(mPuzzle);
+            mRater.solve();
+            return mRater.getDifficulty();
+        }
+    }
+
+    public interface OnPuzzleGeneratedListener {
+        /**
+         * Called when puzzle is generated, from the thread which called
+         * {@link #generate(int, int, int, int, long, OnPuzzleGeneratedListener)}.
+         *
+         * @param data       Puzzle as 81 digits, 0 for empty cell.
+         * @param difficulty Difficulty of the puzzle, see {@link LogicalSolver#getDifficulty()}.
+         * @return True if the puzzle is accepted, false if it is thrown away (e.g. duplicate),
+         * only accepted puzzles are counted.
+         */
+        boolean onPuzzleGenerated(String data, int difficulty);
+    }
+}
@@ -0,0 +1,83 @@
+package org.moire.opensudoku.game;
+
+import java.text.ParseException;
+
+/**
+ * Values of the cells of a puzzle and whether they are editable, nothing else. It is enough
+ * to show the puzzle in list of puzzles, without creating {@link CellCollection}. Instance
+ * can be reused for another puzzle. Cells are identified by index row * 9 + column.
+ */
+public class PuzzlePreview {
+
+    private final byte[] mValues = new byte[CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE];
+    // editable flags as bitset, flag of cell i is bit i % 64 of word i / 64
+    private final long[] mEditable = new long[2];
+
+    /**
+     * Reads puzzle in binary format (see {@link CellCollection#toByteArray()}), notes are
+     * skipped without being read.
+     *
+     * @return False if data are not valid, preview is empty then.
+     */
+    public boolean read(byte[] data) {
+        if (!CellCollection.readValues(data, mValues, mEditable)) {
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads puzzle in any of the text formats, see {@link CellCollection#parse(CharSequence)}.
+     * Text which is not valid is read as well as possible, see
+     * {@link CellCollection#deserialize(String)}. Puzzles are stored in text formats just
+     * by older versions, so this is not optimized.
+     *
+     * @return False if data are not valid, preview is empty then.
+     */
+    public boolean read(CharSequence data) {
+        CellCollection cells;
+        try {
+            cells = CellCollection.parse(data);
+        } catch (ParseException e) {
+            try {
+                cells = CellCollection.deserialize(data.toString());
+            } catch (RuntimeException e2) {
+                clear();
+                return false;
+            }
+        }
+
+        mEditable[0] = 0;
+        mEditable[1] = 0;
+        for (int index = 0; index < mValues.length; index++) {
+            mValues[index] = (byte) cells.getValue(index);
+            if (cells.isEditable(index)) {
+                mEditable[index >>> 6] |= 1L << index;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes all the cells empty and editable.
+     */
+    public void clear() {
+        for (int index = 0; index < mValues.length; index++) {
+            mValues[index] = 0;
+        }
+        mEditable[0] = -1L;
+        mEditable[1] = -1L;
+    }
+
+    /**
+     * Returns value of the cell with given index, 0 if cell is empty.
+     */
+    public int getValue(int index) {
+        return mValues[index];
+    }
+
+    public boolean isEditable(int index) {
+        return (mEditable[index >>> 6] & (1L << index)) != 0;
+    }
+}
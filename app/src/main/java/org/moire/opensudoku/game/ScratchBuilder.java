@@ -0,0 +1,55 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Reusable <code>StringBuilder</code> for each thread, so methods returning serialized data as
+ * string do not create new builder and grow it each time. Use it as:
+ * <pre>
+ * StringBuilder sb = ScratchBuilder.acquire();
+ * serialize(sb);
+ * return ScratchBuilder.release(sb);
+ * </pre>
+ * If the builder of the thread is already acquired (serialization calls another one), new
+ * builder is returned, so it is always safe to use.
+ */
+public final class ScratchBuilder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Builders grown by long undo histories (hundreds of KB) are kept, so they are not grown
+    // again on each save, just much bigger ones are dropped so they do not hold memory forever.
+    private static final int MAX_KEPT_CAPACITY = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<StringBuilder> sBuilders = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+    };
+
+    private ScratchBuilder() {
+    }
+
+    /**
+     * Returns empty builder, which must be passed to {@link #release(StringBuilder)} when done.
+     */
+    public static StringBuilder acquire() {
+        StringBuilder sb = sBuilders.get();
+        if (sb == null) {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+        sBuilders.set(null);
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * Returns content of given builder and keeps the builder for the next
+     * {@link #acquire()}. Builder must not be used afterwards.
+     */
+    public static String release(StringBuilder sb) {
+        String result = sb.toString();
+        if (sb.capacity() <= MAX_KEPT_CAPACITY) {
+            sBuilders.set(sb);
+        }
+        return result;
+    }
+}
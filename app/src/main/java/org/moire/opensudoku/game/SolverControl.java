@@ -0,0 +1,123 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Controls search of the {@link SolverEngine}. Search can be cancelled from another thread,
+ * limited by number of explored nodes or by time and its progress can be observed.
+ * <p>
+ * Instance should be used for one search only.
+ */
+public class SolverControl {
+
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+
+    // Cancellation and time budget are checked and progress is reported once per this
+    // number of explored nodes.
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long mNodeBudget;
+    private final long mTimeBudget;
+    private volatile boolean mCancelled;
+    private OnProgressListener mOnProgressListener;
+
+    private long mDeadline;
+    private int mStopStatus;
+
+    /**
+     * Creates control without any budget, search can only be cancelled.
+     */
+    public SolverControl() {
+        this(NO_LIMIT, NO_LIMIT);
+    }
+
+    /**
+     * @param nodeBudget Maximum number of nodes explored by the search or {@link #NO_LIMIT}.
+     * @param timeBudget Maximum duration of the search in milliseconds or {@link #NO_LIMIT}.
+     */
+    public SolverControl(long nodeBudget, long timeBudget) {
+        if (nodeBudget < 1 || timeBudget < 1) {
+            throw new IllegalArgumentException("Budget must be at least 1.");
+        }
+        mNodeBudget = nodeBudget;
+        mTimeBudget = timeBudget;
+    }
+
+    /**
+     * Requests the search to stop, can be called from any thread. Search then finishes with
+     * {@link SolverResult#STATUS_CANCELLED} status.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Sets listener, which is periodically informed about the progress of the search.
+     * Listener is called on the thread running the search.
+     */
+    public void setOnProgressListener(OnProgressListener listener) {
+        mOnProgressListener = listener;
+    }
+
+    /**
+     * Called by engine when the search starts.
+     */
+    void start() {
+        mStopStatus = SolverResult.STATUS_SOLVED;
+        if (mTimeBudget == NO_LIMIT) {
+            mDeadline = NO_LIMIT;
+        } else {
+            mDeadline = currentTimeMillis() + mTimeBudget;
+        }
+    }
+
+    /**
+     * Called by engine for each explored node.
+     *
+     * @param exploredNodes Number of nodes explored so far.
+     * @return True if search should be stopped, reason is returned by {@link #getStopStatus()}.
+     */
+    boolean shouldStop(long exploredNodes) {
+        if (exploredNodes > mNodeBudget) {
+            mStopStatus = SolverResult.STATUS_BUDGET_EXCEEDED;
+            return true;
+        }
+
+        if (exploredNodes % CHECK_INTERVAL == 0) {
+            if (mCancelled) {
+                mStopStatus = SolverResult.STATUS_CANCELLED;
+                return true;
+            }
+            if (mDeadline != NO_LIMIT && currentTimeMillis() > mDeadline) {
+                mStopStatus = SolverResult.STATUS_BUDGET_EXCEEDED;
+                return true;
+            }
+            if (mOnProgressListener != null) {
+                mOnProgressListener.onProgress(exploredNodes);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns status of the search stopped by {@link #shouldStop(long)}.
+     */
+    int getStopStatus() {
+        return mStopStatus;
+    }
+
+    private static long currentTimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public interface OnProgressListener {
+        /**
+         * Called periodically during the search.
+         *
+         * @param exploredNodes Number of nodes explored so far.
+         */
+        void onProgress(long exploredNodes);
+    }
+}
@@ -0,0 +1,57 @@
+package org.moire.opensudoku.game;
+
+import java.util.ArrayList;
+
+/**
+ * Algorithm used to solve sudoku puzzles. Use {@link SolverEngineFactory} to obtain instance.
+ * <p>
+ * One instance can be used to solve any number of puzzles, call
+ * {@link #setPuzzle(CellCollection)} before each {@link #solve()}. Instances are not thread safe.
+ */
+public interface SolverEngine {
+
+    /**
+     * Sets puzzle to solve. Only values of the cells which are not editable are taken
+     * into account.
+     *
+     * @param cells Puzzle to solve.
+     */
+    void setPuzzle(CellCollection cells);
+
+    /**
+     * Solves puzzle set by {@link #setPuzzle(CellCollection)}.
+     *
+     * @return Values of the editable cells as {row, column, value} arrays, or empty
+     * list if puzzle has no solution.
+     */
+    ArrayList<int[]> solve();
+
+    /**
+     * Solves puzzle set by {@link #setPuzzle(CellCollection)}, search is controlled by given
+     * <code>control</code>.
+     *
+     * @param control Control of the search or null.
+     * @return Result of the search, solution values are those returned by {@link #solve()}.
+     */
+    SolverResult solve(SolverControl control);
+
+    /**
+     * Counts solutions of the puzzle set by {@link #setPuzzle(CellCollection)}. Search stops
+     * as soon as <code>limit</code> solutions are found, so use limit 2 to check whether the
+     * puzzle has unique solution.
+     *
+     * @param limit Maximum number of solutions to count, at least 1.
+     * @return Number of solutions, but no more than <code>limit</code>.
+     */
+    int countSolutions(int limit);
+
+    /**
+     * Counts solutions of the puzzle set by {@link #setPuzzle(CellCollection)}, search is
+     * controlled by given <code>control</code>.
+     *
+     * @param limit   Maximum number of solutions to count, at least 1.
+     * @param control Control of the search or null.
+     * @return Result of the search with number of found solutions and values of the first one.
+     */
+    SolverResult countSolutions(int limit, SolverControl control);
+}
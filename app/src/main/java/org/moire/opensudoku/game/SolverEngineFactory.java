@@ -0,0 +1,60 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Creates {@link SolverEngine} instances.
+ */
+public class SolverEngineFactory {
+
+    /**
+     * Dancing links solver, see {@link SudokuSolver}.
+     */
+    public static final int ENGINE_DANCING_LINKS = 0;
+
+    /**
+     * Constraint propagation solver working with candidate bitmasks, see {@link BitmaskSolver}.
+     */
+    public static final int ENGINE_BITMASK = 1;
+
+    private static volatile int sDefaultEngine = ENGINE_BITMASK;
+
+    private SolverEngineFactory() {
+    }
+
+    /**
+     * Creates instance of the default engine.
+     */
+    public static SolverEngine create() {
+        return create(sDefaultEngine);
+    }
+
+    /**
+     * Creates instance of given engine.
+     *
+     * @param engine {@link #ENGINE_DANCING_LINKS} or {@link #ENGINE_BITMASK}.
+     */
+    public static SolverEngine create(int engine) {
+        if (engine == ENGINE_DANCING_LINKS) {
+            return new SudokuSolver();
+        } else if (engine == ENGINE_BITMASK) {
+            return new BitmaskSolver();
+        } else {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    public static int getDefaultEngine() {
+        return sDefaultEngine;
+    }
+
+    /**
+     * Sets engine created by {@link #create()}.
+     *
+     * @param engine {@link #ENGINE_DANCING_LINKS} or {@link #ENGINE_BITMASK}.
+     */
+    public static void setDefaultEngine(int engine) {
+        if (engine != ENGINE_DANCING_LINKS && engine != ENGINE_BITMASK) {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        sDefaultEngine = engine;
+    }
+}
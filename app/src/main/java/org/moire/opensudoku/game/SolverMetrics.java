@@ -0,0 +1,103 @@
+package org.moire.opensudoku.game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide totals of {@link SolverStats} of all the searches made by the engines, so that
+ * it can be seen whether any search exploded. Searches are recorded automatically, the
+ * registry can be read and reset from any thread.
+ */
+public class SolverMetrics {
+
+    private static final AtomicLong sSearches = new AtomicLong();
+    private static final AtomicLong sNodes = new AtomicLong();
+    private static final AtomicLong sBacktracks = new AtomicLong();
+    private static final AtomicLong sPropagations = new AtomicLong();
+    private static final AtomicLong sTime = new AtomicLong();
+    private static final AtomicLong sMaxNodes = new AtomicLong();
+    private static final AtomicLong sMaxDepth = new AtomicLong();
+    private static final AtomicLong sMaxTime = new AtomicLong();
+
+    private SolverMetrics() {
+    }
+
+    static void record(SolverStats stats) {
+        sSearches.incrementAndGet();
+        sNodes.addAndGet(stats.getNodes());
+        sBacktracks.addAndGet(stats.getBacktracks());
+        sPropagations.addAndGet(stats.getPropagations());
+        sTime.addAndGet(stats.getTime());
+        updateMax(sMaxNodes, stats.getNodes());
+        updateMax(sMaxDepth, stats.getMaxDepth());
+        updateMax(sMaxTime, stats.getTime());
+    }
+
+    public static long getSearchCount() {
+        return sSearches.get();
+    }
+
+    public static long getTotalNodes() {
+        return sNodes.get();
+    }
+
+    public static long getTotalBacktracks() {
+        return sBacktracks.get();
+    }
+
+    public static long getTotalPropagations() {
+        return sPropagations.get();
+    }
+
+    /**
+     * Returns total wall time of all the searches in nanoseconds.
+     */
+    public static long getTotalTime() {
+        return sTime.get();
+    }
+
+    /**
+     * Returns the highest number of nodes explored by one search.
+     */
+    public static long getMaxNodes() {
+        return sMaxNodes.get();
+    }
+
+    public static int getMaxDepth() {
+        return (int) sMaxDepth.get();
+    }
+
+    /**
+     * Returns the longest wall time of one search in nanoseconds.
+     */
+    public static long getMaxTime() {
+        return sMaxTime.get();
+    }
+
+    public static void reset() {
+        sSearches.set(0);
+        sNodes.set(0);
+        sBacktracks.set(0);
+        sPropagations.set(0);
+        sTime.set(0);
+        sMaxNodes.set(0);
+        sMaxDepth.set(0);
+        sMaxTime.set(0);
+    }
+
+    /**
+     * Returns summary of the metrics suitable for logging.
+     */
+    public static String getSummary() {
+        return "searches=" + getSearchCount() + ", nodes=" + getTotalNodes()
+                + ", backtracks=" + getTotalBacktracks() + ", propagations=" + getTotalPropagations()
+                + ", time=" + getTotalTime() / 1000000 + "ms, maxNodes=" + getMaxNodes()
+                + ", maxDepth=" + getMaxDepth() + ", maxTime=" + getMaxTime() / 1000000 + "ms";
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+}
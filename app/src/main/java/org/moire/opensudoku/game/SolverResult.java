@@ -0,0 +1,81 @@
+package org.moire.opensudoku.game;
+
+import java.util.ArrayList;
+
+/**
+ * Result of the search made by {@link SolverEngine}.
+ */
+public class SolverResult {
+
+    /**
+     * Search has finished and at least one solution was found.
+     */
+    public static final int STATUS_SOLVED = 0;
+
+    /**
+     * Search has finished, puzzle has no solution.
+     */
+    public static final int STATUS_NO_SOLUTION = 1;
+
+    /**
+     * Search was stopped, because it exceeded node or time budget.
+     */
+    public static final int STATUS_BUDGET_EXCEEDED = 2;
+
+    /**
+     * Search was cancelled by {@link SolverControl#cancel()}.
+     */
+    public static final int STATUS_CANCELLED = 3;
+
+    private final int mStatus;
+    private final ArrayList<int[]> mValues;
+    private final int mSolutionCount;
+    private final SolverStats mStats;
+
+    public SolverResult(int status, ArrayList<int[]> values, int solutionCount, SolverStats stats) {
+        mStatus = status;
+        mValues = values;
+        mSolutionCount = solutionCount;
+        mStats = stats;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * Returns true, if search has finished and at least one solution was found.
+     */
+    public boolean isSolved() {
+        return mStatus == STATUS_SOLVED;
+    }
+
+    /**
+     * Returns values of the editable cells in the first found solution as {row, column, value}
+     * arrays, empty list if no solution was found.
+     */
+    public ArrayList<int[]> getValues() {
+        return mValues;
+    }
+
+    /**
+     * Returns number of found solutions. When search was stopped, there might be more of them.
+     */
+    public int getSolutionCount() {
+        return mSolutionCount;
+    }
+
+    /**
+     * Returns number of nodes of the search tree explored by the search.
+     */
+    public long getExploredNodes() {
+        return mStats.getNodes();
+    }
+
+    /**
+     * Returns statistics of the search.
+     */
+    public SolverStats getStats() {
+        return mStats;
+    }
+}
@@ -0,0 +1,75 @@
+package org.moire.opensudoku.game;
+
+/**
+ * Statistics of one search made by {@link SolverEngine}, they show how hard the search was.
+ */
+public class SolverStats {
+
+    /**
+     * Statistics of the search which was not run at all, because the givens are in conflict.
+     */
+    static final SolverStats EMPTY = new SolverStats(0, 0, 0, 0, 0);
+
+    private final long mNodes;
+    private final long mBacktracks;
+    private final long mPropagations;
+    private final int mMaxDepth;
+    private final long mTime;
+
+    /**
+     * @param nodes        Number of explored nodes of the search tree.
+     * @param backtracks   Number of choices which were taken back.
+     * @param propagations Number of elementary operations, see {@link #getPropagations()}.
+     * @param maxDepth     Maximum depth of the search tree reached.
+     * @param time         Wall time of the search in nanoseconds.
+     */
+    public SolverStats(long nodes, long backtracks, long propagations, int maxDepth, long time) {
+        mNodes = nodes;
+        mBacktracks = backtracks;
+        mPropagations = propagations;
+        mMaxDepth = maxDepth;
+        mTime = time;
+    }
+
+    /**
+     * Returns number of nodes of the search tree explored by the search.
+     */
+    public long getNodes() {
+        return mNodes;
+    }
+
+    /**
+     * Returns number of choices which did not lead to a solution and were taken back.
+     */
+    public long getBacktracks() {
+        return mBacktracks;
+    }
+
+    /**
+     * Returns number of elementary operations made by the engine: columns covered by dancing
+     * links, values placed by constraint propagation.
+     */
+    public long getPropagations() {
+        return mPropagations;
+    }
+
+    /**
+     * Returns maximum number of nested choices made by the search.
+     */
+    public int getMaxDepth() {
+        return mMaxDepth;
+    }
+
+    /**
+     * Returns wall time of the search in nanoseconds.
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + mNodes + ", backtracks=" + mBacktracks + ", propagations=" + mPropagations
+                + ", maxDepth=" + mMaxDepth + ", time=" + mTime / 1000 + "us";
+    }
+}
@@ -34,8 +34,6 @@ import org.moire.opensudoku.game.command.FillInNotesWithAllValuesCommand;
 import org.moire.opensudoku.game.command.SetCellValueAndRemoveNotesCommand;
 import org.moire.opensudoku.game.command.SetCellValueCommand;
 
-import java.util.ArrayList;
-
 public class SudokuGame {
 
     public static final int GAME_STATE_PLAYING = 0;
@@ -49,7 +47,10 @@ public class SudokuGame {
     private long mLastPlayed;
     private String mNote;
     private CellCollection mCells;
-    private SudokuSolver mSolver;
+    // Values of all cells in the solution indexed by row * 9 + column, null if not known yet.
+    private int[] mSolution;
+    private SolverEngine mSolver;
+    private HintEngine mHintEngine;
     private boolean mUsedSolver = false;
     private boolean mRemoveNotesOnEntry = false;
 
@@ -81,19 +82,42 @@ public class SudokuGame {
         outState.putInt("state", mState);
         outState.putLong("time", mTime);
         outState.putLong("lastPlayed", mLastPlayed);
-        outState.putString("cells", mCells.serialize());
-        outState.putString("command_stack", mCommandStack.serialize());
+        // binary format is several times smaller and faster than text
+        outState.putByteArray("cells", mCells.toByteArray());
+        outState.putString("solution", getSolution());
+        // saved commands are loaded from the journal, so long history is not copied each time
+        StringBuilder sb = ScratchBuilder.acquire();
+        mCommandStack.serializeUnsaved(sb);
+        outState.putString("command_stack", ScratchBuilder.release(sb));
+        outState.putInt("command_saved_count", mCommandStack.getSavedCount());
     }
 
-    public void restoreState(Bundle inState) {
+    /**
+     * Restores state saved by {@link #saveState(Bundle)}.
+     *
+     * @param commandLoader Loads saved commands of the game, which are not in the Bundle.
+     */
+    public void restoreState(Bundle inState, CommandLoader commandLoader) {
         mId = inState.getLong("id");
         mNote = inState.getString("note");
         mCreated = inState.getLong("created");
         mState = inState.getInt("state");
         mTime = inState.getLong("time");
         mLastPlayed = inState.getLong("lastPlayed");
-        mCells = CellCollection.deserialize(inState.getString("cells"));
-        mCommandStack = CommandStack.deserialize(inState.getString("command_stack"), mCells);
+        mCells = CellCollection.fromByteArray(inState.getByteArray("cells"));
+        setSolution(inState.getString("solution"));
+        mCommandStack = new CommandStack(mCells);
+        int savedCount = inState.getInt("command_saved_count");
+        if (savedCount > 0) {
+            commandLoader.loadCommands(mId, mCommandStack);
+            if (mCommandStack.size() != savedCount) {
+                // saved commands were changed in the meantime, history cannot be restored
+                mCommandStack = new CommandStack(mCells);
+            }
+        }
+        if (mCommandStack.size() == savedCount) {
+            mCommandStack.pushSerializedStack(inState.getString("command_stack"));
+        }
 
         validate();
     }
@@ -163,6 +187,8 @@ public class SudokuGame {
 
     public void setCells(CellCollection cells) {
         mCells = cells;
+        mSolution = null;
+        mHintEngine = null;
         validate();
         mCommandStack = new CommandStack(mCells);
     }
@@ -265,7 +291,9 @@ public class SudokuGame {
     }
 
     public void undoToBeforeMistake() {
-        mCommandStack.undoToSolvableState();
+        if (ensureSolution()) {
+            mCommandStack.undoToSolvableState(mSolution);
+        }
     }
 
     @Nullable
@@ -302,26 +330,36 @@ public class SudokuGame {
      * Checks if a solution to the puzzle exists
      */
     public boolean isSolvable() {
-        mSolver = new SudokuSolver();
-        mSolver.setPuzzle(mCells);
-        ArrayList<int[]> finalValues = mSolver.solve();
-        return !finalValues.isEmpty();
+        return ensureSolution();
+    }
+
+    /**
+     * Counts solutions of the puzzle, stops counting when <code>limit</code> solutions
+     * are found. Use limit 2 to check whether the puzzle has unique solution.
+     *
+     * @param limit Maximum number of solutions to count, at least 1.
+     * @return Number of solutions, but no more than <code>limit</code>.
+     */
+    public int countSolutions(int limit) {
+        SolverEngine solver = getSolver();
+        solver.setPuzzle(mCells);
+        return solver.countSolutions(limit);
     }
 
     /**
      * Solves puzzle from original state
      */
     public void solve() {
+        if (!ensureSolution()) {
+            return;
+        }
+
         mUsedSolver = true;
-        mSolver = new SudokuSolver();
-        mSolver.setPuzzle(mCells);
-        ArrayList<int[]> finalValues = mSolver.solve();
-        for (int[] rowColVal : finalValues) {
-            int row = rowColVal[0];
-            int col = rowColVal[1];
-            int val = rowColVal[2];
-            Cell cell = mCells.getCell(row, col);
-            this.setCellValue(cell, val);
+        for (int row = 0; row < CellCollection.SUDOKU_SIZE; row++) {
+            for (int col = 0; col < CellCollection.SUDOKU_SIZE; col++) {
+                Cell cell = mCells.getCell(row, col);
+                this.setCellValue(cell, mSolution[row * CellCollection.SUDOKU_SIZE + col]);
+            }
         }
     }
 
@@ -333,18 +371,148 @@ public class SudokuGame {
      * Solves puzzle and fills in correct value for selected cell
      */
     public void solveCell(Cell cell) {
-        mSolver = new SudokuSolver();
-        mSolver.setPuzzle(mCells);
-        ArrayList<int[]> finalValues = mSolver.solve();
-
-        int row = cell.getRowIndex();
-        int col = cell.getColumnIndex();
-        for (int[] rowColVal : finalValues) {
-            if (rowColVal[0] == row && rowColVal[1] == col) {
-                int val = rowColVal[2];
-                this.setCellValue(cell, val);
+        if (ensureSolution()) {
+            int index = cell.getRowIndex() * CellCollection.SUDOKU_SIZE + cell.getColumnIndex();
+            this.setCellValue(cell, mSolution[index]);
+        }
+    }
+
+    /**
+     * Finds the next logical step from the current state of the game, see {@link HintEngine}.
+     * Values which are mistakes (see {@link #isMistake(Cell)}) are not used, so the step
+     * is never deduced from them. Mistakes are known only when the solution is known (see
+     * {@link #hasSolution()}), this method does not run the solver to find it.
+     *
+     * @return Next step or null if no step can be made.
+     */
+    @Nullable
+    public LogicalStep getNextStep() {
+        if (mHintEngine == null) {
+            mHintEngine = new HintEngine(mCells);
+        }
+        return mHintEngine.getNextStep(mSolution);
+    }
+
+    /**
+     * Returns true if solution of the puzzle is known, so solving does not need to run
+     * the solver.
+     */
+    public boolean hasSolution() {
+        return mSolution != null;
+    }
+
+    /**
+     * Returns solution of the puzzle as 81 digits, or null if it is not known yet.
+     */
+    @Nullable
+    public String getSolution() {
+        if (mSolution == null) {
+            return null;
+        }
+
+        char[] solution = new char[mSolution.length];
+        for (int i = 0; i < mSolution.length; i++) {
+            solution[i] = (char) ('0' + mSolution[i]);
+        }
+        return new String(solution);
+    }
+
+    /**
+     * Sets solution of the puzzle, for example stored in the database.
+     *
+     * @param solution Solution as 81 digits or null if it is not known.
+     */
+    public void setSolution(@Nullable String solution) {
+        if (solution == null) {
+            mSolution = null;
+            return;
+        }
+
+        int size = CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE;
+        if (solution.length() != size) {
+            throw new IllegalArgumentException("Solution must have " + size + " digits.");
+        }
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = solution.charAt(i) - '0';
+            if (values[i] < 1 || values[i] > 9) {
+                throw new IllegalArgumentException("Solution must contain digits 1-9 only.");
             }
         }
+        mSolution = values;
+    }
+
+    /**
+     * Sets solution found by the solver (for example on background thread).
+     *
+     * @param result Result of solving this puzzle.
+     */
+    public void setSolution(SolverResult result) {
+        if (!result.isSolved()) {
+            throw new IllegalArgumentException("Result does not contain solution.");
+        }
+
+        int[] values = new int[CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE];
+        for (int row = 0; row < CellCollection.SUDOKU_SIZE; row++) {
+            for (int col = 0; col < CellCollection.SUDOKU_SIZE; col++) {
+                Cell cell = mCells.getCell(row, col);
+                if (!cell.isEditable()) {
+                    values[row * CellCollection.SUDOKU_SIZE + col] = cell.getValue();
+                }
+            }
+        }
+        for (int[] rowColVal : result.getValues()) {
+            values[rowColVal[0] * CellCollection.SUDOKU_SIZE + rowColVal[1]] = rowColVal[2];
+        }
+        mSolution = values;
+    }
+
+    /**
+     * Returns true if value of the cell does not match the solution. Cells are never marked
+     * as mistakes while the solution is not known.
+     */
+    public boolean isMistake(Cell cell) {
+        int value = cell.getValue();
+        return mSolution != null && value != 0
+                && value != mSolution[cell.getRowIndex() * CellCollection.SUDOKU_SIZE + cell.getColumnIndex()];
+    }
+
+    /**
+     * Forgets solution of the puzzle, should be called when givens change.
+     */
+    public void invalidateSolution() {
+        mSolution = null;
+        if (mHintEngine != null) {
+            mHintEngine.reset();
+        }
+    }
+
+    /**
+     * Runs solver if solution of the puzzle is not known yet.
+     *
+     * @return False if puzzle has no solution.
+     */
+    private boolean ensureSolution() {
+        if (mSolution == null) {
+            SolverEngine solver = getSolver();
+            solver.setPuzzle(mCells);
+            SolverResult result = solver.solve(null);
+            if (result.isSolved()) {
+                setSolution(result);
+            }
+        }
+        return mSolution != null;
+    }
+
+    /**
+     * Returns solver instance, which is created on first use and then reused for all
+     * subsequent solving.
+     */
+    private SolverEngine getSolver() {
+        if (mSolver == null) {
+            mSolver = SolverEngineFactory.create();
+        }
+        return mSolver;
     }
 
     /**
@@ -359,15 +527,17 @@ public class SudokuGame {
      * Resets game.
      */
     public void reset() {
-        for (int r = 0; r < CellCollection.SUDOKU_SIZE; r++) {
-            for (int c = 0; c < CellCollection.SUDOKU_SIZE; c++) {
-                Cell cell = mCells.getCell(r, c);
-                if (cell.isEditable()) {
-                    cell.setValue(0);
-                    cell.setNote(new CellNote());
+        mCells.runBatch(() -> {
+            for (int r = 0; r < CellCollection.SUDOKU_SIZE; r++) {
+                for (int c = 0; c < CellCollection.SUDOKU_SIZE; c++) {
+                    Cell cell = mCells.getCell(r, c);
+                    if (cell.isEditable()) {
+                        cell.setValue(0);
+                        cell.setNote(CellNote.EMPTY);
+                    }
                 }
             }
-        }
+        });
         mCommandStack = new CommandStack(mCells);
         validate();
         setTime(0);
@@ -377,8 +547,7 @@ public class SudokuGame {
     }
 
     /**
-     * Returns true, if puzzle is solved. In order to know the current state, you have to
-     * call validate first.
+     * Returns true, if puzzle is solved.
      *
      * @return
      */
@@ -406,6 +575,14 @@ public class SudokuGame {
         mCells.validate();
     }
 
+    public interface CommandLoader {
+        /**
+         * Pushes saved commands of the puzzle with given id on the stack, without executing
+         * them, and marks them as saved (see {@link CommandStack#setSavedCount(int)}).
+         */
+        void loadCommands(long sudokuID, CommandStack commandStack);
+    }
+
     public interface OnPuzzleSolvedListener {
         /**
          * Occurs when puzzle is solved.
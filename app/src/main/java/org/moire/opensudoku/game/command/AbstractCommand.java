@@ -30,19 +30,19 @@ import java.util.StringTokenizer;
 public abstract class AbstractCommand {
 
     private static final CommandDef[] commands = {
-            new CommandDef(ClearAllNotesCommand.class.getSimpleName(), "c1",
+            new CommandDef(ClearAllNotesCommand.class, "c1",
                     ClearAllNotesCommand::new),
-            new CommandDef(EditCellNoteCommand.class.getSimpleName(), "c2",
+            new CommandDef(EditCellNoteCommand.class, "c2",
                     EditCellNoteCommand::new),
-            new CommandDef(FillInNotesCommand.class.getSimpleName(), "c3",
+            new CommandDef(FillInNotesCommand.class, "c3",
                     FillInNotesCommand::new),
-            new CommandDef(SetCellValueCommand.class.getSimpleName(), "c4",
+            new CommandDef(SetCellValueCommand.class, "c4",
                     SetCellValueCommand::new),
-            new CommandDef(CheckpointCommand.class.getSimpleName(), "c5",
+            new CommandDef(CheckpointCommand.class, "c5",
                     CheckpointCommand::new),
-            new CommandDef(SetCellValueAndRemoveNotesCommand.class.getSimpleName(), "c6",
+            new CommandDef(SetCellValueAndRemoveNotesCommand.class, "c6",
                     SetCellValueAndRemoveNotesCommand::new),
-            new CommandDef(FillInNotesWithAllValuesCommand.class.getSimpleName(), "c7",
+            new CommandDef(FillInNotesWithAllValuesCommand.class, "c7",
                     FillInNotesWithAllValuesCommand::new)
     };
 
@@ -63,15 +63,16 @@ public abstract class AbstractCommand {
     }
 
     public void serialize(StringBuilder data) {
-        String cmdLongName = getCommandClass();
+        // compared by class, name of the class would be created for each command
+        Class<?> cmdClass = getClass();
         for (CommandDef cmdDef : commands) {
-            if (cmdDef.getLongName().equals(cmdLongName)) {
-                data.append(cmdDef.getShortName()).append("|");
+            if (cmdDef.mClass == cmdClass) {
+                data.append(cmdDef.getShortName()).append('|');
                 return;
             }
         }
 
-        throw new IllegalArgumentException(String.format("Unknown command class '%s'.", cmdLongName));
+        throw new IllegalArgumentException(String.format("Unknown command class '%s'.", getCommandClass()));
     }
 
     public String getCommandClass() {
@@ -93,12 +94,13 @@ public abstract class AbstractCommand {
     }
 
     private static class CommandDef {
-        String mLongName;
+        Class<? extends AbstractCommand> mClass;
         String mShortName;
         CommandCreatorFunction mCreator;
 
-        public CommandDef(String longName, String shortName, CommandCreatorFunction creator) {
-            mLongName = longName;
+        public CommandDef(Class<? extends AbstractCommand> cmdClass, String shortName,
+                          CommandCreatorFunction creator) {
+            mClass = cmdClass;
             mShortName = shortName;
             mCreator = creator;
         }
@@ -107,10 +109,6 @@ public abstract class AbstractCommand {
             return mCreator.create();
         }
 
-        public String getLongName() {
-            return mLongName;
-        }
-
         public String getShortName() {
             return mShortName;
         }
@@ -15,11 +15,11 @@ public abstract class AbstractMultiNoteCommand extends AbstractCellCommand {
     public void serialize(StringBuilder data) {
         super.serialize(data);
 
-        data.append(mOldNotes.size()).append("|");
+        data.append(mOldNotes.size()).append('|');
 
         for (NoteEntry ne : mOldNotes) {
-            data.append(ne.rowIndex).append("|");
-            data.append(ne.colIndex).append("|");
+            data.append(ne.rowIndex).append('|');
+            data.append(ne.colIndex).append('|');
             ne.note.serialize(data);
         }
     }
@@ -41,7 +41,8 @@ public abstract class AbstractMultiNoteCommand extends AbstractCellCommand {
     void undo() {
         CellCollection cells = getCells();
 
-        for (NoteEntry ne : mOldNotes) {
+        for (int i = 0; i < mOldNotes.size(); i++) {
+            NoteEntry ne = mOldNotes.get(i);
             cells.getCell(ne.rowIndex, ne.colIndex).setNote(ne.note);
         }
     }
@@ -26,8 +26,8 @@ public abstract class AbstractSingleCellCommand extends AbstractCellCommand {
     public void serialize(StringBuilder data) {
         super.serialize(data);
 
-        data.append(mCellRow).append("|");
-        data.append(mCellColumn).append("|");
+        data.append(mCellRow).append('|');
+        data.append(mCellColumn).append('|');
     }
 
     @Override
@@ -40,7 +40,7 @@ public class ClearAllNotesCommand extends AbstractMultiNoteCommand {
                 CellNote note = cell.getNote();
                 if (!note.isEmpty()) {
                     mOldNotes.add(new NoteEntry(r, c, note));
-                    cell.setNote(new CellNote());
+                    cell.setNote(CellNote.EMPTY);
                 }
             }
         }
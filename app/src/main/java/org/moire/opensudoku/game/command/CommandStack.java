@@ -2,9 +2,8 @@ package org.moire.opensudoku.game.command;
 
 import org.moire.opensudoku.game.Cell;
 import org.moire.opensudoku.game.CellCollection;
-import org.moire.opensudoku.game.SudokuSolver;
+import org.moire.opensudoku.game.ScratchBuilder;
 
-import java.util.ArrayList;
 import java.util.ListIterator;
 import java.util.Stack;
 import java.util.StringTokenizer;
@@ -15,6 +14,9 @@ public class CommandStack {
     // TODO: I need cells collection, because I have to call validate on it after some
     //	commands. CellCollection should be able to validate itself on change.
     private CellCollection mCells;
+    // Number of commands at the bottom of the stack which are saved in the journal of the
+    // database and were not undone since, see getSavedCount.
+    private int mSavedCount;
 
     public CommandStack(CellCollection cells) {
         mCells = cells;
@@ -37,32 +39,101 @@ public class CommandStack {
     }
 
     public String serialize() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = ScratchBuilder.acquire();
         serialize(sb);
-        return sb.toString();
+        return ScratchBuilder.release(sb);
     }
 
     public void serialize(StringBuilder data) {
-        data.append(mCommandStack.size()).append("|");
+        data.append(mCommandStack.size()).append('|');
         for (int i = 0; i < mCommandStack.size(); i++) {
             AbstractCommand command = mCommandStack.get(i);
             command.serialize(data);
         }
     }
 
+    /**
+     * Writes command at given position (0 is the bottom of the stack) to given
+     * <code>StringBuilder</code>, in the same format as {@link #serialize(StringBuilder)} does.
+     */
+    public void serializeCommand(StringBuilder data, int index) {
+        mCommandStack.get(index).serialize(data);
+    }
+
+    /**
+     * Writes commands which are not saved (see {@link #getSavedCount()}) to given
+     * <code>StringBuilder</code>, in the same format as {@link #serialize(StringBuilder)} does.
+     */
+    public void serializeUnsaved(StringBuilder data) {
+        data.append(mCommandStack.size() - mSavedCount).append('|');
+        for (int i = mSavedCount; i < mCommandStack.size(); i++) {
+            mCommandStack.get(i).serialize(data);
+        }
+    }
+
+    /**
+     * Pushes command written by {@link #serializeCommand(StringBuilder, int)} on top of the
+     * stack, without executing it.
+     */
+    public void pushSerialized(String data) {
+        push(AbstractCommand.deserialize(new StringTokenizer(data, "|")));
+    }
+
+    /**
+     * Pushes commands written by {@link #serialize(StringBuilder)} or
+     * {@link #serializeUnsaved(StringBuilder)} on top of the stack, without executing them.
+     */
+    public void pushSerializedStack(String data) {
+        StringTokenizer st = new StringTokenizer(data, "|");
+        int count = Integer.parseInt(st.nextToken());
+        for (int i = 0; i < count; i++) {
+            push(AbstractCommand.deserialize(st));
+        }
+    }
+
+    public int size() {
+        return mCommandStack.size();
+    }
+
+    /**
+     * Returns number of commands at the bottom of the stack, which are saved (see
+     * {@link #setSavedCount(int)}) and were not undone since. Only commands above them
+     * have to be saved again.
+     */
+    public int getSavedCount() {
+        return mSavedCount;
+    }
+
+    /**
+     * Marks given number of commands at the bottom of the stack as saved.
+     */
+    public void setSavedCount(int savedCount) {
+        mSavedCount = savedCount;
+    }
+
     public boolean empty() {
         return mCommandStack.empty();
     }
 
     public void execute(AbstractCommand command) {
         push(command);
-        command.execute();
+        mCells.beginBatch();
+        try {
+            command.execute();
+        } finally {
+            mCells.endBatch();
+        }
     }
 
     public void undo() {
         if (!mCommandStack.empty()) {
             AbstractCommand c = pop();
-            c.undo();
+            mCells.beginBatch();
+            try {
+                c.undo();
+            } finally {
+                mCells.endBatch();
+            }
             validateCells();
         }
     }
@@ -90,38 +161,68 @@ public class CommandStack {
          * validateCells() until the run is complete
          */
         AbstractCommand c;
-        while (!mCommandStack.empty()) {
-            c = mCommandStack.pop();
-            c.undo();
+        mCells.beginBatch();
+        try {
+            while (!mCommandStack.empty()) {
+                c = pop();
+                c.undo();
 
-            if (c instanceof CheckpointCommand)
-                break;
+                if (c instanceof CheckpointCommand)
+                    break;
+            }
+        } finally {
+            mCells.endBatch();
         }
         validateCells();
     }
 
-    private boolean hasMistakes(ArrayList<int[]> finalValues) {
-        for (int[] rowColVal : finalValues) {
-            int row = rowColVal[0];
-            int col = rowColVal[1];
-            int val = rowColVal[2];
-            Cell cell = mCells.getCell(row, col);
-
-            if (cell.getValue() != val && cell.getValue() != 0) {
-                return true;
+    private int countMistakes(int[] solution) {
+        int mistakes = 0;
+        for (int row = 0; row < CellCollection.SUDOKU_SIZE; row++) {
+            for (int col = 0; col < CellCollection.SUDOKU_SIZE; col++) {
+                if (isMistake(mCells.getCell(row, col), solution)) {
+                    mistakes++;
+                }
             }
         }
 
-        return false;
+        return mistakes;
     }
 
-    public void undoToSolvableState() {
-        SudokuSolver solver = new SudokuSolver();
-        solver.setPuzzle(mCells);
-        ArrayList<int[]> finalValues = solver.solve();
+    private static boolean isMistake(Cell cell, int[] solution) {
+        int value = cell.getValue();
+        return value != 0
+                && value != solution[cell.getRowIndex() * CellCollection.SUDOKU_SIZE + cell.getColumnIndex()];
+    }
 
-        while (!mCommandStack.empty() && hasMistakes(finalValues)) {
-            mCommandStack.pop().undo();
+    /**
+     * Undoes commands until values of all cells match the given solution.
+     * <p>
+     * Mistakes are counted once, then only the cell changed by each undone command
+     * is checked again. This relies on {@link #getChangedCell(AbstractCommand)} returning
+     * the cell for every command which changes a value, commands for which it returns null
+     * must not change any value (they change notes only). Command changing values of several
+     * cells would make the count wrong and must be handled there first.
+     *
+     * @param solution Values of all cells in the solution, indexed by row * 9 + column.
+     */
+    public void undoToSolvableState(int[] solution) {
+        int mistakes = countMistakes(solution);
+        mCells.beginBatch();
+        try {
+            while (!mCommandStack.empty() && mistakes > 0) {
+                AbstractCommand command = pop();
+                Cell cell = getChangedCell(command);
+                if (cell != null && isMistake(cell, solution)) {
+                    mistakes--;
+                }
+                command.undo();
+                if (cell != null && isMistake(cell, solution)) {
+                    mistakes++;
+                }
+            }
+        } finally {
+            mCells.endBatch();
         }
 
         validateCells();
@@ -134,17 +235,29 @@ public class CommandStack {
     public Cell getLastChangedCell() {
         ListIterator<AbstractCommand> iter = mCommandStack.listIterator(mCommandStack.size());
         while (iter.hasPrevious()) {
-            AbstractCommand o = iter.previous();
-            if (o instanceof AbstractSingleCellCommand) {
-                return ((AbstractSingleCellCommand) o).getCell();
-            } else if (o instanceof SetCellValueAndRemoveNotesCommand) {
-                return ((SetCellValueAndRemoveNotesCommand) o).getCell();
+            Cell cell = getChangedCell(iter.previous());
+            if (cell != null) {
+                return cell;
             }
         }
 
         return null;
     }
 
+    /**
+     * Returns cell changed by given command, or null if command does not change single cell.
+     * Only these commands change values of the cells, new command which changes a value must
+     * be added here, see {@link #undoToSolvableState(int[])}.
+     */
+    private static Cell getChangedCell(AbstractCommand command) {
+        if (command instanceof AbstractSingleCellCommand) {
+            return ((AbstractSingleCellCommand) command).getCell();
+        } else if (command instanceof SetCellValueAndRemoveNotesCommand) {
+            return ((SetCellValueAndRemoveNotesCommand) command).getCell();
+        }
+        return null;
+    }
+
     private void push(AbstractCommand command) {
         if (command instanceof AbstractCellCommand) {
             ((AbstractCellCommand) command).setCells(mCells);
@@ -153,7 +266,9 @@ public class CommandStack {
     }
 
     private AbstractCommand pop() {
-        return mCommandStack.pop();
+        AbstractCommand command = mCommandStack.pop();
+        mSavedCount = Math.min(mSavedCount, mCommandStack.size());
+        return command;
     }
 
     private void validateCells() {
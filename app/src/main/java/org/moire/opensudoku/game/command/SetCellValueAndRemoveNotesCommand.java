@@ -28,10 +28,10 @@ public class SetCellValueAndRemoveNotesCommand extends AbstractMultiNoteCommand
     public void serialize(StringBuilder data) {
         super.serialize(data);
 
-        data.append(mCellRow).append("|");
-        data.append(mCellColumn).append("|");
-        data.append(mValue).append("|");
-        data.append(mOldValue).append("|");
+        data.append(mCellRow).append('|');
+        data.append(mCellColumn).append('|');
+        data.append(mValue).append('|');
+        data.append(mOldValue).append('|');
     }
 
     @Override
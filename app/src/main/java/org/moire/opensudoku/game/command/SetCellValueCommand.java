@@ -41,8 +41,8 @@ public class SetCellValueCommand extends AbstractSingleCellCommand {
     public void serialize(StringBuilder data) {
         super.serialize(data);
 
-        data.append(mValue).append("|");
-        data.append(mOldValue).append("|");
+        data.append(mValue).append('|');
+        data.append(mOldValue).append('|');
     }
 
     @Override
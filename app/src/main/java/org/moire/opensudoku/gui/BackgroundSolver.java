@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2009 Roman Masek
+ *
+ * This file is part of OpenSudoku.
+ *
+ * OpenSudoku is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenSudoku is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSudoku.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.moire.opensudoku.gui;
+
+import android.os.Handler;
+import android.util.Log;
+
+import org.moire.opensudoku.game.CellCollection;
+import org.moire.opensudoku.game.SolverControl;
+import org.moire.opensudoku.game.SolverEngine;
+import org.moire.opensudoku.game.SolverEngineFactory;
+import org.moire.opensudoku.game.SolverMetrics;
+import org.moire.opensudoku.game.SolverResult;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Solves puzzles on one single background thread, so that long search does not block GUI.
+ * Each search is limited by {@link #NODE_BUDGET} and {@link #TIME_BUDGET}. Results are
+ * published on GUI thread via {@link OnSolvedListener} interface.
+ * <p/>
+ * Please note that instance of this class has to be created on GUI thread!
+ * <p/>
+ * Call {@link #cancel()} when results are no longer needed (for example when activity pauses)
+ * and {@link #destroy()} when this object is no longer needed.
+ * <p/>
+ * Statistics of each search and {@link SolverMetrics} totals are logged on debug level,
+ * enable it by <code>adb shell setprop log.tag.BackgroundSolver DEBUG</code>.
+ */
+public class BackgroundSolver {
+
+    public static final long NODE_BUDGET = 5000000;
+    public static final long TIME_BUDGET = 10000;
+
+    private static final String TAG = "BackgroundSolver";
+
+    private Handler mGuiHandler;
+    private ExecutorService mSolverService = Executors.newSingleThreadExecutor();
+    // engine is used only on the background thread
+    private SolverEngine mSolver;
+    private SolverControl mControl;
+
+    public BackgroundSolver() {
+        mGuiHandler = new Handler();
+    }
+
+    /**
+     * Solves given puzzle.
+     *
+     * @param cells    Puzzle to solve, only values of the cells which are not editable are used.
+     * @param listener Listener called with the result on GUI thread, it is not called when
+     *                 the search is cancelled.
+     */
+    public void solveAsync(CellCollection cells, OnSolvedListener listener) {
+        runAsync(cells, 1, listener);
+    }
+
+    /**
+     * Counts solutions of given puzzle, see {@link SolverEngine#countSolutions(int)}.
+     *
+     * @param cells    Puzzle to solve, only values of the cells which are not editable are used.
+     * @param limit    Maximum number of solutions to count.
+     * @param listener Listener called with the result on GUI thread, it is not called when
+     *                 the search is cancelled.
+     */
+    public void countSolutionsAsync(CellCollection cells, int limit, OnSolvedListener listener) {
+        runAsync(cells, limit, listener);
+    }
+
+    /**
+     * Cancels search in progress, if there is any.
+     */
+    public void cancel() {
+        if (mControl != null) {
+            mControl.cancel();
+            mControl = null;
+        }
+    }
+
+    public void destroy() {
+        cancel();
+        mSolverService.shutdownNow();
+    }
+
+    private void runAsync(CellCollection cells, int limit, OnSolvedListener listener) {
+        cancel();
+
+        // the search works with its own copy, so the game can change in the meantime
+        final CellCollection puzzle = CellCollection.deserialize(cells.serialize());
+        final SolverControl control = new SolverControl(NODE_BUDGET, TIME_BUDGET);
+        mControl = control;
+
+        mSolverService.execute(() -> {
+            try {
+                if (mSolver == null) {
+                    mSolver = SolverEngineFactory.create();
+                }
+                mSolver.setPuzzle(puzzle);
+                final SolverResult result = limit == 1 ?
+                        mSolver.solve(control) : mSolver.countSolutions(limit, control);
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Search finished with status " + result.getStatus() + ": "
+                            + result.getStats() + "; totals: " + SolverMetrics.getSummary());
+                }
+
+                mGuiHandler.post(() -> {
+                    if (!control.isCancelled()) {
+                        if (mControl == control) {
+                            mControl = null;
+                        }
+                        listener.onSolved(result);
+                    }
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Error occurred while solving puzzle.", e);
+            }
+        });
+    }
+
+    public interface OnSolvedListener {
+        /**
+         * Called on GUI thread when search finishes.
+         *
+         * @param result Result of the search, check its status first.
+         */
+        void onSolved(SolverResult result);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2009 Roman Masek
+ *
+ * This file is part of OpenSudoku.
+ *
+ * OpenSudoku is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenSudoku is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenSudoku.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.moire.opensudoku.gui;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+
+import org.moire.opensudoku.db.SudokuDatabase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Rates difficulty of puzzles which are not rated yet on one single background thread.
+ * Results are published on GUI thread via {@link RatingCallback} interface.
+ * <p/>
+ * Please note that instance of this class has to be created on GUI thread!
+ * <p/>
+ * You should explicitly call {@link #destroy()} when this object is no longer needed.
+ */
+public class DifficultyRatingLoader {
+
+    private static final String TAG = "DifficultyRatingLoader";
+
+    private SudokuDatabase mDatabase;
+    private Handler mGuiHandler;
+    private ExecutorService mRatingService = Executors.newSingleThreadExecutor();
+
+    public DifficultyRatingLoader(Context context) {
+        mDatabase = new SudokuDatabase(context);
+        mGuiHandler = new Handler();
+    }
+
+    public void rateFolderAsync(long folderID, RatingCallback ratedCallback) {
+        mRatingService.execute(() -> {
+            try {
+                final int ratedCount = mDatabase.rateFolder(folderID);
+
+                mGuiHandler.post(() -> ratedCallback.onRated(ratedCount));
+            } catch (Exception e) {
+                // this is some unimportant background stuff, do not fail
+                Log.e(TAG, "Error occurred while rating puzzles.", e);
+            }
+        });
+    }
+
+    public void destroy() {
+        mRatingService.shutdownNow();
+        mDatabase.close();
+    }
+
+    public interface RatingCallback {
+        /**
+         * @param ratedCount Number of puzzles which were rated.
+         */
+        void onRated(int ratedCount);
+    }
+}
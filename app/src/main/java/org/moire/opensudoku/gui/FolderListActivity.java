@@ -42,6 +42,7 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.SimpleCursorAdapter;
 import android.widget.SimpleCursorAdapter.ViewBinder;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -72,6 +73,7 @@ public class FolderListActivity extends ThemedActivity {
     public static final int MENU_ITEM_EXPORT_ALL = Menu.FIRST + 5;
     public static final int MENU_ITEM_IMPORT = Menu.FIRST + 6;
     public static final int MENU_ITEM_SETTINGS = Menu.FIRST + 7;
+    public static final int MENU_ITEM_GENERATE = Menu.FIRST + 8;
 
     private static final int OPEN_FILE = 1;
 
@@ -79,6 +81,9 @@ public class FolderListActivity extends ThemedActivity {
     private static final int DIALOG_ADD_FOLDER = 1;
     private static final int DIALOG_RENAME_FOLDER = 2;
     private static final int DIALOG_DELETE_FOLDER = 3;
+    private static final int DIALOG_GENERATE = 4;
+
+    private static final int DEFAULT_GENERATE_COUNT = 100;
     private static final String TAG = "FolderListActivity";
     private int STORAGE_PERMISSION_CODE = 1;
     private Cursor mCursor;
@@ -172,6 +177,8 @@ public class FolderListActivity extends ThemedActivity {
         menu.add(0, MENU_ITEM_IMPORT, 0, R.string.import_file)
                 .setShortcut('8', 'i')
                 .setIcon(R.drawable.ic_cloud_download);
+        menu.add(0, MENU_ITEM_GENERATE, 0, R.string.generate_puzzles)
+                .setIcon(R.drawable.ic_add);
         menu.add(0, MENU_ITEM_EXPORT_ALL, 1, R.string.export_all_folders)
                 .setShortcut('7', 'e')
                 .setIcon(R.drawable.ic_share);
@@ -262,6 +269,34 @@ public class FolderListActivity extends ThemedActivity {
                         })
                         .setNegativeButton(android.R.string.cancel, null)
                         .create();
+            case DIALOG_GENERATE:
+                View generateView = factory.inflate(R.layout.generate_puzzles, null);
+                TextView countInput = generateView.findViewById(R.id.count);
+                Spinner levelInput = generateView.findViewById(R.id.difficulty);
+                Spinner symmetryInput = generateView.findViewById(R.id.symmetry);
+                return new AlertDialog.Builder(this)
+                        .setIcon(R.drawable.ic_add)
+                        .setTitle(R.string.generate_puzzles)
+                        .setView(generateView)
+                        .setPositiveButton(R.string.generate, (dialog, whichButton) -> {
+                            int count;
+                            try {
+                                count = Integer.parseInt(countInput.getText().toString().trim());
+                            } catch (NumberFormatException e) {
+                                count = DEFAULT_GENERATE_COUNT;
+                            }
+                            if (count > 0) {
+                                Intent i = new Intent(this, SudokuImportActivity.class);
+                                i.putExtra(SudokuImportActivity.EXTRA_GENERATE_COUNT, count);
+                                i.putExtra(SudokuImportActivity.EXTRA_GENERATE_LEVEL,
+                                        levelInput.getSelectedItemPosition());
+                                i.putExtra(SudokuImportActivity.EXTRA_GENERATE_SYMMETRY,
+                                        symmetryInput.getSelectedItemPosition());
+                                startActivity(i);
+                            }
+                        })
+                        .setNegativeButton(android.R.string.cancel, null)
+                        .create();
             case DIALOG_DELETE_FOLDER:
                 return new AlertDialog.Builder(this)
                         .setIcon(R.drawable.ic_delete)
@@ -341,6 +376,9 @@ public class FolderListActivity extends ThemedActivity {
             case MENU_ITEM_ADD:
                 showDialog(DIALOG_ADD_FOLDER);
                 return true;
+            case MENU_ITEM_GENERATE:
+                showDialog(DIALOG_GENERATE);
+                return true;
             case MENU_ITEM_IMPORT:
                 intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
                 intent.addCategory(Intent.CATEGORY_OPENABLE);
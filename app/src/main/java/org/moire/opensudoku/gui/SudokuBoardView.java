@@ -22,9 +22,11 @@ package org.moire.opensudoku.gui;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
@@ -32,14 +34,21 @@ import android.view.View;
 
 import org.moire.opensudoku.R;
 import org.moire.opensudoku.game.Cell;
+import org.moire.opensudoku.game.CellChanges;
 import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.game.CellNote;
+import org.moire.opensudoku.game.PuzzlePreview;
 import org.moire.opensudoku.game.SudokuGame;
 
-import java.util.Collection;
-
 /**
  * Sudoku board widget.
+ * <p>
+ * Changes of the cells and of the selection redraw just the area of the cells which changed,
+ * cells outside of the area being redrawn are skipped in {@link #onDraw(Canvas)}.
+ * <p>
+ * Lines and givens are drawn into a bitmap, which is drawn again only when its size, colors or
+ * the givens change. Other digits are copied from pre-rendered glyphs, so drawing the board
+ * does not allocate anything.
  *
  * @author romario
  */
@@ -53,6 +62,15 @@ public class SudokuBoardView extends View {
      */
     private static final int NO_COLOR = 0;
 
+    // Rows of the glyph bitmap, each row has a slot of the size of the cell for each value.
+    private static final int GLYPHS_VALUE = 0;
+    private static final int GLYPHS_INVALID = 1;
+    // all nine notes in one slot, each at its place in the cell
+    private static final int GLYPHS_NOTES = 2;
+    private static final int GLYPH_ROWS = 3;
+    // digits are drawn from here, so no strings are created
+    private static final char[] DIGITS = "0123456789".toCharArray();
+
     private float mCellWidth;
     private float mCellHeight;
 
@@ -62,12 +80,15 @@ public class SudokuBoardView extends View {
     private int mHighlightedValue = 0;
     private boolean mReadonly = false;
     private boolean mHighlightWrongVals = true;
+    private boolean mHighlightMistakes = false;
     private boolean mHighlightTouchedCell = true;
     private boolean mAutoHideTouchedCellHint = true;
     private HighlightMode mHighlightSimilarCells = HighlightMode.NONE;
 
     private SudokuGame mGame;
     private CellCollection mCells;
+    // puzzle shown instead of cells, see setPreview
+    private PuzzlePreview mPreview;
     private OnCellTappedListener mOnCellTappedListener;
     private OnCellSelectedListener mOnCellSelectedListener;
     private Paint mLinePaint;
@@ -85,6 +106,18 @@ public class SudokuBoardView extends View {
     private Paint mBackgroundColorSelected;
     private Paint mBackgroundColorHighlighted;
     private Paint mCellValueInvalidPaint;
+    private final Rect mClipBounds = new Rect();
+    // Lines and givens, drawn again only when they change. Cells can be changed from
+    // another thread, so validity is volatile.
+    private Bitmap mStaticLayer;
+    private volatile boolean mStaticLayerValid;
+    private Bitmap mGlyphs;
+    private boolean mGlyphsValid;
+    private int mGlyphWidth;
+    private int mGlyphHeight;
+    private final Rect mGlyphSource = new Rect();
+    private final Rect mGlyphTarget = new Rect();
+    private final CellCollection.OnChangeListener mOnCellsChangeListener = this::invalidateCells;
 
     public SudokuBoardView(Context context) {
         this(context, null);
@@ -141,7 +174,11 @@ public class SudokuBoardView extends View {
     }
 
     public void setLineColor(int color) {
-        mLinePaint.setColor(color);
+        // theme is applied again each time view is reused in list, so check for change
+        if (mLinePaint.getColor() != color) {
+            mLinePaint.setColor(color);
+            mStaticLayerValid = false;
+        }
     }
 
     public int getSectorLineColor() {
@@ -149,7 +186,10 @@ public class SudokuBoardView extends View {
     }
 
     public void setSectorLineColor(int color) {
-        mSectorLinePaint.setColor(color);
+        if (mSectorLinePaint.getColor() != color) {
+            mSectorLinePaint.setColor(color);
+            mStaticLayerValid = false;
+        }
     }
 
     public int getTextColor() {
@@ -157,7 +197,10 @@ public class SudokuBoardView extends View {
     }
 
     public void setTextColor(int color) {
-        mCellValuePaint.setColor(color);
+        if (mCellValuePaint.getColor() != color) {
+            mCellValuePaint.setColor(color);
+            mGlyphsValid = false;
+        }
     }
 
     public int getTextColorReadOnly() {
@@ -165,7 +208,10 @@ public class SudokuBoardView extends View {
     }
 
     public void setTextColorReadOnly(int color) {
-        mCellValueReadonlyPaint.setColor(color);
+        if (mCellValueReadonlyPaint.getColor() != color) {
+            mCellValueReadonlyPaint.setColor(color);
+            mStaticLayerValid = false;
+        }
     }
 
     public int getTextColorNote() {
@@ -173,7 +219,10 @@ public class SudokuBoardView extends View {
     }
 
     public void setTextColorNote(int color) {
-        mCellNotePaint.setColor(color);
+        if (mCellNotePaint.getColor() != color) {
+            mCellNotePaint.setColor(color);
+            mGlyphsValid = false;
+        }
     }
 
     public int getBackgroundColorSecondary() {
@@ -226,7 +275,11 @@ public class SudokuBoardView extends View {
     }
 
     public void setCells(CellCollection cells) {
+        if (mCells != null) {
+            mCells.removeOnChangeListener(mOnCellsChangeListener);
+        }
         mCells = cells;
+        mPreview = null;
 
         if (mCells != null) {
             if (!mReadonly) {
@@ -234,9 +287,33 @@ public class SudokuBoardView extends View {
                 onCellSelected(mSelectedCell);
             }
 
-            mCells.addOnChangeListener(this::postInvalidate);
+            mCells.addOnChangeListener(mOnCellsChangeListener);
         }
 
+        mStaticLayerValid = false;
+        postInvalidate();
+    }
+
+    public PuzzlePreview getPreview() {
+        return mPreview;
+    }
+
+    /**
+     * Shows given puzzle read-only, without cells. This is meant for list of puzzles, where
+     * creating cells for each row is too expensive. Preview is not copied, so it can be reused
+     * when the view is reused for another puzzle (set it again after it changes).
+     */
+    public void setPreview(PuzzlePreview preview) {
+        if (mCells != null) {
+            mCells.removeOnChangeListener(mOnCellsChangeListener);
+            mCells = null;
+        }
+        mPreview = preview;
+        mSelectedCell = null;
+        mTouchedCell = null;
+        mReadonly = true;
+
+        mStaticLayerValid = false;
         postInvalidate();
     }
 
@@ -259,6 +336,20 @@ public class SudokuBoardView extends View {
 
     public void setHighlightWrongVals(boolean highlightWrongVals) {
         mHighlightWrongVals = highlightWrongVals;
+        mStaticLayerValid = false;
+        postInvalidate();
+    }
+
+    public boolean getHighlightMistakes() {
+        return mHighlightMistakes;
+    }
+
+    /**
+     * Highlights values which do not match the solution of the puzzle, solution has
+     * to be known by the game (see {@link SudokuGame#hasSolution()}).
+     */
+    public void setHighlightMistakes(boolean highlightMistakes) {
+        mHighlightMistakes = highlightMistakes;
         postInvalidate();
     }
 
@@ -287,7 +378,11 @@ public class SudokuBoardView extends View {
     }
 
     public void setHighlightedValue(int value) {
-        mHighlightedValue = value;
+        if (value != mHighlightedValue) {
+            int oldValue = mHighlightedValue;
+            mHighlightedValue = value;
+            invalidateCellsWithValue(oldValue, value);
+        }
     }
 
     /**
@@ -316,8 +411,7 @@ public class SudokuBoardView extends View {
     }
 
     public void hideTouchedCellHint() {
-        mTouchedCell = null;
-        postInvalidate();
+        setTouchedCell(null);
     }
 
     protected void onCellSelected(Cell cell) {
@@ -394,6 +488,9 @@ public class SudokuBoardView extends View {
         mCellNotePaint.setTextSize((mCellHeight - mNoteTop * 2) / 3.0f);
 
         computeSectorLineWidth(width, height);
+
+        mStaticLayerValid = false;
+        mGlyphsValid = false;
     }
 
     private void computeSectorLineWidth(int widthInPx, int heightInPx) {
@@ -432,18 +529,26 @@ public class SudokuBoardView extends View {
             canvas.drawRect(3 * mCellWidth, 6 * mCellWidth, 6 * mCellWidth, 9 * mCellWidth, mBackgroundColorSecondary);
         }
 
-        // draw cells
+        // draw cells, only those which are in the area being redrawn
         int cellLeft, cellTop;
-        if (mCells != null) {
+        if (mPreview != null) {
+            drawPreview(canvas);
+        } else if (mCells != null) {
+            if (!mGlyphsValid) {
+                drawGlyphs();
+            }
+            canvas.getClipBounds(mClipBounds);
+            int firstRow = Math.max(0, (int) ((mClipBounds.top - paddingTop) / mCellHeight));
+            int lastRow = Math.min(8, (int) ((mClipBounds.bottom - paddingTop) / mCellHeight));
+            int firstCol = Math.max(0, (int) ((mClipBounds.left - paddingLeft) / mCellWidth));
+            int lastCol = Math.min(8, (int) ((mClipBounds.right - paddingLeft) / mCellWidth));
 
             boolean hasBackgroundColorReadOnly = mBackgroundColorReadOnly.getColor() != NO_COLOR;
 
-            float numberAscent = mCellValuePaint.ascent();
-            float noteAscent = mCellNotePaint.ascent();
             float noteWidth = mCellWidth / 3f;
 
-            for (int row = 0; row < 9; row++) {
-                for (int col = 0; col < 9; col++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
                     Cell cell = mCells.getCell(row, col);
 
                     cellLeft = Math.round((col * mCellWidth) + paddingLeft);
@@ -485,7 +590,7 @@ public class SudokuBoardView extends View {
                                     cellIsNotAlreadySelected &&
                                             highlightedValueIsValid &&
                                             (mHighlightedValue == cell.getValue() ||
-                                                    (cell.getNote().getNotedNumbers().contains(mHighlightedValue)) &&
+                                                    (cell.getNote().hasNumber(mHighlightedValue)) &&
                                                             cell.getValue() == 0);
                         }
                     }
@@ -526,41 +631,123 @@ public class SudokuBoardView extends View {
                         mBackgroundColorTouched);
             }
 
-            for (int row = 0; row < 9; row++) {
-                for (int col = 0; col < 9; col++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
                     Cell cell = mCells.getCell(row, col);
 
                     cellLeft = Math.round((col * mCellWidth) + paddingLeft);
                     cellTop = Math.round((row * mCellHeight) + paddingTop);
 
-                    // draw cell Text
+                    // draw cell Text, givens are in the static layer
                     int value = cell.getValue();
                     if (value != 0) {
-                        Paint cellValuePaint = cell.isEditable() ? mCellValuePaint : mCellValueReadonlyPaint;
-
-                        if (mHighlightWrongVals && !cell.isValid()) {
-                            cellValuePaint = mCellValueInvalidPaint;
+                        if (cell.isEditable()) {
+                            int glyphs = GLYPHS_VALUE;
+                            if (mHighlightWrongVals && !cell.isValid()) {
+                                glyphs = GLYPHS_INVALID;
+                            } else if (mHighlightMistakes && mGame != null && mGame.isMistake(cell)) {
+                                glyphs = GLYPHS_INVALID;
+                            }
+                            drawValueGlyph(canvas, glyphs, value, cellLeft, cellTop);
                         }
-
-                        canvas.drawText(Integer.toString(value),
-                                cellLeft + mNumberLeft,
-                                cellTop + mNumberTop - numberAscent,
-                                cellValuePaint);
                     } else {
-                        if (!cell.getNote().isEmpty()) {
-                            Collection<Integer> numbers = cell.getNote().getNotedNumbers();
-                            for (Integer number : numbers) {
-                                int n = number - 1;
-                                int c = n % 3;
-                                int r = n / 3;
-                                canvas.drawText(Integer.toString(number), cellLeft + c * noteWidth + 2, cellTop + mNoteTop - noteAscent + r * noteWidth - 1, mCellNotePaint);
-                            }
+                        CellNote note = cell.getNote();
+                        for (int number = note.nextNumber(0); number != 0; number = note.nextNumber(number)) {
+                            drawNoteGlyph(canvas, number, noteWidth, cellLeft, cellTop);
                         }
                     }
                 }
             }
         }
 
+        if (mStaticLayer == null || !mStaticLayerValid
+                || mStaticLayer.getWidth() != getWidth() || mStaticLayer.getHeight() != getHeight()) {
+            drawStaticLayer();
+        }
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+    }
+
+    /**
+     * Draws read-only backgrounds and values of editable cells of the preview, givens are
+     * in the static layer.
+     */
+    private void drawPreview(Canvas canvas) {
+        if (!mGlyphsValid) {
+            drawGlyphs();
+        }
+        int paddingLeft = getPaddingLeft();
+        int paddingTop = getPaddingTop();
+        boolean hasBackgroundColorReadOnly = mBackgroundColorReadOnly.getColor() != NO_COLOR;
+
+        for (int index = 0; index < CellCollection.SUDOKU_SIZE * CellCollection.SUDOKU_SIZE; index++) {
+            int value = mPreview.getValue(index);
+            boolean editable = mPreview.isEditable(index);
+            if (editable && value == 0) {
+                continue;
+            }
+            int cellLeft = Math.round((index % CellCollection.SUDOKU_SIZE) * mCellWidth) + paddingLeft;
+            int cellTop = Math.round((index / CellCollection.SUDOKU_SIZE) * mCellHeight) + paddingTop;
+            if (!editable) {
+                if (hasBackgroundColorReadOnly) {
+                    canvas.drawRect(
+                            cellLeft, cellTop,
+                            cellLeft + mCellWidth, cellTop + mCellHeight,
+                            mBackgroundColorReadOnly);
+                }
+            } else {
+                drawValueGlyph(canvas, GLYPHS_VALUE, value, cellLeft, cellTop);
+            }
+        }
+    }
+
+    /**
+     * Draws lines and givens into <code>mStaticLayer</code>.
+     */
+    private void drawStaticLayer() {
+        if (mStaticLayer == null
+                || mStaticLayer.getWidth() != getWidth() || mStaticLayer.getHeight() != getHeight()) {
+            mStaticLayer = Bitmap.createBitmap(Math.max(1, getWidth()), Math.max(1, getHeight()),
+                    Bitmap.Config.ARGB_8888);
+        } else {
+            mStaticLayer.eraseColor(Color.TRANSPARENT);
+        }
+        // set before drawing, so change made meanwhile from another thread is not lost
+        mStaticLayerValid = true;
+        Canvas canvas = new Canvas(mStaticLayer);
+
+        int width = getWidth() - getPaddingRight();
+        int height = getHeight() - getPaddingBottom();
+
+        int paddingLeft = getPaddingLeft();
+        int paddingTop = getPaddingTop();
+
+        // draw givens
+        float numberAscent = mCellValuePaint.ascent();
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                int value;
+                Paint cellValuePaint = mCellValueReadonlyPaint;
+                if (mPreview != null) {
+                    int index = row * CellCollection.SUDOKU_SIZE + col;
+                    value = mPreview.isEditable(index) ? 0 : mPreview.getValue(index);
+                } else if (mCells != null) {
+                    Cell cell = mCells.getCell(row, col);
+                    value = cell.isEditable() ? 0 : cell.getValue();
+                    if (mHighlightWrongVals && !cell.isValid()) {
+                        cellValuePaint = mCellValueInvalidPaint;
+                    }
+                } else {
+                    continue;
+                }
+                if (value != 0) {
+                    canvas.drawText(DIGITS, value, 1,
+                            Math.round((col * mCellWidth) + paddingLeft) + mNumberLeft,
+                            Math.round((row * mCellHeight) + paddingTop) + mNumberTop - numberAscent,
+                            cellValuePaint);
+                }
+            }
+        }
+
         // draw vertical lines
         for (int c = 0; c <= 9; c++) {
             float x = (c * mCellWidth) + paddingLeft;
@@ -586,7 +773,65 @@ public class SudokuBoardView extends View {
             float y = r * mCellHeight + paddingTop;
             canvas.drawRect(paddingLeft, y - sectorLineWidth1, width, y + sectorLineWidth2, mSectorLinePaint);
         }
+    }
+
+    /**
+     * Renders digits into <code>mGlyphs</code>, at the same place within the slot as they are
+     * drawn within the cell.
+     */
+    private void drawGlyphs() {
+        mGlyphWidth = Math.max(1, (int) Math.ceil(mCellWidth));
+        mGlyphHeight = Math.max(1, (int) Math.ceil(mCellHeight));
+        int width = CellCollection.SUDOKU_SIZE * mGlyphWidth;
+        int height = GLYPH_ROWS * mGlyphHeight;
+        if (mGlyphs == null || mGlyphs.getWidth() != width || mGlyphs.getHeight() != height) {
+            mGlyphs = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            mGlyphs.eraseColor(Color.TRANSPARENT);
+        }
+        Canvas canvas = new Canvas(mGlyphs);
+
+        float numberAscent = mCellValuePaint.ascent();
+        float noteAscent = mCellNotePaint.ascent();
+        float noteWidth = mCellWidth / 3f;
+        for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+            int left = (value - 1) * mGlyphWidth + mNumberLeft;
+            canvas.drawText(DIGITS, value, 1, left, GLYPHS_VALUE * mGlyphHeight + mNumberTop - numberAscent,
+                    mCellValuePaint);
+            canvas.drawText(DIGITS, value, 1, left, GLYPHS_INVALID * mGlyphHeight + mNumberTop - numberAscent,
+                    mCellValueInvalidPaint);
+
+            int n = value - 1;
+            int c = n % 3;
+            int r = n / 3;
+            canvas.drawText(DIGITS, value, 1, c * noteWidth + 2,
+                    GLYPHS_NOTES * mGlyphHeight + mNoteTop - noteAscent + r * noteWidth - 1,
+                    mCellNotePaint);
+        }
+        mGlyphsValid = true;
+    }
 
+    private void drawValueGlyph(Canvas canvas, int glyphs, int value, int cellLeft, int cellTop) {
+        int left = (value - 1) * mGlyphWidth;
+        int top = glyphs * mGlyphHeight;
+        mGlyphSource.set(left, top, left + mGlyphWidth, top + mGlyphHeight);
+        mGlyphTarget.set(cellLeft, cellTop, cellLeft + mGlyphWidth, cellTop + mGlyphHeight);
+        canvas.drawBitmap(mGlyphs, mGlyphSource, mGlyphTarget, null);
+    }
+
+    /**
+     * Copies just the part of the notes slot where given number is.
+     */
+    private void drawNoteGlyph(Canvas canvas, int number, float noteWidth, int cellLeft, int cellTop) {
+        int n = number - 1;
+        int left = (int) ((n % 3) * noteWidth);
+        int top = (int) ((n / 3) * noteWidth);
+        int right = Math.min(mGlyphWidth, (int) Math.ceil((n % 3 + 1) * noteWidth));
+        int bottom = Math.min(mGlyphHeight, (int) Math.ceil((n / 3 + 1) * noteWidth));
+        int slotTop = GLYPHS_NOTES * mGlyphHeight;
+        mGlyphSource.set(left, slotTop + top, right, slotTop + bottom);
+        mGlyphTarget.set(cellLeft + left, cellTop + top, cellLeft + right, cellTop + bottom);
+        canvas.drawBitmap(mGlyphs, mGlyphSource, mGlyphTarget, null);
     }
 
     @Override
@@ -599,11 +844,10 @@ public class SudokuBoardView extends View {
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
                 case MotionEvent.ACTION_MOVE:
-                    mTouchedCell = getCellAtPoint(x, y);
+                    setTouchedCell(getCellAtPoint(x, y));
                     break;
                 case MotionEvent.ACTION_UP:
-                    mSelectedCell = getCellAtPoint(x, y);
-                    invalidate(); // selected cell has changed, update board as soon as you can
+                    setSelectedCell(getCellAtPoint(x, y));
 
                     if (mSelectedCell != null) {
                         onCellTapped(mSelectedCell);
@@ -611,14 +855,13 @@ public class SudokuBoardView extends View {
                     }
 
                     if (mAutoHideTouchedCellHint) {
-                        mTouchedCell = null;
+                        setTouchedCell(null);
                     }
                     break;
                 case MotionEvent.ACTION_CANCEL:
-                    mTouchedCell = null;
+                    setTouchedCell(null);
                     break;
             }
-            postInvalidate();
         }
 
         return !mReadonly;
@@ -689,7 +932,6 @@ public class SudokuBoardView extends View {
                 moveCellSelectionTo(0, 0);
             }
         }
-        postInvalidate();
     }
 
     private void setCellValue(Cell cell, int value) {
@@ -741,10 +983,8 @@ public class SudokuBoardView extends View {
     public boolean moveCellSelectionTo(int row, int col) {
         if (col >= 0 && col < CellCollection.SUDOKU_SIZE
                 && row >= 0 && row < CellCollection.SUDOKU_SIZE) {
-            mSelectedCell = mCells.getCell(row, col);
+            setSelectedCell(mCells.getCell(row, col));
             onCellSelected(mSelectedCell);
-
-            postInvalidate();
             return true;
         }
 
@@ -752,9 +992,131 @@ public class SudokuBoardView extends View {
     }
 
     public void clearCellSelection() {
-        mSelectedCell = null;
+        setSelectedCell(null);
         onCellSelected(mSelectedCell);
-        postInvalidate();
+    }
+
+    private void setSelectedCell(Cell cell) {
+        if (cell != mSelectedCell) {
+            invalidateCell(mSelectedCell);
+            mSelectedCell = cell;
+            invalidateCell(mSelectedCell);
+        }
+    }
+
+    private void setTouchedCell(Cell cell) {
+        if (cell != mTouchedCell) {
+            if (mHighlightTouchedCell) {
+                invalidateCross(mTouchedCell);
+                invalidateCross(cell);
+            }
+            mTouchedCell = cell;
+        }
+    }
+
+    /**
+     * Redraws cells changed in the collection. Called from the thread which changed them.
+     */
+    private void invalidateCells(CellChanges changes) {
+        if (isStaticLayerChanged(changes)) {
+            mStaticLayerValid = false;
+        }
+
+        int top = 9, left = 9, bottom = -1, right = -1;
+        for (int index = changes.nextChangedCell(0, CellChanges.CHANGE_ALL); index != -1;
+             index = changes.nextChangedCell(index + 1, CellChanges.CHANGE_ALL)) {
+            int row = index / CellCollection.SUDOKU_SIZE;
+            int col = index % CellCollection.SUDOKU_SIZE;
+            top = Math.min(top, row);
+            left = Math.min(left, col);
+            bottom = Math.max(bottom, row);
+            right = Math.max(right, col);
+        }
+        if (bottom != -1) {
+            invalidateCells(top, left, bottom, right);
+        }
+    }
+
+    /**
+     * Returns true if any given changed, or cell became given or stopped to be given.
+     */
+    private boolean isStaticLayerChanged(CellChanges changes) {
+        if ((changes.getChanges() & CellChanges.CHANGE_EDITABLE) != 0) {
+            return true;
+        }
+        int changed = CellChanges.CHANGE_VALUE | CellChanges.CHANGE_VALIDITY;
+        for (int index = changes.nextChangedCell(0, changed); index != -1;
+             index = changes.nextChangedCell(index + 1, changed)) {
+            if (!mCells.getCell(index / CellCollection.SUDOKU_SIZE, index % CellCollection.SUDOKU_SIZE).isEditable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Redraws cells which are highlighted when any of given values is highlighted,
+     * see {@link #setHighlightSimilarCell(HighlightMode)}.
+     */
+    private void invalidateCellsWithValue(int value1, int value2) {
+        if (mCells == null || mHighlightSimilarCells == HighlightMode.NONE) {
+            return;
+        }
+        int top = 9, left = 9, bottom = -1, right = -1;
+        for (int row = 0; row < CellCollection.SUDOKU_SIZE; row++) {
+            for (int col = 0; col < CellCollection.SUDOKU_SIZE; col++) {
+                Cell cell = mCells.getCell(row, col);
+                int value = cell.getValue();
+                boolean matches = value != 0 && (value == value1 || value == value2);
+                if (value == 0 && mHighlightSimilarCells == HighlightMode.NUMBERS_AND_NOTES) {
+                    CellNote note = cell.getNote();
+                    matches = note.hasNumber(value1) || note.hasNumber(value2);
+                }
+                if (matches) {
+                    top = Math.min(top, row);
+                    left = Math.min(left, col);
+                    bottom = Math.max(bottom, row);
+                    right = Math.max(right, col);
+                }
+            }
+        }
+        if (bottom != -1) {
+            invalidateCells(top, left, bottom, right);
+        }
+    }
+
+    /**
+     * Redraws row and column of given cell, if it is not null.
+     */
+    private void invalidateCross(Cell cell) {
+        if (cell != null) {
+            invalidateCells(cell.getRowIndex(), 0, cell.getRowIndex(), CellCollection.SUDOKU_SIZE - 1);
+            invalidateCells(0, cell.getColumnIndex(), CellCollection.SUDOKU_SIZE - 1, cell.getColumnIndex());
+        }
+    }
+
+    /**
+     * Redraws given cell, if it is not null.
+     */
+    private void invalidateCell(Cell cell) {
+        if (cell != null) {
+            invalidateCells(cell.getRowIndex(), cell.getColumnIndex(),
+                    cell.getRowIndex(), cell.getColumnIndex());
+        }
+    }
+
+    /**
+     * Redraws cells in given range of rows and columns (both inclusive), together with
+     * the lines around them. Can be called from any thread.
+     */
+    private void invalidateCells(int top, int left, int bottom, int right) {
+        int paddingLeft = getPaddingLeft();
+        int paddingTop = getPaddingTop();
+        postInvalidate(
+                (int) (left * mCellWidth) + paddingLeft - mSectorLineWidth,
+                (int) (top * mCellHeight) + paddingTop - mSectorLineWidth,
+                (int) Math.ceil((right + 1) * mCellWidth) + paddingLeft + mSectorLineWidth,
+                (int) Math.ceil((bottom + 1) * mCellHeight) + paddingTop + mSectorLineWidth);
     }
 
     /**
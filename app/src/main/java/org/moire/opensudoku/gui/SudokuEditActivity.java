@@ -43,10 +43,14 @@ import androidx.appcompat.app.AlertDialog;
 import org.moire.opensudoku.R;
 import org.moire.opensudoku.db.SudokuDatabase;
 import org.moire.opensudoku.game.CellCollection;
+import org.moire.opensudoku.game.LogicalSolver;
+import org.moire.opensudoku.game.SolverResult;
 import org.moire.opensudoku.game.SudokuGame;
 import org.moire.opensudoku.gui.inputmethod.IMControlPanel;
 import org.moire.opensudoku.gui.inputmethod.InputMethod;
 
+import java.text.ParseException;
+
 import static android.content.ClipDescription.MIMETYPE_TEXT_HTML;
 import static android.content.ClipDescription.MIMETYPE_TEXT_PLAIN;
 
@@ -71,6 +75,8 @@ public class SudokuEditActivity extends ThemedActivity {
 
     private static final int DIALOG_PUZZLE_SOLVABLE = 1;
     private static final int DIALOG_PUZZLE_NOT_SOLVABLE = 2;
+    private static final int DIALOG_PUZZLE_MULTIPLE_SOLUTIONS = 3;
+    private static final int DIALOG_SOLVER_BUDGET_EXCEEDED = 4;
 
     // The different distinct states the activity can be run in.
     private static final int STATE_EDIT = 0;
@@ -87,6 +93,7 @@ public class SudokuEditActivity extends ThemedActivity {
     private ViewGroup mRootLayout;
     private Handler mGuiHandler;
     private ClipboardManager mClipboard;
+    private BackgroundSolver mBackgroundSolver;
 
     private boolean mFullScreen;
 
@@ -112,6 +119,7 @@ public class SudokuEditActivity extends ThemedActivity {
         mDatabase = new SudokuDatabase(getApplicationContext());
 
         mGuiHandler = new Handler();
+        mBackgroundSolver = new BackgroundSolver();
 
         Intent intent = getIntent();
         String action = intent.getAction();
@@ -143,11 +151,16 @@ public class SudokuEditActivity extends ThemedActivity {
 
         if (savedInstanceState != null) {
             mGame = new SudokuGame();
-            mGame.restoreState(savedInstanceState);
+            mGame.restoreState(savedInstanceState, mDatabase::loadCommands);
         } else {
             if (mSudokuID != 0) {
                 // existing sudoku, read it from database
                 mGame = mDatabase.getSudoku(mSudokuID);
+                if (mGame == null) {
+                    Toast.makeText(this, R.string.puzzle_not_readable, Toast.LENGTH_LONG).show();
+                    finish();
+                    return;
+                }
                 mGame.getCells().markAllCellsAsEditable();
             } else {
                 mGame = SudokuGame.createEmptyGame();
@@ -190,6 +203,8 @@ public class SudokuEditActivity extends ThemedActivity {
     protected void onPause() {
         super.onPause();
 
+        mBackgroundSolver.cancel();
+
         if (isFinishing() && mState != STATE_CANCEL && !mGame.getCells().isEmpty()) {
             savePuzzle();
         }
@@ -198,6 +213,7 @@ public class SudokuEditActivity extends ThemedActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mBackgroundSolver.destroy();
         mDatabase.close();
     }
 
@@ -264,12 +280,7 @@ public class SudokuEditActivity extends ThemedActivity {
                 pasteFromClipboard();
                 return true;
             case MENU_ITEM_CHECK_SOLVABILITY:
-                boolean solvable = checkSolvability();
-                if (solvable) {
-                    showDialog(DIALOG_PUZZLE_SOLVABLE);
-                } else {
-                    showDialog(DIALOG_PUZZLE_NOT_SOLVABLE);
-                }
+                checkSolvability();
                 return true;
             case MENU_ITEM_SAVE:
                 // do nothing, puzzle will be saved automatically in onPause
@@ -298,28 +309,61 @@ public class SudokuEditActivity extends ThemedActivity {
                         .setMessage(R.string.puzzle_not_solved)
                         .setPositiveButton(android.R.string.ok, null)
                         .create();
+            case DIALOG_PUZZLE_MULTIPLE_SOLUTIONS:
+                return new AlertDialog.Builder(this)
+                        .setTitle(R.string.app_name)
+                        .setMessage(R.string.puzzle_multiple_solutions)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .create();
+            case DIALOG_SOLVER_BUDGET_EXCEEDED:
+                return new AlertDialog.Builder(this)
+                        .setTitle(R.string.app_name)
+                        .setMessage(R.string.solver_budget_exceeded)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .create();
         }
         return null;
     }
 
-    private boolean checkSolvability() {
-        mGame.getCells().markFilledCellsAsNotEditable();
-        boolean solvable = mGame.isSolvable();
-        mGame.getCells().markAllCellsAsEditable();
-        return solvable;
+    /**
+     * Counts solutions of the edited puzzle on background thread and shows the result.
+     */
+    private void checkSolvability() {
+        CellCollection cells = mGame.getCells();
+        cells.markFilledCellsAsNotEditable();
+        mBackgroundSolver.countSolutionsAsync(cells, 2, result -> {
+            if (result.getStatus() == SolverResult.STATUS_BUDGET_EXCEEDED) {
+                showDialog(DIALOG_SOLVER_BUDGET_EXCEEDED);
+            } else if (result.getSolutionCount() == 0) {
+                showDialog(DIALOG_PUZZLE_NOT_SOLVABLE);
+            } else if (result.getSolutionCount() == 1) {
+                showDialog(DIALOG_PUZZLE_SOLVABLE);
+            } else {
+                showDialog(DIALOG_PUZZLE_MULTIPLE_SOLUTIONS);
+            }
+        });
+        cells.markAllCellsAsEditable();
     }
 
     private void savePuzzle() {
         mGame.getCells().markFilledCellsAsNotEditable();
+        // givens might have changed, solution will be found again when needed
+        mGame.invalidateSolution();
+
+        // rating single puzzle is fast enough to be done right away
+        int difficulty = LogicalSolver.rate(mGame.getCells());
 
         switch (mState) {
             case STATE_EDIT:
                 mDatabase.updateSudoku(mGame);
+                mDatabase.updateDifficulty(mGame.getId(), difficulty);
+                mDatabase.updateFingerprint(mGame.getId(), mGame.getCells());
                 Toast.makeText(getApplicationContext(), R.string.puzzle_updated, Toast.LENGTH_SHORT).show();
                 break;
             case STATE_INSERT:
                 mGame.setCreated(System.currentTimeMillis());
-                mDatabase.insertSudoku(mFolderID, mGame);
+                long sudokuID = mDatabase.insertSudoku(mFolderID, mGame);
+                mDatabase.updateDifficulty(sudokuID, difficulty);
                 Toast.makeText(getApplicationContext(), R.string.puzzle_inserted, Toast.LENGTH_SHORT).show();
                 break;
         }
@@ -349,8 +393,13 @@ public class SudokuEditActivity extends ThemedActivity {
                     mClipboard.getPrimaryClipDescription().hasMimeType(MIMETYPE_TEXT_HTML)) {
                 ClipData.Item clipDataItem = mClipboard.getPrimaryClip().getItemAt(0);
                 String clipDataText = clipDataItem.getText().toString();
-                if (CellCollection.isValid(clipDataText)) {
-                    CellCollection cells = CellCollection.deserialize(clipDataText);
+                CellCollection cells;
+                try {
+                    cells = CellCollection.parse(clipDataText);
+                } catch (ParseException e) {
+                    cells = null;
+                }
+                if (cells != null) {
                     mGame.setCells(cells);
                     ((SudokuBoardView) mRootLayout.getChildAt(0)).setCells(cells);
                     Toast.makeText(getApplicationContext(), R.string.pasted_from_clipboard, Toast.LENGTH_SHORT).show();
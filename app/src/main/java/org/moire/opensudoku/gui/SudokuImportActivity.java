@@ -9,8 +9,11 @@ import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import org.moire.opensudoku.R;
+import org.moire.opensudoku.game.LogicalSolver;
+import org.moire.opensudoku.game.PuzzleGenerator;
 import org.moire.opensudoku.gui.importing.AbstractImportTask;
 import org.moire.opensudoku.gui.importing.AbstractImportTask.OnImportFinishedListener;
+import org.moire.opensudoku.gui.importing.GenerateImportTask;
 import org.moire.opensudoku.gui.importing.OpenSudokuImportTask;
 import org.moire.opensudoku.gui.importing.SdmImportTask;
 
@@ -26,8 +29,23 @@ import java.net.URISyntaxException;
  * @author romario
  */
 public class SudokuImportActivity extends ThemedActivity {
+    /**
+     * Number of puzzles to generate instead of importing them.
+     */
+    public static final String EXTRA_GENERATE_COUNT = "generate_count";
+    /**
+     * Difficulty level of generated puzzles, one of <code>LogicalSolver.LEVEL_*</code> constants.
+     */
+    public static final String EXTRA_GENERATE_LEVEL = "generate_level";
+    /**
+     * Symmetry of generated puzzles, one of <code>PuzzleGenerator.SYMMETRY_*</code> constants.
+     */
+    public static final String EXTRA_GENERATE_SYMMETRY = "generate_symmetry";
+
     private static final String TAG = "ImportSudokuActivity";
 
+    private GenerateImportTask mGenerateTask;
+
     private final OnImportFinishedListener mOnImportFinishedListener = (importSuccessful, folderId) -> {
         if (importSuccessful) {
             Intent i;
@@ -62,6 +80,18 @@ public class SudokuImportActivity extends ThemedActivity {
         Intent intent = getIntent();
         String action = intent.getAction();
         Uri dataUri;
+        if (intent.hasExtra(EXTRA_GENERATE_COUNT)) {
+            mGenerateTask = new GenerateImportTask(intent.getIntExtra(EXTRA_GENERATE_COUNT, 0),
+                    intent.getIntExtra(EXTRA_GENERATE_LEVEL, LogicalSolver.LEVEL_EASY),
+                    intent.getIntExtra(EXTRA_GENERATE_SYMMETRY, PuzzleGenerator.SYMMETRY_NONE));
+            importTask = mGenerateTask;
+            importTask.setSkipDuplicates(true);
+            importTask.initialize(this, progressBar);
+            importTask.setOnImportFinishedListener(mOnImportFinishedListener);
+            importTask.execute();
+            return;
+        }
+
         if (action == null) {
             dataUri = intent.getData();
         }
@@ -121,7 +151,9 @@ public class SudokuImportActivity extends ThemedActivity {
                 importTask = new OpenSudokuImportTask(dataUri);
             } else if (cbuf_str.matches("[.0-9\\n\\r]{" + read + "}")) {
                 // Seems to be a Sudoku SDM file
+                // collections of puzzles without any state, duplicates are skipped
                 importTask = new SdmImportTask(dataUri);
+                importTask.setSkipDuplicates(true);
             } else {
                 Log.e(
                         TAG,
@@ -145,4 +177,14 @@ public class SudokuImportActivity extends ThemedActivity {
         importTask.execute();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // generating can take long, so it is stopped when user leaves the screen
+        if (mGenerateTask != null && isFinishing()) {
+            mGenerateTask.cancel(true);
+        }
+    }
+
 }
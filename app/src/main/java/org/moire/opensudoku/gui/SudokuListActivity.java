@@ -47,8 +47,9 @@ import androidx.preference.PreferenceManager;
 import org.moire.opensudoku.R;
 import org.moire.opensudoku.db.SudokuColumns;
 import org.moire.opensudoku.db.SudokuDatabase;
-import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.game.FolderInfo;
+import org.moire.opensudoku.game.LogicalSolver;
+import org.moire.opensudoku.game.PuzzlePreview;
 import org.moire.opensudoku.game.SudokuGame;
 import org.moire.opensudoku.utils.ThemeUtils;
 
@@ -76,6 +77,7 @@ public class SudokuListActivity extends ThemedActivity {
     public static final int MENU_ITEM_SORT = Menu.FIRST + 8;
     public static final int MENU_ITEM_FOLDERS = Menu.FIRST + 9;
     public static final int MENU_ITEM_SETTINGS = Menu.FIRST + 10;
+    public static final int MENU_ITEM_FILTER_DIFFICULTY = Menu.FIRST + 11;
 
     private static final int DIALOG_DELETE_PUZZLE = 0;
     private static final int DIALOG_RESET_PUZZLE = 1;
@@ -83,10 +85,15 @@ public class SudokuListActivity extends ThemedActivity {
     private static final int DIALOG_EDIT_NOTE = 3;
     private static final int DIALOG_FILTER = 4;
     private static final int DIALOG_SORT = 5;
+    private static final int DIALOG_FILTER_DIFFICULTY = 6;
 
     private static final String FILTER_STATE_NOT_STARTED = "filter" + SudokuGame.GAME_STATE_NOT_STARTED;
     private static final String FILTER_STATE_PLAYING = "filter" + SudokuGame.GAME_STATE_PLAYING;
     private static final String FILTER_STATE_SOLVED = "filter" + SudokuGame.GAME_STATE_COMPLETED;
+    private static final String FILTER_DIFFICULTY_EASY = "filter_difficulty" + LogicalSolver.LEVEL_EASY;
+    private static final String FILTER_DIFFICULTY_MEDIUM = "filter_difficulty" + LogicalSolver.LEVEL_MEDIUM;
+    private static final String FILTER_DIFFICULTY_HARD = "filter_difficulty" + LogicalSolver.LEVEL_HARD;
+    private static final String FILTER_DIFFICULTY_EXPERT = "filter_difficulty" + LogicalSolver.LEVEL_EXPERT;
 
     private static final String SORT_TYPE = "sort_type";
     private static final String SORT_ORDER = "sort_order";
@@ -109,6 +116,7 @@ public class SudokuListActivity extends ThemedActivity {
     private Cursor mCursor;
     private SudokuDatabase mDatabase;
     private FolderDetailLoader mFolderDetailLoader;
+    private DifficultyRatingLoader mDifficultyRatingLoader;
     private ListView mListView;
 
     @Override
@@ -122,6 +130,7 @@ public class SudokuListActivity extends ThemedActivity {
 
         mDatabase = new SudokuDatabase(getApplicationContext());
         mFolderDetailLoader = new FolderDetailLoader(getApplicationContext());
+        mDifficultyRatingLoader = new DifficultyRatingLoader(getApplicationContext());
 
         Intent intent = getIntent();
         if (intent.hasExtra(EXTRA_FOLDER_ID)) {
@@ -137,6 +146,10 @@ public class SudokuListActivity extends ThemedActivity {
         mListFilter.showStateNotStarted = settings.getBoolean(FILTER_STATE_NOT_STARTED, true);
         mListFilter.showStatePlaying = settings.getBoolean(FILTER_STATE_PLAYING, true);
         mListFilter.showStateCompleted = settings.getBoolean(FILTER_STATE_SOLVED, true);
+        mListFilter.showDifficultyEasy = settings.getBoolean(FILTER_DIFFICULTY_EASY, true);
+        mListFilter.showDifficultyMedium = settings.getBoolean(FILTER_DIFFICULTY_MEDIUM, true);
+        mListFilter.showDifficultyHard = settings.getBoolean(FILTER_DIFFICULTY_HARD, true);
+        mListFilter.showDifficultyExpert = settings.getBoolean(FILTER_DIFFICULTY_EXPERT, true);
 
         mListSorter = new SudokuListSorter(getApplicationContext());
         mListSorter.setSortType(settings.getInt(SORT_TYPE, SudokuListSorter.SORT_BY_CREATED));
@@ -155,6 +168,14 @@ public class SudokuListActivity extends ThemedActivity {
         mListView.setAdapter(mAdapter);
         mListView.setOnItemClickListener((parent, view, position, id) -> playSudoku(id));
         registerForContextMenu(mListView);
+
+        // puzzles added since the folder was shown last time are rated in the background,
+        // list has to be refreshed so they are sorted and filtered correctly
+        mDifficultyRatingLoader.rateFolderAsync(mFolderID, ratedCount -> {
+            if (ratedCount > 0) {
+                updateList();
+            }
+        });
     }
 
     @Override
@@ -163,6 +184,7 @@ public class SudokuListActivity extends ThemedActivity {
 
         mDatabase.close();
         mFolderDetailLoader.destroy();
+        mDifficultyRatingLoader.destroy();
     }
 
     @Override
@@ -218,6 +240,8 @@ public class SudokuListActivity extends ThemedActivity {
                 .setIcon(R.drawable.ic_add);
         menu.add(0, MENU_ITEM_FILTER, 2, R.string.filter).setShortcut('2', 'f')
                 .setIcon(R.drawable.ic_view);
+        menu.add(0, MENU_ITEM_FILTER_DIFFICULTY, 2, R.string.filter_by_difficulty)
+                .setIcon(R.drawable.ic_view);
         menu.add(0, MENU_ITEM_SORT, 2, R.string.sort).setShortcut('2', 'o')
                 .setIcon(R.drawable.ic_sort);
         menu.add(0, MENU_ITEM_RESET_ALL, 3, R.string.reset_all_puzzles).setShortcut('3','r')
@@ -272,8 +296,10 @@ public class SudokuListActivity extends ThemedActivity {
                         .setView(noteView)
                         .setPositiveButton(R.string.save, (dialog, whichButton) -> {
                             SudokuGame game = mDatabase.getSudoku(mEditNotePuzzleID);
-                            game.setNote(mEditNoteInput.getText().toString());
-                            mDatabase.updateSudoku(game);
+                            if (game != null) {
+                                game.setNote(mEditNoteInput.getText().toString());
+                                mDatabase.updateSudoku(game);
+                            }
                             updateList();
                         })
                         .setNegativeButton(android.R.string.cancel, null).create();
@@ -327,6 +353,45 @@ public class SudokuListActivity extends ThemedActivity {
                             // User clicked No, so do some stuff
                         })
                         .create();
+            case DIALOG_FILTER_DIFFICULTY:
+                return new AlertDialog.Builder(this)
+                        .setIcon(R.drawable.ic_view)
+                        .setTitle(R.string.filter_by_difficulty)
+                        .setMultiChoiceItems(
+                                R.array.difficulty_levels,
+                                new boolean[]{
+                                        mListFilter.showDifficultyEasy,
+                                        mListFilter.showDifficultyMedium,
+                                        mListFilter.showDifficultyHard,
+                                        mListFilter.showDifficultyExpert,
+                                },
+                                (dialog, whichButton, isChecked) -> {
+                                    switch (whichButton) {
+                                        case LogicalSolver.LEVEL_EASY:
+                                            mListFilter.showDifficultyEasy = isChecked;
+                                            break;
+                                        case LogicalSolver.LEVEL_MEDIUM:
+                                            mListFilter.showDifficultyMedium = isChecked;
+                                            break;
+                                        case LogicalSolver.LEVEL_HARD:
+                                            mListFilter.showDifficultyHard = isChecked;
+                                            break;
+                                        case LogicalSolver.LEVEL_EXPERT:
+                                            mListFilter.showDifficultyExpert = isChecked;
+                                            break;
+                                    }
+                                })
+                        .setPositiveButton(android.R.string.ok, (dialog, whichButton) -> {
+                            settings.edit()
+                                    .putBoolean(FILTER_DIFFICULTY_EASY, mListFilter.showDifficultyEasy)
+                                    .putBoolean(FILTER_DIFFICULTY_MEDIUM, mListFilter.showDifficultyMedium)
+                                    .putBoolean(FILTER_DIFFICULTY_HARD, mListFilter.showDifficultyHard)
+                                    .putBoolean(FILTER_DIFFICULTY_EXPERT, mListFilter.showDifficultyExpert)
+                                    .apply();
+                            updateList();
+                        })
+                        .setNegativeButton(android.R.string.cancel, null)
+                        .create();
             case DIALOG_SORT:
                 return new AlertDialog.Builder(this)
                         .setIcon(R.drawable.ic_sort)
@@ -359,7 +424,8 @@ public class SudokuListActivity extends ThemedActivity {
                         .setIcon(R.drawable.ic_restore)
                         .setTitle(R.string.reset_all_puzzles_confirm)
                         .setPositiveButton(android.R.string.yes, (dialog, whichButton) -> {
-                            List<SudokuGame> sudokuGames = mDatabase.getAllSudokuByFolder(mFolderID, mListSorter);
+                            // reset throws the command stacks away, they are not loaded at all
+                            List<SudokuGame> sudokuGames = mDatabase.getAllSudokuByFolder(mFolderID, mListSorter, false);
                             for (SudokuGame sudokuGame: sudokuGames) {
                                 sudokuGame.reset();
                                 mDatabase.updateSudoku(sudokuGame);
@@ -379,7 +445,7 @@ public class SudokuListActivity extends ThemedActivity {
         if (id == DIALOG_EDIT_NOTE) {
             SudokuDatabase db = new SudokuDatabase(getApplicationContext());
             SudokuGame game = db.getSudoku(mEditNotePuzzleID);
-            mEditNoteInput.setText(game.getNote());
+            mEditNoteInput.setText(game != null ? game.getNote() : null);
         }
     }
 
@@ -464,6 +530,9 @@ public class SudokuListActivity extends ThemedActivity {
             case MENU_ITEM_FILTER:
                 showDialog(DIALOG_FILTER);
                 return true;
+            case MENU_ITEM_FILTER_DIFFICULTY:
+                showDialog(DIALOG_FILTER_DIFFICULTY);
+                return true;
             case MENU_ITEM_SORT:
                 showDialog(DIALOG_SORT);
                 return true;
@@ -497,7 +566,7 @@ public class SudokuListActivity extends ThemedActivity {
 
     private void updateFilterStatus() {
 
-        if (mListFilter.showStateCompleted && mListFilter.showStateNotStarted && mListFilter.showStatePlaying) {
+        if (mListFilter.showsAllStates() && mListFilter.showsAllDifficulties()) {
             mFilterStatus.setVisibility(View.GONE);
         } else {
             mFilterStatus.setText(getString(R.string.filter_active, mListFilter));
@@ -542,19 +611,18 @@ public class SudokuListActivity extends ThemedActivity {
 
             switch (view.getId()) {
                 case R.id.sudoku_board:
-                    String data = c.getString(columnIndex);
-                    // TODO: still can be faster, I don't have to call initCollection and read notes
-                    CellCollection cells = null;
-                    try {
-                        cells = CellCollection.deserialize(data);
-                    } catch (Exception e) {
+                    SudokuBoardView board = (SudokuBoardView) view;
+                    // preview of the recycled view is reused, no cells are created
+                    PuzzlePreview preview = board.getPreview();
+                    if (preview == null) {
+                        preview = new PuzzlePreview();
+                    }
+                    if (!SudokuDatabase.getPreview(c, columnIndex, preview)) {
                         long id = c.getLong(c.getColumnIndex(SudokuColumns._ID));
-                        Log.e(TAG, String.format("Exception occurred when deserializing puzzle with id %s.", id), e);
+                        Log.e(TAG, String.format("Puzzle with id %s could not be deserialized.", id));
                     }
-                    SudokuBoardView board = (SudokuBoardView) view;
-                    board.setReadOnly(true);
                     board.setFocusable(false);
-                    ((SudokuBoardView) view).setCells(cells);
+                    board.setPreview(preview);
                     ThemeUtils.applyThemeToSudokuBoardViewFromContext(
                             ThemeUtils.getCurrentThemeFromPreferences(mContext),
                             board,
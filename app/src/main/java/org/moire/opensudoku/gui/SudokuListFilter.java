@@ -23,6 +23,7 @@ package org.moire.opensudoku.gui;
 import android.content.Context;
 
 import org.moire.opensudoku.R;
+import org.moire.opensudoku.game.LogicalSolver;
 import org.moire.opensudoku.utils.StringUtils;
 
 import java.util.ArrayList;
@@ -33,6 +34,10 @@ public class SudokuListFilter {
     public boolean showStateNotStarted = true;
     public boolean showStatePlaying = true;
     public boolean showStateCompleted = true;
+    public boolean showDifficultyEasy = true;
+    public boolean showDifficultyMedium = true;
+    public boolean showDifficultyHard = true;
+    public boolean showDifficultyExpert = true;
     private Context mContext;
 
     public SudokuListFilter(Context context) {
@@ -51,6 +56,48 @@ public class SudokuListFilter {
         if (showStateCompleted) {
             visibleStates.add(mContext.getString(R.string.solved));
         }
+        if (!showsAllDifficulties()) {
+            if (showDifficultyEasy) {
+                visibleStates.add(mContext.getString(R.string.game_level_easy));
+            }
+            if (showDifficultyMedium) {
+                visibleStates.add(mContext.getString(R.string.game_level_medium));
+            }
+            if (showDifficultyHard) {
+                visibleStates.add(mContext.getString(R.string.game_level_hard));
+            }
+            if (showDifficultyExpert) {
+                visibleStates.add(mContext.getString(R.string.game_level_expert));
+            }
+        }
         return StringUtils.join(visibleStates, ",");
     }
+
+    public boolean showsAllStates() {
+        return showStateNotStarted && showStatePlaying && showStateCompleted;
+    }
+
+    public boolean showsAllDifficulties() {
+        return showDifficultyEasy && showDifficultyMedium && showDifficultyHard && showDifficultyExpert;
+    }
+
+    /**
+     * Returns whether puzzles of given difficulty level are shown, puzzles which are not
+     * rated yet are always shown.
+     *
+     * @param level One of <code>LogicalSolver.LEVEL_*</code> constants.
+     */
+    public boolean showsDifficultyLevel(int level) {
+        switch (level) {
+            case LogicalSolver.LEVEL_EASY:
+                return showDifficultyEasy;
+            case LogicalSolver.LEVEL_MEDIUM:
+                return showDifficultyMedium;
+            case LogicalSolver.LEVEL_HARD:
+                return showDifficultyHard;
+            case LogicalSolver.LEVEL_EXPERT:
+                return showDifficultyExpert;
+        }
+        return true;
+    }
 }
@@ -9,8 +9,9 @@ public class SudokuListSorter {
     public static final int SORT_BY_CREATED = 0;
     public static final int SORT_BY_TIME = 1;
     public static final int SORT_BY_LAST_PLAYED = 2;
+    public static final int SORT_BY_DIFFICULTY = 3;
 
-    private static final int SORT_TYPE_OPTIONS_LENGTH = 3;
+    private static final int SORT_TYPE_OPTIONS_LENGTH = 4;
 
     private Context context;
     private int sortType;
@@ -53,6 +54,8 @@ public class SudokuListSorter {
                 return SudokuColumns.TIME + order;
             case SORT_BY_LAST_PLAYED:
                 return SudokuColumns.LAST_PLAYED + order;
+            case SORT_BY_DIFFICULTY:
+                return SudokuColumns.DIFFICULTY + order;
         }
 
         return SudokuColumns.CREATED + order;
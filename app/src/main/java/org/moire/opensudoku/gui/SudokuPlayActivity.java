@@ -34,6 +34,7 @@ import android.view.ViewGroup;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.preference.PreferenceManager;
@@ -41,7 +42,10 @@ import androidx.preference.PreferenceManager;
 import org.moire.opensudoku.R;
 import org.moire.opensudoku.db.SudokuDatabase;
 import org.moire.opensudoku.game.Cell;
+import org.moire.opensudoku.game.CellCollection;
+import org.moire.opensudoku.game.LogicalStep;
 import org.moire.opensudoku.game.SudokuGame;
+import org.moire.opensudoku.game.SolverResult;
 import org.moire.opensudoku.game.SudokuGame.OnPuzzleSolvedListener;
 import org.moire.opensudoku.gui.inputmethod.IMControlPanel;
 import org.moire.opensudoku.gui.inputmethod.IMControlPanelStatePersister;
@@ -69,6 +73,7 @@ public class SudokuPlayActivity extends ThemedActivity {
     public static final int MENU_ITEM_UNDO_TO_BEFORE_MISTAKE = Menu.FIRST + 11;
     public static final int MENU_ITEM_SOLVE = Menu.FIRST + 12;
     public static final int MENU_ITEM_HINT = Menu.FIRST + 13;
+    public static final int MENU_ITEM_NEXT_STEP = Menu.FIRST + 14;
 
     private static final int DIALOG_RESTART = 1;
     private static final int DIALOG_WELL_DONE = 2;
@@ -80,6 +85,7 @@ public class SudokuPlayActivity extends ThemedActivity {
     private static final int DIALOG_PUZZLE_NOT_SOLVED = 8;
     private static final int DIALOG_HINT = 9;
     private static final int DIALOG_CANNOT_GIVE_HINT = 10;
+    private static final int DIALOG_SOLVER_BUDGET_EXCEEDED = 11;
 
     private static final int REQUEST_SETTINGS = 1;
 
@@ -107,6 +113,7 @@ public class SudokuPlayActivity extends ThemedActivity {
     private boolean mFillInNotesEnabled = false;
 
     private HintsQueue mHintsQueue;
+    private BackgroundSolver mBackgroundSolver;
     /**
      * Occurs when puzzle is solved.
      */
@@ -168,6 +175,7 @@ public class SudokuPlayActivity extends ThemedActivity {
         mDatabase = new SudokuDatabase(getApplicationContext());
         mHintsQueue = new HintsQueue(this);
         mGameTimer = new GameTimer();
+        mBackgroundSolver = new BackgroundSolver();
 
         mGuiHandler = new Handler();
 
@@ -176,10 +184,15 @@ public class SudokuPlayActivity extends ThemedActivity {
             // activity runs for the first time, read game from database
             long mSudokuGameID = getIntent().getLongExtra(EXTRA_SUDOKU_ID, 0);
             mSudokuGame = mDatabase.getSudoku(mSudokuGameID);
+            if (mSudokuGame == null) {
+                Toast.makeText(this, R.string.puzzle_not_readable, Toast.LENGTH_LONG).show();
+                finish();
+                return;
+            }
         } else {
             // activity has been running before, restore its state
             mSudokuGame = new SudokuGame();
-            mSudokuGame.restoreState(savedInstanceState);
+            mSudokuGame.restoreState(savedInstanceState, mDatabase::loadCommands);
             mGameTimer.restoreState(savedInstanceState);
         }
 
@@ -238,6 +251,8 @@ public class SudokuPlayActivity extends ThemedActivity {
         }
 
         mSudokuBoard.setHighlightWrongVals(gameSettings.getBoolean("highlight_wrong_values", true));
+        mSudokuBoard.setHighlightMistakes(gameSettings.getBoolean("highlight_mistakes", false));
+        findSolution();
         mSudokuBoard.setHighlightTouchedCell(gameSettings.getBoolean("highlight_touched_cell", true));
 
         boolean highlightSimilarCells = gameSettings.getBoolean("highlight_similar_cells", true);
@@ -307,6 +322,9 @@ public class SudokuPlayActivity extends ThemedActivity {
     protected void onPause() {
         super.onPause();
 
+        // results of the running search would be applied to the game after it is saved
+        mBackgroundSolver.cancel();
+
         // we will save game to the database as we might not be able to get back
         mDatabase.updateSudoku(mSudokuGame);
 
@@ -319,6 +337,7 @@ public class SudokuPlayActivity extends ThemedActivity {
     protected void onDestroy() {
         super.onDestroy();
 
+        mBackgroundSolver.destroy();
         mDatabase.close();
     }
 
@@ -367,6 +386,7 @@ public class SudokuPlayActivity extends ThemedActivity {
         menu.add(0, MENU_ITEM_UNDO_TO_BEFORE_MISTAKE, 4, getString(R.string.undo_to_before_mistake));
 
         menu.add(0, MENU_ITEM_HINT, 5, R.string.solver_hint);
+        menu.add(0, MENU_ITEM_NEXT_STEP, 5, R.string.next_step);
         menu.add(0, MENU_ITEM_SOLVE, 6, R.string.solve_puzzle);
 
         menu.add(0, MENU_ITEM_RESTART, 7, R.string.restart)
@@ -422,6 +442,7 @@ public class SudokuPlayActivity extends ThemedActivity {
             menu.findItem(MENU_ITEM_UNDO_TO_BEFORE_MISTAKE).setEnabled(false);
             menu.findItem(MENU_ITEM_SOLVE).setEnabled(false);
             menu.findItem(MENU_ITEM_HINT).setEnabled(false);
+            menu.findItem(MENU_ITEM_NEXT_STEP).setEnabled(false);
         }
 
         return true;
@@ -476,6 +497,10 @@ public class SudokuPlayActivity extends ThemedActivity {
             case MENU_ITEM_HINT:
                 showDialog(DIALOG_HINT);
                 return true;
+            case MENU_ITEM_NEXT_STEP:
+                // solution is needed to leave mistakes out of the step
+                runWithSolution(this::showNextStep);
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -524,6 +549,8 @@ public class SudokuPlayActivity extends ThemedActivity {
                             menuItemSolve.setEnabled(true);
                             MenuItem menuItemHint = mOptionsMenu.findItem(MENU_ITEM_HINT);
                             menuItemHint.setEnabled(true);
+                            MenuItem menuItemNextStep = mOptionsMenu.findItem(MENU_ITEM_NEXT_STEP);
+                            menuItemNextStep.setEnabled(true);
                             MenuItem menuItemUndoAction = mOptionsMenu.findItem(MENU_ITEM_UNDO_ACTION);
                             menuItemUndoAction.setEnabled(true);
                         })
@@ -553,23 +580,19 @@ public class SudokuPlayActivity extends ThemedActivity {
                         .setIcon(R.drawable.ic_undo)
                         .setTitle(R.string.app_name)
                         .setMessage(getString(R.string.undo_to_before_mistake_confirm))
-                        .setPositiveButton(android.R.string.yes, (dialog, whichButton) -> {
-                            mSudokuGame.undoToBeforeMistake();
-                            selectLastChangedCell();
-                        })
+                        .setPositiveButton(android.R.string.yes, (dialog, whichButton) ->
+                                runWithSolution(() -> {
+                                    mSudokuGame.undoToBeforeMistake();
+                                    selectLastChangedCell();
+                                }))
                         .setNegativeButton(android.R.string.no, null)
                         .create();
             case DIALOG_SOLVE_PUZZLE:
                 return new AlertDialog.Builder(this)
                         .setTitle(R.string.app_name)
                         .setMessage(R.string.solve_puzzle_confirm)
-                        .setPositiveButton(android.R.string.yes, (dialog, whichButton) -> {
-                            if (mSudokuGame.isSolvable()) {
-                                mSudokuGame.solve();
-                            } else {
-                                showDialog(DIALOG_PUZZLE_NOT_SOLVED);
-                            }
-                        })
+                        .setPositiveButton(android.R.string.yes, (dialog, whichButton) ->
+                                runWithSolution(() -> mSudokuGame.solve()))
                         .setNegativeButton(android.R.string.no, null)
                         .create();
             case DIALOG_USED_SOLVER:
@@ -591,11 +614,7 @@ public class SudokuPlayActivity extends ThemedActivity {
                         .setPositiveButton(android.R.string.yes, (dialog, whichButton) -> {
                             Cell cell = mSudokuBoard.getSelectedCell();
                             if (cell != null && cell.isEditable()) {
-                                if (mSudokuGame.isSolvable()) {
-                                    mSudokuGame.solveCell(cell);
-                                } else {
-                                    showDialog(DIALOG_PUZZLE_NOT_SOLVED);
-                                }
+                                runWithSolution(() -> mSudokuGame.solveCell(cell));
                             } else {
                                 showDialog(DIALOG_CANNOT_GIVE_HINT);
                             }
@@ -608,10 +627,115 @@ public class SudokuPlayActivity extends ThemedActivity {
                         .setMessage(R.string.cannot_give_hint)
                         .setPositiveButton(android.R.string.ok, null)
                         .create();
+            case DIALOG_SOLVER_BUDGET_EXCEEDED:
+                return new AlertDialog.Builder(this)
+                        .setTitle(R.string.app_name)
+                        .setMessage(R.string.solver_budget_exceeded)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .create();
         }
         return null;
     }
 
+    /**
+     * Finds solution of the puzzle on background thread, if it is not known yet. Mistakes
+     * can be highlighted and hints given without running the solver afterwards.
+     */
+    private void findSolution() {
+        if (mSudokuGame.hasSolution() || mSudokuGame.getState() == SudokuGame.GAME_STATE_COMPLETED) {
+            return;
+        }
+
+        mBackgroundSolver.solveAsync(mSudokuGame.getCells(), result -> {
+            if (result.isSolved() && !mSudokuGame.hasSolution()) {
+                mSudokuGame.setSolution(result);
+                mSudokuBoard.postInvalidate();
+            }
+        });
+    }
+
+    /**
+     * Runs action once the solution of the puzzle is known. If it was not found yet, solver
+     * is run on background thread first.
+     */
+    private void runWithSolution(Runnable action) {
+        if (mSudokuGame.hasSolution()) {
+            action.run();
+            return;
+        }
+
+        mBackgroundSolver.solveAsync(mSudokuGame.getCells(), result -> {
+            if (result.isSolved()) {
+                mSudokuGame.setSolution(result);
+                action.run();
+            } else if (result.getStatus() == SolverResult.STATUS_BUDGET_EXCEEDED) {
+                showDialog(DIALOG_SOLVER_BUDGET_EXCEEDED);
+            } else {
+                showDialog(DIALOG_PUZZLE_NOT_SOLVED);
+            }
+        });
+    }
+
+    /**
+     * Explains the next logical step and selects the cell it is about. Value of the cell
+     * is not filled in, player has to do it.
+     */
+    private void showNextStep() {
+        LogicalStep step = mSudokuGame.getNextStep();
+        if (step == null) {
+            new AlertDialog.Builder(this)
+                    .setTitle(R.string.next_step)
+                    .setMessage(R.string.next_step_not_found)
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+            return;
+        }
+
+        String technique = getResources().getStringArray(R.array.technique_names)[step.getTechnique()];
+        String pattern = formatCells(step.getPatternCells());
+        String message;
+        int cell;
+        if (step.isPlacement()) {
+            cell = step.getCell();
+            message = getString(R.string.next_step_place, technique, pattern, step.getValue(),
+                    formatCell(cell));
+        } else {
+            StringBuilder notes = new StringBuilder();
+            for (int i = 0; i < step.getEliminationCount(); i++) {
+                if (i > 0) {
+                    notes.append(", ");
+                }
+                notes.append(getString(R.string.next_step_note, step.getEliminatedValue(i),
+                        formatCell(step.getEliminatedCell(i))));
+            }
+            cell = step.getEliminatedCell(0);
+            message = getString(R.string.next_step_eliminate, technique, pattern, notes);
+        }
+
+        mSudokuBoard.moveCellSelectionTo(cell / CellCollection.SUDOKU_SIZE, cell % CellCollection.SUDOKU_SIZE);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.next_step)
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private String formatCells(int[] cells) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(formatCell(cells[i]));
+        }
+        return text.toString();
+    }
+
+    private String formatCell(int cell) {
+        return getString(R.string.cell_position, cell / CellCollection.SUDOKU_SIZE + 1,
+                cell % CellCollection.SUDOKU_SIZE + 1);
+    }
+
     private void selectLastChangedCell() {
         Cell cell = mSudokuGame.getLastChangedCell();
         if (cell != null)
@@ -9,6 +9,7 @@ import android.util.Xml;
 
 import org.moire.opensudoku.db.SudokuColumns;
 import org.moire.opensudoku.db.SudokuDatabase;
+import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.utils.Const;
 import org.xmlpull.v1.XmlSerializer;
 
@@ -112,16 +113,19 @@ public class FileExportTask extends AsyncTask<FileExportTaskParams, Integer, Voi
                     attribute(serializer, "created", cursor, "folder_created");
                 }
 
-                String data = cursor.getString(cursor.getColumnIndex(SudokuColumns.DATA));
-                if (data != null) {
+                CellCollection cells = SudokuDatabase.getCells(cursor, cursor.getColumnIndex(SudokuColumns.DATA));
+                if (cells != null) {
                     serializer.startTag("", "game");
                     attribute(serializer, "created", cursor, SudokuColumns.CREATED);
                     attribute(serializer, "state", cursor, SudokuColumns.STATE);
                     attribute(serializer, "time", cursor, SudokuColumns.TIME);
                     attribute(serializer, "last_played", cursor, SudokuColumns.LAST_PLAYED);
-                    attribute(serializer, "data", cursor, SudokuColumns.DATA);
+                    serializer.attribute("", "data", cells.serialize());
                     attribute(serializer, "note", cursor, SudokuColumns.PUZZLE_NOTE);
-                    attribute(serializer, "command_stack", cursor, SudokuColumns.COMMAND_STACK);
+                    String commandStack = database.exportCommands(cursor.getLong(cursor.getColumnIndex("sudoku_id")));
+                    if (commandStack != null) {
+                        serializer.attribute("", "command_stack", commandStack);
+                    }
                     serializer.endTag("", "game");
                 }
             }
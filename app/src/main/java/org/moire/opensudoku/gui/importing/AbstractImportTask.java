@@ -43,7 +43,10 @@ public abstract class AbstractImportTask extends
     private FolderInfo mFolder; // currently processed folder
     private int mFolderCount; // count of processed folders
     private int mGameCount; //count of processed puzzles
+    private boolean mSkipDuplicates;
+    private int mDuplicateCount; // count of puzzles not imported as duplicates
     private String mImportError;
+    private String mImportWarning; // shown together with the result of successful import
     private boolean mImportSuccessful;
     private SudokuImportParams mImportParams = new SudokuImportParams();
 
@@ -56,6 +59,15 @@ public abstract class AbstractImportTask extends
         mOnImportFinishedListener = listener;
     }
 
+    /**
+     * Sets whether puzzles which are already in any folder (up to relabelling of digits,
+     * permutations of rows and columns and transposition) should be skipped. By default
+     * all the puzzles are imported, so that state of the games is not lost.
+     */
+    public void setSkipDuplicates(boolean skipDuplicates) {
+        mSkipDuplicates = skipDuplicates;
+    }
+
     @Override
     protected Boolean doInBackground(Void... params) {
 
@@ -81,12 +93,21 @@ public abstract class AbstractImportTask extends
     protected void onPostExecute(Boolean result) {
         if (result) {
 
+            String message = null;
             if (mFolderCount == 1) {
-                Toast.makeText(mContext, mContext.getString(R.string.puzzles_saved, mFolder.name),
-                        Toast.LENGTH_LONG).show();
+                message = mContext.getString(R.string.puzzles_saved, mFolder.name);
             } else if (mFolderCount > 1) {
-                Toast.makeText(mContext, mContext.getString(R.string.folders_created, mFolderCount),
-                        Toast.LENGTH_LONG).show();
+                message = mContext.getString(R.string.folders_created, mFolderCount);
+            }
+            if (mDuplicateCount > 0) {
+                String duplicates = mContext.getString(R.string.duplicates_skipped, mDuplicateCount);
+                message = message == null ? duplicates : message + "\n" + duplicates;
+            }
+            if (mImportWarning != null) {
+                message = message == null ? mImportWarning : message + "\n" + mImportWarning;
+            }
+            if (message != null) {
+                Toast.makeText(mContext, message, Toast.LENGTH_LONG).show();
             }
 
         } else {
@@ -109,6 +130,10 @@ public abstract class AbstractImportTask extends
 
         mDatabase = new SudokuDatabase(mContext);
         try {
+            if (mSkipDuplicates) {
+                // puzzles without fingerprint would not be recognized as duplicates
+                mDatabase.updateFingerprints();
+            }
             mDatabase.beginTransaction();
 
             // let subclass handle the import
@@ -207,13 +232,34 @@ public abstract class AbstractImportTask extends
      *
      * @param game Fields to import (state of game, created, etc.)
      * @param data Data to import.
+     * @return False if the game was skipped as duplicate.
      */
-    protected void importGame(SudokuImportParams pars) throws SudokuInvalidFormatException {
+    protected boolean importGame(SudokuImportParams pars) throws SudokuInvalidFormatException {
         if (mDatabase == null) {
             throw new IllegalStateException("Database is not opened.");
         }
 
-        mDatabase.importSudoku(mFolder.id, pars);
+        if (mDatabase.importSudoku(mFolder.id, pars, mSkipDuplicates) == -1) {
+            mDuplicateCount++;
+            return false;
+        } else {
+            mGameCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Commits puzzles imported so far and starts a new transaction, so that long running
+     * import does not keep all the puzzles in one transaction.
+     */
+    protected void commitImport() {
+        if (mDatabase == null) {
+            throw new IllegalStateException("Database is not opened.");
+        }
+
+        mDatabase.setTransactionSuccessful();
+        mDatabase.endTransaction();
+        mDatabase.beginTransaction();
     }
 
     protected void setError(String error) {
@@ -221,6 +267,13 @@ public abstract class AbstractImportTask extends
         mImportSuccessful = false;
     }
 
+    /**
+     * Sets message shown after the import, which does not make the import fail.
+     */
+    protected void setWarning(String warning) {
+        mImportWarning = warning;
+    }
+
     public interface OnImportFinishedListener {
         /**
          * Occurs when import is finished.
@@ -0,0 +1,81 @@
+package org.moire.opensudoku.gui.importing;
+
+import org.moire.opensudoku.R;
+import org.moire.opensudoku.db.SudokuImportParams;
+import org.moire.opensudoku.db.SudokuInvalidFormatException;
+import org.moire.opensudoku.game.LogicalSolver;
+import org.moire.opensudoku.game.PuzzleGenerator;
+
+/**
+ * Generates new puzzles and stores them into new folder. Puzzles are stored with their
+ * difficulty, so they do not need to be rated again. Generating stops when the task
+ * is cancelled or no new puzzle is found for a long time, puzzles generated so far are kept.
+ */
+public class GenerateImportTask extends AbstractImportTask {
+
+    // Number of puzzles stored in one transaction.
+    private static final int BATCH_SIZE = 100;
+    // Longest time to wait for the next puzzle, hard levels may take very long on slow devices.
+    private static final long PUZZLE_TIME_LIMIT = 2 * 60 * 1000;
+
+    private final int mCount;
+    private final int mLevel;
+    private final int mSymmetry;
+    private final PuzzleGenerator mGenerator = new PuzzleGenerator();
+    private final SudokuImportParams mParams = new SudokuImportParams();
+    private int mImported;
+
+    /**
+     * @param count    Number of puzzles to generate.
+     * @param level    Difficulty level, one of <code>LogicalSolver.LEVEL_*</code> constants.
+     * @param symmetry One of <code>PuzzleGenerator.SYMMETRY_*</code> constants.
+     */
+    public GenerateImportTask(int count, int level, int symmetry) {
+        mCount = count;
+        mLevel = level;
+        mSymmetry = symmetry;
+    }
+
+    @Override
+    protected void processImport() throws SudokuInvalidFormatException {
+        String levelName = mContext.getResources().getStringArray(R.array.difficulty_levels)[mLevel];
+        importFolder(mContext.getString(R.string.generated_folder_name, levelName));
+
+        mImported = 0;
+        mGenerator.generate(mCount, mSymmetry,
+                LogicalSolver.getLevelMinDifficulty(mLevel),
+                LogicalSolver.getLevelMaxDifficulty(mLevel),
+                PUZZLE_TIME_LIMIT, this::onPuzzleGenerated);
+        if (mGenerator.isTimeLimitReached()) {
+            setWarning(mContext.getString(R.string.generate_time_limit_reached, mImported, mCount));
+        }
+    }
+
+    private boolean onPuzzleGenerated(String data, int difficulty) {
+        // cancel(true) interrupts the generator, cancel(false) is checked here
+        if (isCancelled()) {
+            mGenerator.cancel();
+        }
+
+        mParams.clear();
+        mParams.data = data;
+        mParams.difficulty = difficulty;
+        try {
+            if (!importGame(mParams)) {
+                // duplicates do not count, so the folder gets the requested number of puzzles
+                return false;
+            }
+        } catch (SudokuInvalidFormatException e) {
+            // generator always creates valid data
+            throw new IllegalStateException(e);
+        }
+
+        mImported++;
+        if (mImported % BATCH_SIZE == 0) {
+            commitImport();
+        }
+        publishProgress(mImported, mCount);
+        return true;
+    }
+
+}
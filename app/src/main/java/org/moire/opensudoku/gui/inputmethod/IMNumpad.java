@@ -29,6 +29,7 @@ import android.widget.ImageButton;
 
 import org.moire.opensudoku.R;
 import org.moire.opensudoku.game.Cell;
+import org.moire.opensudoku.game.CellChanges;
 import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.game.CellCollection.OnChangeListener;
 import org.moire.opensudoku.game.CellNote;
@@ -39,7 +40,6 @@ import org.moire.opensudoku.gui.inputmethod.IMControlPanelStatePersister.StateBu
 import org.moire.opensudoku.utils.ThemeUtils;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class IMNumpad extends InputMethod {
@@ -85,8 +85,8 @@ public class IMNumpad extends InputMethod {
         }
 
     };
-    private OnChangeListener mOnCellsChangeListener = () -> {
-        if (mActive) {
+    private OnChangeListener mOnCellsChangeListener = changes -> {
+        if (mActive && (changes.getChanges() & (CellChanges.CHANGE_VALUE | CellChanges.CHANGE_NOTE)) != 0) {
             update();
         }
     };
@@ -214,10 +214,9 @@ public class IMNumpad extends InputMethod {
                 }
             }
         } else {
-            CellNote note = mSelectedCell == null ? new CellNote() : mSelectedCell.getNote();
-            List<Integer> notedNumbers = note.getNotedNumbers();
+            CellNote note = mSelectedCell == null ? CellNote.EMPTY : mSelectedCell.getNote();
             for (Button b : mNumberButtons.values()) {
-                if (notedNumbers.contains(b.getTag())) {
+                if (note.hasNumber((Integer) b.getTag())) {
                     ThemeUtils.applyIMButtonStateToView(b, ThemeUtils.IMButtonStyle.ACCENT);
                 } else {
                     ThemeUtils.applyIMButtonStateToView(b, ThemeUtils.IMButtonStyle.DEFAULT);
@@ -225,26 +224,19 @@ public class IMNumpad extends InputMethod {
             }
         }
 
-        Map<Integer, Integer> valuesUseCount = null;
-        if (mHighlightCompletedValues || mShowNumberTotals)
-            valuesUseCount = mGame.getCells().getValuesUseCount();
-
+        CellCollection cells = mGame.getCells();
         if (mHighlightCompletedValues && mEditMode == MODE_EDIT_VALUE) {
             int selectedNumber = mSelectedCell == null ? 0 : mSelectedCell.getValue();
-            for (Map.Entry<Integer, Integer> entry : valuesUseCount.entrySet()) {
-                boolean highlightValue = entry.getValue() >= CellCollection.SUDOKU_SIZE;
-                boolean selected = entry.getKey() == selectedNumber;
-                Button b = mNumberButtons.get(entry.getKey());
-                if (highlightValue && !selected) {
-                    ThemeUtils.applyIMButtonStateToView(b, ThemeUtils.IMButtonStyle.ACCENT_HIGHCONTRAST);
+            for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+                if (cells.isValueCompleted(value) && value != selectedNumber) {
+                    ThemeUtils.applyIMButtonStateToView(mNumberButtons.get(value), ThemeUtils.IMButtonStyle.ACCENT_HIGHCONTRAST);
                 }
             }
         }
 
         if (mShowNumberTotals) {
-            for (Map.Entry<Integer, Integer> entry : valuesUseCount.entrySet()) {
-                Button b = mNumberButtons.get(entry.getKey());
-                b.setText(entry.getKey() + " (" + entry.getValue() + ")");
+            for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+                mNumberButtons.get(value).setText(value + " (" + cells.getValueUseCount(value) + ")");
             }
         }
     }
@@ -32,8 +32,6 @@ import org.moire.opensudoku.game.CellNote;
 import org.moire.opensudoku.gui.inputmethod.IMPopupDialog.OnNoteEditListener;
 import org.moire.opensudoku.gui.inputmethod.IMPopupDialog.OnNumberEditListener;
 
-import java.util.Map;
-
 public class IMPopup extends InputMethod {
 
     private boolean mHighlightCompletedValues = true;
@@ -123,21 +121,18 @@ public class IMPopup extends InputMethod {
             mEditCellDialog.updateNumber(cell.getValue());
             mEditCellDialog.updateNote(cell.getNote().getNotedNumbers());
 
-            Map<Integer, Integer> valuesUseCount = null;
-            if (mHighlightCompletedValues || mShowNumberTotals)
-                valuesUseCount = mGame.getCells().getValuesUseCount();
-
+            CellCollection cells = mGame.getCells();
             if (mHighlightCompletedValues) {
-                for (Map.Entry<Integer, Integer> entry : valuesUseCount.entrySet()) {
-                    if (entry.getValue() >= CellCollection.SUDOKU_SIZE) {
-                        mEditCellDialog.highlightNumber(entry.getKey());
+                for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+                    if (cells.isValueCompleted(value)) {
+                        mEditCellDialog.highlightNumber(value);
                     }
                 }
             }
 
             if (mShowNumberTotals) {
-                for (Map.Entry<Integer, Integer> entry : valuesUseCount.entrySet()) {
-                    mEditCellDialog.setValueCount(entry.getKey(), entry.getValue());
+                for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+                    mEditCellDialog.setValueCount(value, cells.getValueUseCount(value));
                 }
             }
             mEditCellDialog.show();
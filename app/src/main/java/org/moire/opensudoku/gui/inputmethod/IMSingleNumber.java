@@ -30,6 +30,7 @@ import android.widget.ImageButton;
 
 import org.moire.opensudoku.R;
 import org.moire.opensudoku.game.Cell;
+import org.moire.opensudoku.game.CellChanges;
 import org.moire.opensudoku.game.CellCollection;
 import org.moire.opensudoku.game.CellCollection.OnChangeListener;
 import org.moire.opensudoku.game.CellNote;
@@ -78,8 +79,10 @@ public class IMSingleNumber extends InputMethod {
         onSelectedNumberChanged();
         update();
     };
-    private OnChangeListener mOnCellsChangeListener = () -> {
-        if (mActive) {
+    private OnChangeListener mOnCellsChangeListener = changes -> {
+        // panel shows just the use counts of the values and which values are completed
+        if (mActive && (mShowNumberTotals ? (changes.getChanges() & CellChanges.CHANGE_VALUE) != 0
+                : mHighlightCompletedValues && changes.isAnyValueCompletionChanged())) {
             update();
         }
     };
@@ -212,27 +215,22 @@ public class IMSingleNumber extends InputMethod {
                 }
             }
 
-            Map<Integer, Integer> valuesUseCount = null;
-            if (mHighlightCompletedValues || mShowNumberTotals)
-                valuesUseCount = mGame.getCells().getValuesUseCount();
-
+            CellCollection cells = mGame.getCells();
             if (mHighlightCompletedValues) {
-                for (Map.Entry<Integer, Integer> entry : valuesUseCount.entrySet()) {
-                    boolean highlightValue = entry.getValue() >= CellCollection.SUDOKU_SIZE;
-                    boolean selected = entry.getKey() == mSelectedNumber;
-                    if (highlightValue && !selected) {
-                        ThemeUtils.applyIMButtonStateToView(mNumberButtons.get(entry.getKey()), ThemeUtils.IMButtonStyle.ACCENT_HIGHCONTRAST);
+                for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+                    if (cells.isValueCompleted(value) && value != mSelectedNumber) {
+                        ThemeUtils.applyIMButtonStateToView(mNumberButtons.get(value), ThemeUtils.IMButtonStyle.ACCENT_HIGHCONTRAST);
                     }
                 }
             }
 
             if (mShowNumberTotals) {
-                for (Map.Entry<Integer, Integer> entry : valuesUseCount.entrySet()) {
-                    Button b = mNumberButtons.get(entry.getKey());
-                    if (!b.getTag().equals(mSelectedNumber))
-                        b.setText(entry.getKey() + " (" + entry.getValue() + ")");
+                for (int value = 1; value <= CellCollection.SUDOKU_SIZE; value++) {
+                    Button b = mNumberButtons.get(value);
+                    if (value != mSelectedNumber)
+                        b.setText(value + " (" + cells.getValueUseCount(value) + ")");
                     else
-                        b.setText("" + entry.getKey());
+                        b.setText("" + value);
                 }
             }
 
@@ -0,0 +1,107 @@
+package org.moire.opensudoku.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class CanonicalizerTest {
+
+    private static final int[][] PERMUTATIONS_OF_3 = {
+            {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    private final Canonicalizer mCanonicalizer = new Canonicalizer();
+    private final Random mRandom = new Random(1);
+
+    @Test
+    public void canonicalFormIsInvariantUnderSymmetries() {
+        for (String puzzle : SolverEngineTest.PUZZLES) {
+            int[] values = toValues(puzzle);
+            String canonical = mCanonicalizer.canonicalize(values);
+            for (int i = 0; i < 20; i++) {
+                assertEquals(puzzle, canonical, mCanonicalizer.canonicalize(transform(values)));
+            }
+        }
+    }
+
+    @Test
+    public void canonicalFormIsCanonical() {
+        for (String puzzle : SolverEngineTest.PUZZLES) {
+            String canonical = mCanonicalizer.canonicalize(toValues(puzzle));
+            assertEquals(canonical, mCanonicalizer.canonicalize(toValues(canonical)));
+            // digits are labelled in the order of their first occurrence
+            assertEquals(puzzle, '1', canonical.replace("0", "").charAt(0));
+        }
+    }
+
+    @Test
+    public void differentPuzzlesHaveDifferentFingerprints() {
+        for (int i = 0; i < SolverEngineTest.PUZZLES.length; i++) {
+            for (int j = i + 1; j < SolverEngineTest.PUZZLES.length; j++) {
+                assertNotEquals(
+                        mCanonicalizer.getFingerprint(CellCollection.fromString(SolverEngineTest.PUZZLES[i])),
+                        mCanonicalizer.getFingerprint(CellCollection.fromString(SolverEngineTest.PUZZLES[j])));
+            }
+        }
+    }
+
+    @Test
+    public void fingerprintIgnoresEnteredValues() {
+        String puzzle = SolverEngineTest.PUZZLES[0];
+        CellCollection cells = CellCollection.fromString(puzzle);
+        long fingerprint = mCanonicalizer.getFingerprint(cells);
+        cells.getCell(0, 0).setValue(3);
+        cells.getCell(8, 8).setValue(8);
+        assertEquals(fingerprint, mCanonicalizer.getFingerprint(cells));
+    }
+
+    private static int[] toValues(String puzzle) {
+        int[] values = new int[81];
+        for (int index = 0; index < 81; index++) {
+            values[index] = puzzle.charAt(index) - '0';
+        }
+        return values;
+    }
+
+    /**
+     * Returns puzzle with randomly permuted bands, rows, stacks, columns and digits,
+     * randomly transposed.
+     */
+    private int[] transform(int[] values) {
+        int[] rows = randomLinePermutation();
+        int[] columns = randomLinePermutation();
+        boolean transpose = mRandom.nextBoolean();
+        int[] digits = new int[10];
+        for (int digit = 1; digit <= 9; digit++) {
+            int j = mRandom.nextInt(digit) + 1;
+            digits[digit] = digits[j];
+            digits[j] = digit;
+        }
+
+        int[] result = new int[81];
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                int value = transpose
+                        ? values[columns[col] * 9 + rows[row]]
+                        : values[rows[row] * 9 + columns[col]];
+                result[row * 9 + col] = digits[value];
+            }
+        }
+        return result;
+    }
+
+    private int[] randomLinePermutation() {
+        int[] bands = PERMUTATIONS_OF_3[mRandom.nextInt(6)];
+        int[] lines = new int[9];
+        for (int band = 0; band < 3; band++) {
+            int[] inBand = PERMUTATIONS_OF_3[mRandom.nextInt(6)];
+            for (int i = 0; i < 3; i++) {
+                lines[band * 3 + i] = bands[band] * 3 + inBand[i];
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,169 @@
+package org.moire.opensudoku.game;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CellCollectionTest {
+
+    // grammar of the text formats as checked by regular expressions before CellCollectionParser
+    private static final Pattern[] REGEX_GRAMMAR = {
+            Pattern.compile("^\\d{81}$"),
+            Pattern.compile("^version: 1\\n(\\d\\|((\\d,)+|-)\\|[01]\\|){0,81}$"),
+            Pattern.compile("^version: 2\\n(\\d\\|(\\d){1,3}\\|{1,2}[01]\\|){0,81}$"),
+            Pattern.compile("^version: 3\\n(\\d\\|(\\d){1,3}\\|[01]\\|){0,81}$"),
+    };
+    private static final String MUTATION_CHARS = "0123456789|,-\nversion: x";
+
+    private final Random mRandom = new Random(1);
+
+    @Test
+    public void binaryFormatRoundTrip() {
+        for (int test = 0; test < 500; test++) {
+            CellCollection cells = createRandom(test % 4 + 1);
+            CellCollection copy = CellCollection.fromByteArray(cells.toByteArray());
+            assertEquals(cells.serialize(), copy.serialize());
+        }
+    }
+
+    @Test
+    public void binaryFormatRejectsDamagedData() {
+        byte[] data = createRandom(1).toByteArray();
+        assertRejected(Arrays.copyOf(data, data.length - 1));
+        assertRejected(Arrays.copyOf(data, data.length + 1));
+        assertRejected(Arrays.copyOf(data, 10));
+        data[0] = (byte) CellCollection.DATA_VERSION_3;
+        assertRejected(data);
+    }
+
+    @Test
+    public void parserAcceptsWhatRegexGrammarAccepts() {
+        for (int test = 0; test < 5000; test++) {
+            int version = test % REGEX_GRAMMAR.length;
+            String data = createText(version, test % 3 == 0 ? 81 : mRandom.nextInt(82));
+            if (test % 2 == 1) {
+                data = mutate(data);
+            }
+            for (int v = 0; v < REGEX_GRAMMAR.length; v++) {
+                assertEquals(data, REGEX_GRAMMAR[v].matcher(data).matches(),
+                        CellCollection.isValid(data, v));
+            }
+        }
+    }
+
+    @Test
+    public void parserReadsTheSameCellsAsLegacyCode() throws ParseException {
+        for (int test = 0; test < 1000; test++) {
+            int version = test % REGEX_GRAMMAR.length;
+            String data = createText(version, 81);
+            CellCollection legacy = version == CellCollection.DATA_VERSION_PLAIN
+                    ? CellCollection.fromString(data)
+                    : CellCollection.deserialize(new StringTokenizer(data.split("\n")[1], "|"), version);
+            assertEquals(legacy.serialize(), CellCollection.parse(data).serialize());
+        }
+    }
+
+    @Test
+    public void textFormatRoundTrip() throws ParseException {
+        for (int test = 0; test < 500; test++) {
+            CellCollection cells = createRandom(test % 4 + 1);
+            String data = cells.serialize();
+            assertEquals(data, CellCollection.parse(data).serialize());
+        }
+    }
+
+    @Test
+    public void parseReportsErrorOffset() {
+        try {
+            CellCollection.parse("version: 3\n1|0|1|2|x");
+            fail();
+        } catch (ParseException e) {
+            assertEquals(19, e.getErrorOffset());
+        }
+    }
+
+    private CellCollection createRandom(int notesDensity) {
+        CellCollection cells = CellCollection.createEmpty();
+        for (int index = 0; index < 81; index++) {
+            Cell cell = cells.getCell(index / 9, index % 9);
+            if (mRandom.nextInt(3) == 0) {
+                cell.setValue(mRandom.nextInt(10));
+            }
+            if (mRandom.nextInt(notesDensity) == 0) {
+                cell.setNote(CellNote.fromBitmask(mRandom.nextInt(512)));
+            }
+            cell.setEditable(mRandom.nextBoolean());
+        }
+        return cells;
+    }
+
+    private String createText(int version, int cellCount) {
+        StringBuilder data = new StringBuilder();
+        if (version == CellCollection.DATA_VERSION_PLAIN) {
+            for (int index = 0; index < 81; index++) {
+                data.append(mRandom.nextInt(10));
+            }
+            return data.toString();
+        }
+
+        data.append("version: ").append(version).append('\n');
+        for (int index = 0; index < cellCount; index++) {
+            data.append(mRandom.nextInt(10)).append('|');
+            if (version == CellCollection.DATA_VERSION_1) {
+                int count = mRandom.nextInt(4);
+                if (count == 0) {
+                    data.append('-');
+                }
+                for (int i = 0; i < count; i++) {
+                    data.append(mRandom.nextInt(10)).append(',');
+                }
+            } else {
+                data.append(mRandom.nextInt(512));
+            }
+            data.append('|');
+            if (version == CellCollection.DATA_VERSION_2 && mRandom.nextBoolean()) {
+                data.append('|');
+            }
+            data.append(mRandom.nextInt(2)).append('|');
+        }
+        return data.toString();
+    }
+
+    private String mutate(String data) {
+        StringBuilder result = new StringBuilder(data);
+        int pos = mRandom.nextInt(data.length() + 1);
+        char c = MUTATION_CHARS.charAt(mRandom.nextInt(MUTATION_CHARS.length()));
+        switch (mRandom.nextInt(3)) {
+            case 0:
+                result.insert(pos, c);
+                break;
+            case 1:
+                if (pos < data.length()) {
+                    result.deleteCharAt(pos);
+                }
+                break;
+            default:
+                if (pos < data.length()) {
+                    result.setCharAt(pos, c);
+                }
+                break;
+        }
+        return result.toString();
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            CellCollection.fromByteArray(data);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
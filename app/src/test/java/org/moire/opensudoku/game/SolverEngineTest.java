@@ -0,0 +1,120 @@
+package org.moire.opensudoku.game;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolverEngineTest {
+
+    static final String[] PUZZLES = {
+            "052006000160900004049803620400000800083201590001000002097305240200009056000100970",
+            "402000007000080420050302006090030050503060708070010060900406030015070000200000809",
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+            "100007090030020008009600500005300900010080002600004000300000010040000007007000300",
+    };
+
+    private static SolverEngine[] createEngines() {
+        return new SolverEngine[]{
+                new SudokuSolver(SudokuSolver.LINKS_NODES),
+                new SudokuSolver(SudokuSolver.LINKS_ARRAYS),
+                new BitmaskSolver(),
+        };
+    }
+
+    @Test
+    public void enginesFindTheSameValidSolution() {
+        for (String puzzle : PUZZLES) {
+            int[] expected = null;
+            for (SolverEngine engine : createEngines()) {
+                engine.setPuzzle(CellCollection.fromString(puzzle));
+                int[] solution = toGrid(puzzle, engine.solve());
+                assertSolves(puzzle, solution);
+                if (expected == null) {
+                    expected = solution;
+                } else {
+                    assertArrayEquals(puzzle, expected, solution);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void uniquePuzzlesHaveOneSolution() {
+        for (SolverEngine engine : createEngines()) {
+            for (String puzzle : PUZZLES) {
+                engine.setPuzzle(CellCollection.fromString(puzzle));
+                assertEquals(puzzle, 1, engine.countSolutions(2));
+            }
+        }
+    }
+
+    @Test
+    public void countingStopsAtLimit() {
+        for (SolverEngine engine : createEngines()) {
+            engine.setPuzzle(CellCollection.createEmpty());
+            assertEquals(2, engine.countSolutions(2));
+
+            // two clues removed from the unique puzzle
+            engine.setPuzzle(CellCollection.fromString(
+                    "000006000160900004049803620400000800083201590001000002097305240200009056000100970"));
+            int count = engine.countSolutions(1000);
+            assertTrue(count > 1 && count < 1000);
+        }
+    }
+
+    @Test
+    public void conflictingGivensHaveNoSolution() {
+        for (SolverEngine engine : createEngines()) {
+            engine.setPuzzle(CellCollection.fromString(
+                    "110000000000000000000000000000000000000000000000000000000000000000000000000000000"));
+            assertEquals(0, engine.countSolutions(2));
+            assertEquals(0, engine.solve().size());
+        }
+    }
+
+    @Test
+    public void budgetStopsSearch() {
+        for (SolverEngine engine : createEngines()) {
+            engine.setPuzzle(CellCollection.createEmpty());
+            SolverResult result = engine.countSolutions(Integer.MAX_VALUE,
+                    new SolverControl(500, SolverControl.NO_LIMIT));
+            assertEquals(SolverResult.STATUS_BUDGET_EXCEEDED, result.getStatus());
+        }
+    }
+
+    private static int[] toGrid(String puzzle, ArrayList<int[]> values) {
+        int[] grid = new int[81];
+        for (int index = 0; index < 81; index++) {
+            grid[index] = puzzle.charAt(index) - '0';
+        }
+        for (int[] value : values) {
+            grid[value[0] * 9 + value[1]] = value[2];
+        }
+        return grid;
+    }
+
+    static void assertSolves(String puzzle, int[] solution) {
+        for (int index = 0; index < 81; index++) {
+            int given = puzzle.charAt(index) - '0';
+            assertTrue(puzzle, given == 0 || given == solution[index]);
+        }
+        for (int unit = 0; unit < 9; unit++) {
+            int rows = 0;
+            int columns = 0;
+            int boxes = 0;
+            for (int i = 0; i < 9; i++) {
+                rows |= 1 << solution[unit * 9 + i];
+                columns |= 1 << solution[i * 9 + unit];
+                boxes |= 1 << solution[(unit / 3 * 3 + i / 3) * 9 + unit % 3 * 3 + i % 3];
+            }
+            assertEquals(puzzle, 0x3FE, rows);
+            assertEquals(puzzle, 0x3FE, columns);
+            assertEquals(puzzle, 0x3FE, boxes);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.moire.opensudoku.game.command;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moire.opensudoku.game.CellCollection;
+import org.moire.opensudoku.game.CellNote;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandStackTest {
+
+    private static final String PUZZLE =
+            "052006000160900004049803620400000800083201590001000002097305240200009056000100970";
+    private static final String SOLUTION =
+            "352476189168952734749813625425697813683241597971538462897365241214789356536124978";
+
+    private CellCollection mCells;
+    private CommandStack mStack;
+
+    @Before
+    public void setUp() {
+        mCells = CellCollection.fromString(PUZZLE);
+        mStack = new CommandStack(mCells);
+    }
+
+    @Test
+    public void undoBelowSavedCountLowersIt() {
+        setValue(0, 0, 8);
+        setValue(0, 3, 4);
+        setValue(0, 4, 7);
+        mStack.setSavedCount(mStack.size());
+
+        mStack.undo();
+        assertEquals(2, mStack.getSavedCount());
+
+        // new command replaces the undone one, it is not saved
+        setValue(0, 4, 7);
+        assertEquals(2, mStack.getSavedCount());
+        assertEquals(3, mStack.size());
+    }
+
+    @Test
+    public void undoAboveSavedCountKeepsIt() {
+        setValue(0, 0, 8);
+        mStack.setSavedCount(mStack.size());
+        setValue(0, 3, 4);
+        mStack.setCheckpoint();
+        setValue(0, 4, 7);
+
+        mStack.undoToCheckpoint();
+        assertEquals(1, mStack.getSavedCount());
+        mStack.undo();
+        assertEquals(1, mStack.getSavedCount());
+        mStack.undo();
+        assertEquals(0, mStack.getSavedCount());
+        mStack.undo();
+        assertEquals(0, mStack.getSavedCount());
+    }
+
+    @Test
+    public void savedCommandsAndNewOnesMakeTheStack() {
+        // journal of saved commands as stored by SudokuDatabase.saveCommands
+        String[] journal = new String[10];
+        setValue(0, 0, 8);
+        mStack.execute(new EditCellNoteCommand(mCells.getCell(0, 3), CellNote.fromBitmask(0x18)));
+        save(journal);
+        mStack.undo();
+        setValue(0, 3, 4);
+        setValue(0, 4, 7);
+        int saved = save(journal);
+
+        CommandStack loaded = new CommandStack(mCells);
+        for (int i = 0; i < saved; i++) {
+            loaded.pushSerialized(journal[i]);
+        }
+        assertEquals(mStack.serialize(), loaded.serialize());
+    }
+
+    @Test
+    public void unsavedCommandsGoOnTopOfSavedOnes() {
+        String[] journal = new String[10];
+        setValue(0, 0, 3);
+        setValue(0, 3, 4);
+        int saved = save(journal);
+        setValue(0, 4, 7);
+        StringBuilder unsaved = new StringBuilder();
+        mStack.serializeUnsaved(unsaved);
+
+        CommandStack restored = new CommandStack(mCells);
+        for (int i = 0; i < saved; i++) {
+            restored.pushSerialized(journal[i]);
+        }
+        restored.setSavedCount(saved);
+        restored.pushSerializedStack(unsaved.toString());
+        assertEquals(mStack.serialize(), restored.serialize());
+        assertEquals(saved, restored.getSavedCount());
+    }
+
+    @Test
+    public void undoToSolvableStateUndoesMistakesOnly() {
+        int[] solution = new int[81];
+        for (int index = 0; index < 81; index++) {
+            solution[index] = SOLUTION.charAt(index) - '0';
+        }
+
+        setValue(0, 0, 3);
+        setValue(0, 3, 5);
+        CellNote note = CellNote.EMPTY.addNumber(1).addNumber(2);
+        mStack.execute(new EditCellNoteCommand(mCells.getCell(0, 4), note));
+        setValue(0, 7, 8);
+        mStack.setSavedCount(mStack.size());
+
+        mStack.undoToSolvableState(solution);
+        assertEquals(1, mStack.size());
+        assertEquals(1, mStack.getSavedCount());
+        assertEquals(3, mCells.getCell(0, 0).getValue());
+        assertEquals(0, mCells.getCell(0, 3).getValue());
+        assertEquals(0, mCells.getCell(0, 7).getValue());
+    }
+
+    private void setValue(int row, int col, int value) {
+        mStack.execute(new SetCellValueCommand(mCells.getCell(row, col), value));
+    }
+
+    private int save(String[] journal) {
+        for (int i = mStack.getSavedCount(); i < mStack.size(); i++) {
+            StringBuilder data = new StringBuilder();
+            mStack.serializeCommand(data, i);
+            journal[i] = data.toString();
+        }
+        mStack.setSavedCount(mStack.size());
+        return mStack.size();
+    }
+}